@@ -0,0 +1,94 @@
+package uk.ac.aber.cs221.group15;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Records how long each stage of a sync took. Stages run one after the
+ * other are timed from the end of the last stage, and stages which run
+ * at the same time as others are timed on their own.
+ *
+ * @author Darren White
+ * @version 0.0.1
+ */
+public class StageTimer {
+
+	/**
+	 * The time in ns each stage took in the order they finished
+	 */
+	private final Map<String, Long> stages = new LinkedHashMap<>();
+
+	/**
+	 * The time in ns the timer was started
+	 */
+	private final long start = System.nanoTime();
+
+	/**
+	 * The time in ns the last stage finished
+	 */
+	private long last = start;
+
+	/**
+	 * Ends a stage which started when the last stage ended
+	 *
+	 * @param stage The name of the stage
+	 */
+	public synchronized void end(String stage) {
+		long now = System.nanoTime();
+
+		stages.put(stage, now - last);
+		last = now;
+	}
+
+	/**
+	 * Records a stage which ran at the same time as other stages
+	 *
+	 * @param stage The name of the stage
+	 * @param start The time in ns the stage started
+	 */
+	public synchronized void record(String stage, long start) {
+		stages.put(stage, System.nanoTime() - start);
+	}
+
+	/**
+	 * Gets the time a stage took
+	 *
+	 * @param stage The name of the stage
+	 * @return The time in ms or -1 if the stage hasn't finished
+	 */
+	public synchronized long getMillis(String stage) {
+		Long time = stages.get(stage);
+
+		return time == null ? -1 : TimeUnit.NANOSECONDS.toMillis(time);
+	}
+
+	/**
+	 * Gets the time since the timer was started
+	 *
+	 * @return The time in ms
+	 */
+	public long getTotalMillis() {
+		return TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public synchronized String toString() {
+		StringBuilder sb = new StringBuilder();
+
+		sb.append(getTotalMillis()).append("ms (");
+
+		stages.forEach((stage, time) -> {
+			if (sb.charAt(sb.length() - 1) != '(') {
+				sb.append(", ");
+			}
+
+			sb.append(stage).append(' ').append(TimeUnit.NANOSECONDS.toMillis(time)).append("ms");
+		});
+
+		return sb.append(')').toString();
+	}
+}
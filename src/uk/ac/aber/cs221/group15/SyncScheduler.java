@@ -0,0 +1,408 @@
+package uk.ac.aber.cs221.group15;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Schedules syncs with the server. Syncs happen more often shortly after
+ * something changed and less often the longer nothing changes or while
+ * the server can't be reached, with some jitter so clients don't all
+ * sync at the same time. Syncs are paused while the window is minimized
+ * or the user is idle.
+ * <p>
+ * Syncs requested by the user take priority over scheduled syncs. A
+ * scheduled sync which is running when a sync is requested is cancelled
+ * at the next point the sync checks with {@link #checkCancelled()} and
+ * the requested sync is run straight after. A sync which has already
+ * fetched can check {@link #isCancelled()} to skip its remaining work
+ * rather than throw away what it fetched. A request is never covered by
+ * the sync running when it was made, as that sync may have read from the
+ * server before the change the request is for. A sync requested while
+ * any sync is running is run once it has finished, with any number of
+ * requests made in that time covered by one sync.
+ *
+ * @author Darren White
+ * @version 0.0.4
+ */
+public class SyncScheduler {
+
+	/**
+	 * The outcome of a sync
+	 */
+	public enum Outcome {
+
+		/**
+		 * The tasks changed
+		 */
+		CHANGED,
+
+		/**
+		 * Nothing changed
+		 */
+		UNCHANGED,
+
+		/**
+		 * The sync failed or the server can't be reached
+		 */
+		FAILED
+	}
+
+	/**
+	 * The fraction of the interval the delay is randomly changed by
+	 */
+	private static final double JITTER = 0.2;
+
+	/**
+	 * The executor the syncs are run on
+	 */
+	private final ScheduledExecutorService executor;
+
+	/**
+	 * The sync to run
+	 */
+	private final Callable<Outcome> sync;
+
+	/**
+	 * The interval after something changed (in ms)
+	 */
+	private final long minInterval;
+
+	/**
+	 * The interval to start with (in ms)
+	 */
+	private final long baseInterval;
+
+	/**
+	 * The longest interval (in ms)
+	 */
+	private final long maxInterval;
+
+	/**
+	 * The time without any activity before the user is idle (in ms)
+	 */
+	private long idleTimeout = TimeUnit.MINUTES.toMillis(15);
+
+	/**
+	 * If the delay is randomly changed
+	 */
+	private boolean jitter = true;
+
+	/**
+	 * The current interval between syncs (in ms)
+	 */
+	private long interval;
+
+	/**
+	 * The time of the last activity from the user
+	 */
+	private long lastActivity = System.currentTimeMillis();
+
+	/**
+	 * The time the next sync is due
+	 */
+	private long due;
+
+	/**
+	 * The next scheduled sync (null if none is scheduled)
+	 */
+	private ScheduledFuture<?> next;
+
+	/**
+	 * If the next sync is in the background rather than requested
+	 */
+	private boolean nextBackground;
+
+	/**
+	 * Increased each time a sync is scheduled so a sync which was
+	 * replaced but had already started waiting for the lock is ignored
+	 */
+	private int generation;
+
+	/**
+	 * If a sync is running
+	 */
+	private boolean running;
+
+	/**
+	 * If the running sync is a scheduled sync in the background
+	 */
+	private boolean background;
+
+	/**
+	 * If the running sync should stop as the user requested a sync
+	 */
+	private volatile boolean cancelled;
+
+	/**
+	 * If another sync was requested while one was running
+	 */
+	private boolean requested;
+
+	/**
+	 * If syncs are paused as the window is minimized
+	 */
+	private boolean paused;
+
+	/**
+	 * If syncs are paused as the user is idle
+	 */
+	private boolean idle;
+
+	/**
+	 * Creates a new scheduler
+	 *
+	 * @param executor     The executor to run the syncs on
+	 * @param sync         The sync to run
+	 * @param minInterval  The interval after something changed (in ms)
+	 * @param baseInterval The interval to start with (in ms)
+	 * @param maxInterval  The longest interval (in ms)
+	 */
+	public SyncScheduler(ScheduledExecutorService executor, Callable<Outcome> sync,
+	                     long minInterval, long baseInterval, long maxInterval) {
+		this.executor = executor;
+		this.sync = sync;
+		this.minInterval = minInterval;
+		this.baseInterval = baseInterval;
+		this.maxInterval = maxInterval;
+
+		interval = baseInterval;
+	}
+
+	/**
+	 * Records activity from the user. If syncs were paused as the
+	 * user was idle they start again with a sync straight away.
+	 */
+	public synchronized void activity() {
+		lastActivity = System.currentTimeMillis();
+
+		if (idle) {
+			idle = false;
+			request();
+		}
+	}
+
+	/**
+	 * Checks if the running sync should stop so a sync requested by the
+	 * user can run. Syncs call this between their stages, at points where
+	 * stopping doesn't leave anything half done.
+	 *
+	 * @throws CancellationException If the sync should stop
+	 */
+	public void checkCancelled() {
+		if (cancelled) {
+			throw new CancellationException("Sync was replaced by a requested sync");
+		}
+	}
+
+	/**
+	 * Checks if the running sync should stop without throwing, for the
+	 * stages after the fetch where the sync keeps what it fetched and
+	 * only skips the work the requested sync will do again
+	 *
+	 * @return If the sync should stop
+	 */
+	public boolean isCancelled() {
+		return cancelled;
+	}
+
+	/**
+	 * Gets the current interval between syncs
+	 *
+	 * @return The interval in ms
+	 */
+	synchronized long getInterval() {
+		return interval;
+	}
+
+	/**
+	 * Gets the interval after a sync with the outcome. Syncs happen as
+	 * often as possible after something changed, and the interval is
+	 * doubled each time nothing changed or the sync failed. Must be
+	 * called while holding the lock.
+	 *
+	 * @param outcome The outcome of the sync
+	 * @return The new interval in ms
+	 */
+	long nextInterval(Outcome outcome) {
+		switch (outcome) {
+			case CHANGED:
+				return minInterval;
+			case UNCHANGED:
+				// Return to the normal interval before backing off
+				return interval < baseInterval ? Math.min(interval * 2, baseInterval) :
+						Math.min(interval * 2, maxInterval);
+			default:
+				// Back off from at least the normal interval
+				return Math.min(Math.max(interval, baseInterval) * 2, maxInterval);
+		}
+	}
+
+	/**
+	 * Checks if the user is idle
+	 *
+	 * @return If there hasn't been any activity for the idle timeout
+	 */
+	synchronized boolean isIdle() {
+		return idle || System.currentTimeMillis() - lastActivity >= idleTimeout;
+	}
+
+	/**
+	 * Requests a sync straight away. If a scheduled sync is running it
+	 * is cancelled and the requested sync runs once it has stopped. If a
+	 * requested sync is running another is run once it has finished, and
+	 * if one is already waiting to run nothing more is done. Requests are
+	 * run even if syncs are paused.
+	 */
+	public synchronized void request() {
+		if (running) {
+			requested = true;
+			cancelled = background;
+			return;
+		}
+
+		// A requested sync is already about to run
+		if (next != null && !nextBackground && due <= System.currentTimeMillis()) {
+			return;
+		}
+
+		schedule(0, false);
+	}
+
+	/**
+	 * Runs the sync and schedules the next one
+	 *
+	 * @param background If this is a sync in the background rather than
+	 *                   one requested by the user
+	 * @param generation The generation of the sync when it was scheduled
+	 */
+	private void run(boolean background, int generation) {
+		synchronized (this) {
+			// This sync was replaced by another
+			if (generation != this.generation) {
+				return;
+			}
+
+			next = null;
+
+			// Wait for the user to come back before syncing
+			if (background && (paused || isIdle())) {
+				idle = !paused;
+				return;
+			}
+
+			running = true;
+			this.background = background;
+			cancelled = false;
+		}
+
+		Outcome outcome;
+
+		try {
+			outcome = sync.call();
+		} catch (CancellationException e) {
+			// The requested sync is run next
+			outcome = null;
+		} catch (Exception e) {
+			System.err.println("Unable to sync with the server");
+			e.printStackTrace();
+			outcome = Outcome.FAILED;
+		}
+
+		synchronized (this) {
+			running = false;
+			cancelled = false;
+
+			if (outcome != null) {
+				interval = nextInterval(outcome);
+			}
+
+			if (requested) {
+				requested = false;
+				schedule(0, false);
+			} else if (!paused) {
+				schedule(interval, true);
+			}
+		}
+	}
+
+	/**
+	 * Schedules the next sync, replacing the one already scheduled
+	 *
+	 * @param delay      The delay before the sync (in ms)
+	 * @param background If the sync is in the background rather than
+	 *                   requested by the user
+	 */
+	private void schedule(long delay, boolean background) {
+		if (next != null) {
+			next.cancel(false);
+		}
+
+		// Spread out the syncs of different clients
+		if (delay > 0 && jitter) {
+			delay += (long) (delay * JITTER * (ThreadLocalRandom.current().nextDouble() * 2 - 1));
+		}
+
+		int gen = ++generation;
+
+		due = System.currentTimeMillis() + delay;
+		nextBackground = background;
+		next = executor.schedule(() -> run(background, gen), delay, TimeUnit.MILLISECONDS);
+	}
+
+	/**
+	 * Sets the time without any activity before the user is idle and
+	 * syncs are paused
+	 *
+	 * @param idleTimeout The time in ms
+	 */
+	public synchronized void setIdleTimeout(long idleTimeout) {
+		this.idleTimeout = idleTimeout;
+	}
+
+	/**
+	 * Sets if the delay between syncs is randomly changed
+	 *
+	 * @param jitter If the delay is randomly changed
+	 */
+	synchronized void setJitter(boolean jitter) {
+		this.jitter = jitter;
+	}
+
+	/**
+	 * Pauses or resumes the syncs, for example when the window is
+	 * minimized. When resumed a sync is run straight away if one was
+	 * due while paused.
+	 *
+	 * @param paused If syncs are paused
+	 */
+	public synchronized void setPaused(boolean paused) {
+		if (this.paused == paused) {
+			return;
+		}
+
+		this.paused = paused;
+
+		if (paused) {
+			// Keep a requested sync but stop the scheduled one
+			if (next != null && due > System.currentTimeMillis()) {
+				next.cancel(false);
+				next = null;
+			}
+		} else if (!running && next == null) {
+			lastActivity = System.currentTimeMillis();
+			idle = false;
+			schedule(Math.max(0, due - System.currentTimeMillis()), true);
+		}
+	}
+
+	/**
+	 * Starts syncing with the first sync in the background straight away
+	 */
+	public synchronized void start() {
+		schedule(0, true);
+	}
+}
@@ -0,0 +1,249 @@
+package uk.ac.aber.cs221.group15;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests the sync scheduler backs off, coalesces requests, cancels
+ * background syncs for requests and pauses while the user is away,
+ * using short intervals
+ *
+ * @author Darren White
+ * @version 0.0.4
+ */
+public class SyncSchedulerTest {
+
+	/**
+	 * The executor the syncs are run on
+	 */
+	private ScheduledExecutorService executor;
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Before
+	public void setUp() throws Exception {
+		executor = Executors.newSingleThreadScheduledExecutor();
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@After
+	public void tearDown() throws Exception {
+		executor.shutdownNow();
+	}
+
+	/**
+	 * Test the interval is doubled while syncs fail or nothing changes
+	 * and is shortest after a change
+	 *
+	 * @throws Exception If an exception occurs
+	 */
+	@Test
+	public void testBackoff() throws Exception {
+		Iterator<SyncScheduler.Outcome> outcomes = Arrays.asList(SyncScheduler.Outcome.FAILED,
+				SyncScheduler.Outcome.FAILED, SyncScheduler.Outcome.FAILED, SyncScheduler.Outcome.CHANGED,
+				SyncScheduler.Outcome.UNCHANGED, SyncScheduler.Outcome.UNCHANGED,
+				SyncScheduler.Outcome.UNCHANGED).iterator();
+		List<Long> intervals = new ArrayList<>();
+		CountDownLatch done = new CountDownLatch(1);
+		SyncScheduler[] scheduler = new SyncScheduler[1];
+
+		scheduler[0] = new SyncScheduler(executor, () -> {
+			intervals.add(scheduler[0].getInterval());
+
+			if (!outcomes.hasNext()) {
+				done.countDown();
+				return SyncScheduler.Outcome.UNCHANGED;
+			}
+
+			return outcomes.next();
+		}, 5, 20, 80);
+		scheduler[0].setJitter(false);
+		scheduler[0].setIdleTimeout(Long.MAX_VALUE);
+		scheduler[0].start();
+
+		assertTrue(done.await(5, TimeUnit.SECONDS));
+		assertEquals(Arrays.asList(20L, 40L, 80L, 80L, 5L, 10L, 20L, 40L), intervals);
+	}
+
+	/**
+	 * Test any number of requests made while a requested sync is running
+	 * are covered by one more sync
+	 *
+	 * @throws Exception If an exception occurs
+	 */
+	@Test
+	public void testCoalesce() throws Exception {
+		CountDownLatch started = new CountDownLatch(1), release = new CountDownLatch(1);
+		Semaphore finished = new Semaphore(0);
+		AtomicInteger count = new AtomicInteger();
+
+		SyncScheduler scheduler = new SyncScheduler(executor, () -> {
+			count.incrementAndGet();
+			started.countDown();
+			release.await();
+			finished.release();
+			return SyncScheduler.Outcome.UNCHANGED;
+		}, 60000, 60000, 60000);
+		scheduler.request();
+
+		assertTrue(started.await(5, TimeUnit.SECONDS));
+
+		for (int i = 0; i < 5; i++) {
+			scheduler.request();
+		}
+
+		release.countDown();
+
+		assertTrue(finished.tryAcquire(2, 5, TimeUnit.SECONDS));
+		Thread.sleep(50);
+		assertEquals(2, count.get());
+	}
+
+	/**
+	 * Test a background sync stops at its next check when the user
+	 * requests a sync, which then runs straight away
+	 *
+	 * @throws Exception If an exception occurs
+	 */
+	@Test
+	public void testPreempt() throws Exception {
+		CountDownLatch started = new CountDownLatch(1), requested = new CountDownLatch(1);
+		AtomicInteger stages = new AtomicInteger();
+		SyncScheduler[] scheduler = new SyncScheduler[1];
+
+		scheduler[0] = new SyncScheduler(executor, () -> {
+			// The first sync is a long sync in the background
+			if (started.getCount() > 0) {
+				started.countDown();
+
+				for (int i = 0; i < 500; i++) {
+					Thread.sleep(10);
+					scheduler[0].checkCancelled();
+					stages.incrementAndGet();
+				}
+			} else {
+				requested.countDown();
+			}
+
+			return SyncScheduler.Outcome.CHANGED;
+		}, 60000, 120000, 240000);
+		scheduler[0].start();
+
+		assertTrue(started.await(5, TimeUnit.SECONDS));
+		Thread.sleep(50);
+		scheduler[0].request();
+
+		assertTrue(requested.await(1, TimeUnit.SECONDS));
+		assertTrue(stages.get() < 500);
+		// Only the requested sync changed the interval
+		Thread.sleep(20);
+		assertEquals(60000, scheduler[0].getInterval());
+	}
+
+	/**
+	 * Test a request made while a background sync was fetching isn't
+	 * covered by it, as it may have read the tasks before the change the
+	 * request is for. The background sync sees it was cancelled after
+	 * its fetch and the requested sync is run once it has finished.
+	 *
+	 * @throws Exception If an exception occurs
+	 */
+	@Test
+	public void testFetched() throws Exception {
+		CountDownLatch fetching = new CountDownLatch(1), release = new CountDownLatch(1);
+		Semaphore finished = new Semaphore(0);
+		AtomicInteger count = new AtomicInteger();
+		AtomicBoolean skipped = new AtomicBoolean();
+		SyncScheduler[] scheduler = new SyncScheduler[1];
+
+		scheduler[0] = new SyncScheduler(executor, () -> {
+			if (count.incrementAndGet() == 1) {
+				fetching.countDown();
+				release.await();
+				// Keep what was fetched but skip storing it
+				skipped.set(scheduler[0].isCancelled());
+			}
+
+			finished.release();
+			return SyncScheduler.Outcome.CHANGED;
+		}, 60000, 60000, 60000);
+		scheduler[0].setJitter(false);
+		scheduler[0].setIdleTimeout(Long.MAX_VALUE);
+		scheduler[0].start();
+
+		assertTrue(fetching.await(5, TimeUnit.SECONDS));
+		scheduler[0].request();
+		release.countDown();
+
+		// The background sync and then the requested sync
+		assertTrue(finished.tryAcquire(2, 5, TimeUnit.SECONDS));
+		assertTrue(skipped.get());
+		Thread.sleep(100);
+		assertEquals(2, count.get());
+	}
+
+	/**
+	 * Test scheduled syncs are skipped while the user is idle and start
+	 * again with activity, and requests are still run while paused
+	 *
+	 * @throws Exception If an exception occurs
+	 */
+	@Test
+	public void testIdleAndPaused() throws Exception {
+		Semaphore synced = new Semaphore(0);
+
+		SyncScheduler scheduler = new SyncScheduler(executor, () -> {
+			synced.release();
+			return SyncScheduler.Outcome.UNCHANGED;
+		}, 5, 5, 5);
+		scheduler.setJitter(false);
+		scheduler.setIdleTimeout(0);
+		scheduler.request();
+
+		// A requested sync runs even though the user is idle
+		assertTrue(synced.tryAcquire(5, TimeUnit.SECONDS));
+		Thread.sleep(100);
+		assertEquals(0, synced.availablePermits());
+		assertTrue(scheduler.isIdle());
+
+		scheduler.setIdleTimeout(Long.MAX_VALUE);
+		scheduler.activity();
+
+		assertTrue(synced.tryAcquire(5, TimeUnit.SECONDS));
+
+		scheduler.setPaused(true);
+
+		// Let a sync which already started finish
+		Thread.sleep(20);
+		synced.drainPermits();
+		Thread.sleep(100);
+		assertEquals(0, synced.availablePermits());
+
+		// A request from the user is run while paused
+		scheduler.request();
+		assertTrue(synced.tryAcquire(5, TimeUnit.SECONDS));
+
+		// The scheduled syncs start again once resumed
+		scheduler.setPaused(false);
+		assertTrue(synced.tryAcquire(3, 5, TimeUnit.SECONDS));
+	}
+}
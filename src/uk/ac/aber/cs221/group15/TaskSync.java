@@ -1,49 +1,104 @@
 package uk.ac.aber.cs221.group15;
 
 import javafx.application.Platform;
-import javafx.collections.FXCollections;
+import javafx.beans.property.ReadOnlyBooleanProperty;
+import javafx.beans.property.ReadOnlyBooleanWrapper;
 import javafx.collections.ObservableList;
 import org.json.simple.parser.ParseException;
-import uk.ac.aber.cs221.group15.gui.Login;
+import uk.ac.aber.cs221.group15.service.ConnectionMonitor;
+import uk.ac.aber.cs221.group15.service.Journal;
+import uk.ac.aber.cs221.group15.service.JournalReplay;
 import uk.ac.aber.cs221.group15.service.Service;
+import uk.ac.aber.cs221.group15.service.TaskDelta;
 import uk.ac.aber.cs221.group15.service.TaskService;
+import uk.ac.aber.cs221.group15.service.Update;
+import uk.ac.aber.cs221.group15.task.DateCache;
+import uk.ac.aber.cs221.group15.task.Step;
 import uk.ac.aber.cs221.group15.task.Task;
+import uk.ac.aber.cs221.group15.task.TaskCache;
+import uk.ac.aber.cs221.group15.task.TaskList;
+import uk.ac.aber.cs221.group15.task.TaskSnapshot;
 
 import java.io.*;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
-import java.util.LinkedList;
-import java.util.Optional;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
 import java.util.TimerTask;
 import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.Executors;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.TimeUnit;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
 
 /**
  * TaskSync is used to sync tasks with the server as well as submit local updates
  * when connected. All syncing is done in here.
  *
  * @author Darren White
- * @version 0.0.5
+ * @version 0.0.32
  */
 public class TaskSync extends TimerTask implements Callable<ObservableList<Task>> {
 
-	/**
-	 * The path to store local sync updates
-	 */
-	private static final String PATH_SYNC = TaskerCLI.getUserHomeDir() +
-			File.separator + ".tasker_sync";
-
 	/**
 	 * The path to store tasks locally
 	 */
 	private static final String PATH_TASKS = TaskerCLI.getUserHomeDir() +
 			File.separator + ".tasker_tasks";
 
+	/**
+	 * The path to store the email of the user the local tasks belong to
+	 */
+	private static final String PATH_OWNER = TaskerCLI.getUserHomeDir() +
+			File.separator + ".tasker_owner";
+
+	/**
+	 * The path to store the revision the local tasks were synced at
+	 */
+	private static final String PATH_CURSOR = TaskerCLI.getUserHomeDir() +
+			File.separator + ".tasker_cursor";
+
+	/**
+	 * The number of syncs which only get the changes before all
+	 * of the tasks are downloaded again
+	 */
+	private static final int FULL_SYNC_INTERVAL = 12;
+
+	/**
+	 * The time between syncs normally (in ms)
+	 */
+	private static final long SYNC_INTERVAL = TimeUnit.MINUTES.toMillis(5);
+
+	/**
+	 * The time between syncs after the tasks changed (in ms)
+	 */
+	private static final long MIN_SYNC_INTERVAL = TimeUnit.MINUTES.toMillis(1);
+
+	/**
+	 * The longest time between syncs when nothing changes or
+	 * the server can't be reached (in ms)
+	 */
+	private static final long MAX_SYNC_INTERVAL = TimeUnit.MINUTES.toMillis(30);
+
+	/**
+	 * The number of local updates sent to the server at the same time
+	 */
+	private static final int REPLAY_CONCURRENCY = 4;
+
+	/**
+	 * If the tasks are stored in columns rather than as objects, which
+	 * makes filtering them faster for accounts with very many tasks
+	 * (set with -Dtasker.columnar=true)
+	 */
+	private static final boolean COLUMNAR = Boolean.getBoolean("tasker.columnar");
+
 	/**
 	 * The service used to submit requests to get task steps
 	 */
@@ -52,25 +107,87 @@ public class TaskSync extends TimerTask implements Callable<ObservableList<Task>
 	/**
 	 * The set of tasks for the user
 	 */
-	private final ObservableList<Task> tasks = FXCollections.observableList(new LinkedList<>());
+	private final TaskList tasks = new TaskList(COLUMNAR);
+
+	/**
+	 * If the tasks shown are the stored tasks which haven't
+	 * been synced with the server yet
+	 */
+	private final ReadOnlyBooleanWrapper stale = new ReadOnlyBooleanWrapper();
 
 	/**
 	 * The executor service used for scheduling sync updates for tasks
 	 */
 	private final ScheduledExecutorService executor;
 
+	/**
+	 * Decides when to sync with the server
+	 */
+	private final SyncScheduler scheduler;
+
+	/**
+	 * Syncs when the server can be reached again (removed on shutdown
+	 * as the connection monitor outlives each user)
+	 */
+	private final ConnectionMonitor.Listener reconnected;
+
 	/**
 	 * The current users token
 	 */
 	private final String token;
 
+	/**
+	 * The email of the current user, which the local tasks are stored for
+	 */
+	private final String user;
+
+	/**
+	 * The ids of the tasks from the last sync
+	 */
+	private volatile Set<Integer> knownIds = Collections.emptySet();
+
+	/**
+	 * The tasks from the last sync which the next changes are applied to
+	 */
+	private List<Task> synced;
+
+	/**
+	 * The revision of the server at the last sync (null if unknown)
+	 */
+	private String cursor;
+
+	/**
+	 * The number of syncs since all of the tasks were downloaded
+	 */
+	private int deltaSyncs;
+
+	/**
+	 * If the shown tasks haven't been stored as the sync which
+	 * showed them was cancelled
+	 */
+	private boolean unstored;
+
+	/**
+	 * How long each stage of the last finished sync took
+	 * (null until a sync has finished)
+	 */
+	private volatile StageTimer lastTimer;
+
+	/**
+	 * The tasks being stored locally, which the next tasks to store
+	 * are written after
+	 */
+	private CompletableFuture<Void> persisting = CompletableFuture.completedFuture(null);
+
 	/**
 	 * Creates a new TaskSync
 	 *
 	 * @param token The token for the current user
+	 * @param user  The email the current user logged in with
 	 */
-	public TaskSync(String token) {
+	public TaskSync(String token, String user) {
 		this.token = token;
+		this.user = user;
 
 		// Create the executor scheduling service
 		executor = Executors.newSingleThreadScheduledExecutor(r -> {
@@ -86,8 +203,23 @@ public class TaskSync extends TimerTask implements Callable<ObservableList<Task>
 
 			return t;
 		});
-		// Used for scheduling sync updates to the server every 5 minutes
-		executor.scheduleAtFixedRate(this, 0, 5, TimeUnit.MINUTES);
+		// Sync more often after changes and less often when nothing changes
+		scheduler = new SyncScheduler(executor, this::sync, MIN_SYNC_INTERVAL,
+				SYNC_INTERVAL, MAX_SYNC_INTERVAL);
+
+		// Show the stored tasks straight away while the first sync runs
+		executor.execute(this::showStored);
+		scheduler.start();
+
+		// Sync as soon as the server can be reached again
+		// so that local updates are submitted straight away
+		reconnected = (oldState, newState) -> {
+			if (oldState == ConnectionMonitor.State.OFFLINE &&
+					newState == ConnectionMonitor.State.ONLINE) {
+				forceSync();
+			}
+		};
+		Service.getConnectionMonitor().addListener(reconnected);
 	}
 
 	/**
@@ -95,135 +227,337 @@ public class TaskSync extends TimerTask implements Callable<ObservableList<Task>
 	 */
 	@Override
 	public ObservableList<Task> call() throws Exception {
+		sync();
+
+		return tasks;
+	}
+
+	/**
+	 * Syncs the tasks with the server, submitting any local updates
+	 *
+	 * @return The outcome of the sync
+	 * @throws Exception If an exception occurs
+	 */
+	private SyncScheduler.Outcome sync() throws Exception {
 		// Used to store the synced tasks
-		ObservableList<Task> newTasks = FXCollections.observableList(new LinkedList<>());
-		// The path to store the tasks locally
-		Path p = Paths.get(PATH_TASKS);
+		List<Task> newTasks;
+		// The changes since the last sync
+		TaskDelta delta;
+		// The revision to get the changes since
+		String since;
+		// Commits the validators read by this sync once its tasks are kept
+		Runnable commit;
 
 		// If we don't have a connection to the server then load the locally
-		// stored tasks
+		// stored tasks (this uses the last known state so doesn't probe).
+		// The file only changes after a sync so it is only loaded once
 		if (!Service.checkConnection()) {
-			newTasks.addAll(readFromFile());
+			if (synced == null) {
+				publish(readFromFile());
+			}
 
-			Platform.runLater(() -> {
-				tasks.clear();
-				tasks.addAll(newTasks);
-			});
+			// Keep the local updates small while offline
+			compactUpdates();
 
-			return tasks;
+			return SyncScheduler.Outcome.FAILED;
 		}
 
+		// How long each stage of the sync takes
+		StageTimer timer = new StageTimer();
+
 		try {
-			// Try and load the tasks from the database
-			service.getTasks(newTasks, token);
+			// Start from the stored tasks if they were synced for this user
+			if (synced == null && isStoredForUser()) {
+				cursor = readCursor();
+				synced = readFromFile();
+			}
+
+			// Only get the changes if we have the tasks to apply them
+			// to, and download everything again every so often
+			since = synced != null && deltaSyncs < FULL_SYNC_INTERVAL ? cursor : null;
+
+			// Stop before fetching if the user asked for a sync
+			scheduler.checkCancelled();
+
+			// Forget validators from syncs which didn't keep their tasks
+			Service.discardValidators();
+
+			// Try and load the tasks and steps from the database
+			// The steps for tasks we already have are fetched at
+			// the same time as the task list. The fetch stops between
+			// batches if the user asks for a sync
+			delta = service.getChanges(token, since, knownIds, scheduler::checkCancelled);
+			commit = Service.takeValidators();
+			timer.end("fetch");
 		} catch (IOException | ParseException e) {
 			System.err.println("Unable to load tasks from database");
 			e.printStackTrace();
+
+			// Keep the tasks we already have
+			return SyncScheduler.Outcome.FAILED;
 		}
 
-		Platform.runLater(() -> {
-			// Use the new synced tasks
-			tasks.clear();
-			tasks.addAll(newTasks);
-		});
+		// We went offline while loading the tasks
+		if (delta == null) {
+			return SyncScheduler.Outcome.FAILED;
+		}
 
-		// Store the tasks locally
-		writeToFile(newTasks);
+		// Apply the changes to the tasks from the last sync
+		newTasks = delta.isUnchanged() ? synced : delta.applyTo(synced);
+		timer.end("apply");
+
+		// Keep the revision if the server didn't send a new one
+		if (delta.isFull() || delta.getRevision() != null) {
+			cursor = delta.getRevision();
+		}
 
-		// Check for local updates to submit
+		deltaSyncs = since == null ? 0 : deltaSyncs + 1;
+
+		// Submit the local updates and show them straight away
 		// TaskerSRV takes priority
-		checkSyncUpdates(newTasks);
+		newTasks = checkSyncUpdates(newTasks);
+		timer.end("replay");
+
+		// If the tasks are different to the ones shown
+		boolean changed = newTasks != synced;
+
+		// Nothing has changed so there is nothing to store or show
+		if (!changed && !unstored) {
+			commit.run();
+			lastTimer = timer;
+			Platform.runLater(() -> stale.set(false));
+			return SyncScheduler.Outcome.UNCHANGED;
+		}
 
-		return tasks;
+		// Show the new synced tasks and store them locally at the same
+		// time, without waiting for either so the next sync can start
+		long start = System.nanoTime();
+		CompletableFuture<Void> shown = !changed ? CompletableFuture.completedFuture(null) :
+				publish(newTasks).thenRun(() -> {
+					timer.record("publish", start);
+					stale.set(false);
+				});
+
+		// The user asked for a sync which runs next, so leave storing
+		// the tasks to it (the validators aren't committed so the
+		// requested sync reads and stores the tasks again)
+		if (scheduler.isCancelled()) {
+			unstored = true;
+			return changed ? SyncScheduler.Outcome.CHANGED : SyncScheduler.Outcome.UNCHANGED;
+		}
+
+		unstored = false;
+
+		CompletableFuture<Void> stored = persist(newTasks, true)
+				.thenRun(() -> timer.record("persist", start));
+
+		CompletableFuture.allOf(shown, stored).whenComplete((v, ex) -> {
+			if (ex != null) {
+				System.err.println("Unable to show or store the synced tasks");
+				ex.printStackTrace();
+			} else {
+				// The next sync can skip what this one read
+				commit.run();
+			}
+
+			lastTimer = timer;
+		});
+
+		return changed ? SyncScheduler.Outcome.CHANGED : SyncScheduler.Outcome.UNCHANGED;
+	}
+
+	/**
+	 * Applies the updates which were sent to copies of the tasks they
+	 * changed, so the tasks don't have to be downloaded again to show
+	 * them. The tasks which weren't changed are kept as they are.
+	 *
+	 * @param newTasks The tasks from the server
+	 * @param statuses The status updates sent with the task id as the key
+	 * @param comments The comment updates sent with the step id as the key
+	 * @return The tasks with the updates applied
+	 */
+	private static List<Task> applyUpdates(List<Task> newTasks, Map<Integer, Update> statuses,
+	                                       Map<Integer, Update> comments) {
+		List<Task> updated = new ArrayList<>(newTasks.size());
+
+		for (Task t : newTasks) {
+			Update status = statuses.get(t.getId());
+
+			// Only look at the steps if comments were sent
+			if (status == null && (comments.isEmpty() ||
+					t.getSteps().stream().noneMatch(s -> comments.containsKey(s.getId())))) {
+				updated.add(t);
+				continue;
+			}
+
+			Task copy = new Task(t.getId(), t.getTitle(), t.getCreator(), t.getDateCreated(),
+					t.getDateDue(), t.getDateCompleted(), t.getStatus());
+
+			if (status != null) {
+				LocalDate completed = null;
+
+				// A timestamp of zero means it wasn't completed
+				if (status.getSeconds() != 0) {
+					completed = DateCache.ofSeconds(status.getSeconds());
+				}
+
+				copy.setStatus(status.getStatus());
+				copy.setDateCompleted(completed);
+			}
+
+			for (Step s : t.getSteps()) {
+				Update comment = comments.get(s.getId());
+
+				copy.addStep(new Step(s.getId(), s.getTitle(), comment == null ? s.getComment() : comment.getComment()));
+			}
+
+			updated.add(copy);
+		}
+
+		return updated;
 	}
 
 	/**
 	 * Check if there are any local updates to be submitted and synced with
-	 * the server
+	 * the server. Updates to different tasks and steps are sent at the
+	 * same time while updates to the same task or step are sent in the
+	 * order they were made. An update is only removed from the journal
+	 * once the server has answered it, so if the connection is lost
+	 * replaying continues from the first update which wasn't sent. The
+	 * updates the server accepted are applied to the tasks rather than
+	 * syncing again.
 	 *
+	 * @param newTasks The tasks from the server
+	 * @return The tasks with the updates applied (the same list if
+	 * no updates were applied)
 	 * @throws Exception If an exception occurs
 	 */
-	private void checkSyncUpdates(ObservableList<Task> newTasks) throws Exception {
-		// The path for the local updates
-		Path sync = Paths.get(PATH_SYNC);
-		// Contents of the file
-		String content = "";
-		// The current line being read
-		String line;
-		// Updates that failed and should be saved again
-		String failedContent = "";
-
-		// The file doesn't exist so no updates to sync
-		if (!Files.exists(sync)) {
-			return;
-		}
+	private List<Task> checkSyncUpdates(List<Task> newTasks) throws Exception {
+		// The journal of local updates
+		Journal journal = TaskService.getJournal();
 
-		// Read the file contents
-		try (BufferedReader in = new BufferedReader(new InputStreamReader(Files.newInputStream(sync)))) {
-			while ((line = in.readLine()) != null) {
-				content += line + '\n';
-			}
+		// No updates to sync
+		if (!journal.hasPending()) {
+			return newTasks;
 		}
 
-		// Regex match for the file
-		// First line is the url
-		// Second line is post argument (might be blank)
-		// Third line is blank
-		Matcher m = Pattern.compile("(http.*)\\n(.*)\\n(.*)\\n(.*)\\n").matcher(content);
-
-		// Iterate all matches
-		while (m.find()) {
-			// Get the matches
-			String url = m.group(1), data = m.group(3), post = m.group(4);
-			int id = Integer.parseInt(m.group(2));
-			int status = -1;
-
-			Optional<Task> t = newTasks.stream().filter(p -> p.getId() == id).findFirst();
-
-			if (t.isPresent()) {
-				try {
-					int newStatus = Integer.parseInt(data);
-					int srvStatus = t.get().getStatus();
-
-					if (srvStatus == Task.ABANDONED) {
-						continue;
-					}
-				} catch (NumberFormatException ignored) {
-				}
-			}
+		// Only send the last status and comment of each task and step
+		compactUpdates();
 
-			// When offline a temporary token is used so replace it
-			url = url.replace(Login.TOKEN_OFFLINE, token);
+		// The tasks from the server with the task id as the key
+		Map<Integer, Task> serverTasks = new HashMap<>();
+		// The updates the server accepted with the task or step id as the key
+		Map<Integer, Update> statuses = new HashMap<>(), comments = new HashMap<>();
 
-			try {
-				// Submit the request (if there is a post, send it too)
-				if (!post.isEmpty()) {
-					service.submit(url, post);
-				} else {
-					service.submit(url);
-				}
-			} catch (ParseException e) {
-				System.err.println("Unable to sync local updates");
-				e.printStackTrace();
+		newTasks.forEach(t -> serverTasks.put(t.getId(), t));
+
+		// Send the updates to different tasks and steps at the same time
+		JournalReplay replay = new JournalReplay(journal, token);
+		replay.setConcurrency(REPLAY_CONCURRENCY);
+
+		// TaskerSRV takes priority for abandoned tasks
+		replay.run(update -> {
+			Task t = serverTasks.get(update.getId());
+			return update.getType() == Update.STATUS && t != null && t.getStatus() == Task.ABANDONED;
+		});
+
+		// Later updates to the same task or step replace earlier ones
+		for (Update update : replay.getAccepted()) {
+			if (update.getType() == Update.STATUS) {
+				statuses.put(update.getId(), update);
+			} else {
+				comments.put(update.getId(), update);
 			}
 		}
 
-		// Delete the old updates
-		Files.delete(sync);
+		if (statuses.isEmpty() && comments.isEmpty()) {
+			return newTasks;
+		}
 
-		// Re-update from the server to ensure changes have been made!
-		// This will not cause an infinite loop as the file will be deleted
-		// after syncing!
-		call();
+		return applyUpdates(newTasks, statuses, comments);
+	}
+
+	/**
+	 * Compacts the journal of local updates so updates which have been
+	 * replaced by a later update aren't sent
+	 *
+	 * @return The number of local updates removed
+	 * @throws IOException If an I/O exception occurs
+	 */
+	private int compactUpdates() throws IOException {
+		return TaskService.getJournal().compact();
 	}
 
 	/**
-	 * Forces an update to the server
+	 * Forces an update to the server. Requests made while a sync is
+	 * running are covered by one more sync once it has finished.
 	 */
 	public void forceSync() {
-		// Just submit this as a callable (not runnable) as the runnable is the
-		// timer task although it wouldn't make a big difference
-		executor.submit((Callable) this);
+		scheduler.request();
+	}
+
+	/**
+	 * Stops syncing once the user has logged out. The local updates
+	 * which haven't been sent are kept in the journal for next time.
+	 */
+	public void shutdown() {
+		// Stop the next user's reconnection also syncing this user
+		Service.getConnectionMonitor().removeListener(reconnected);
+		// Cancel the scheduled syncs too (which shutdown would still run)
+		executor.shutdownNow();
+	}
+
+	/**
+	 * Gets how long each stage of the last finished sync took
+	 *
+	 * @return The stage times (null if no sync has finished)
+	 */
+	public StageTimer getLastSyncTimer() {
+		return lastTimer;
+	}
+
+	/**
+	 * Gets the scheduler which decides when to sync, so the window can
+	 * pause syncing while minimized or idle
+	 *
+	 * @return The sync scheduler
+	 */
+	public SyncScheduler getScheduler() {
+		return scheduler;
+	}
+
+	/**
+	 * Shows the tasks stored from the last sync for this user without
+	 * waiting for the server. The tasks are marked as stale until the
+	 * first sync with the server has finished, and if the revision they
+	 * were synced at is known the sync only gets the changes since.
+	 */
+	private void showStored() {
+		try {
+			// Only the stored tasks for this user
+			if (synced != null || !isStoredForUser()) {
+				return;
+			}
+
+			cursor = readCursor();
+
+			// Syncs mark the tasks as fresh after this on the JavaFX thread
+			publish(readFromFile()).thenRun(() -> stale.set(true));
+		} catch (IOException e) {
+			System.err.println("Unable to load the stored tasks");
+			e.printStackTrace();
+			cursor = null;
+		}
+	}
+
+	/**
+	 * Gets the property for if the tasks shown are the stored tasks
+	 * from the last time, which haven't been synced with the server yet
+	 *
+	 * @return The stale property
+	 */
+	public ReadOnlyBooleanProperty staleProperty() {
+		return stale.getReadOnlyProperty();
 	}
 
 	/**
@@ -231,39 +565,147 @@ public class TaskSync extends TimerTask implements Callable<ObservableList<Task>
 	 *
 	 * @return The task list
 	 */
-	public ObservableList<Task> getTasks() {
+	public TaskList getTasks() {
 		return tasks;
 	}
 
 	/**
-	 * Read the tasks locally from file if the file exists
+	 * Merges the new tasks into the task list in a single change on the
+	 * JavaFX thread. Tasks which are already shown are updated in place.
+	 *
+	 * @param newTasks The complete list of tasks (with their steps)
+	 * @return A future completed once the tasks have been merged
+	 */
+	private CompletableFuture<Void> publish(List<Task> newTasks) {
+		// Remember the tasks and ids for the next sync (the stored
+		// tasks have an index of the ids)
+		Set<Integer> ids;
+
+		if (newTasks instanceof TaskCache) {
+			ids = ((TaskCache) newTasks).getIds();
+		} else {
+			ids = new HashSet<>();
+			newTasks.forEach(t -> ids.add(t.getId()));
+		}
+
+		knownIds = ids;
+		synced = newTasks;
+
+		return CompletableFuture.runAsync(() -> tasks.merge(newTasks), Platform::runLater);
+	}
+
+	/**
+	 * Stores the tasks locally in the background. The tasks are stored
+	 * in the order this is called so older tasks never replace newer ones.
+	 *
+	 * @param newTasks   The tasks to store
+	 * @param withCursor If the revision of the last sync is stored too
+	 * @return A future completed once the tasks have been stored
+	 */
+	private synchronized CompletableFuture<Void> persist(List<Task> newTasks, boolean withCursor) {
+		// Read now as the next sync may change it
+		String revision = withCursor ? cursor : null;
+
+		persisting = persisting.exceptionally(ex -> null).thenRunAsync(() -> {
+			try {
+				// The tasks don't belong to anyone while being written
+				Files.deleteIfExists(Paths.get(PATH_OWNER));
+				writeToFile(newTasks);
+				writeOwner();
+
+				if (withCursor) {
+					writeCursor(revision);
+				}
+			} catch (IOException e) {
+				throw new UncheckedIOException(e);
+			}
+		}, Service.getExecutor());
+
+		return persisting;
+	}
+
+	/**
+	 * Checks if the local tasks were stored for the current user, using
+	 * the email they logged in with as the token changes each login
 	 *
-	 * @return The local task list
-	 * @throws IOException            If an I/O exception occurs
-	 * @throws ClassNotFoundException If a ClassNotFoundExceptionOccurs
+	 * @return If there are local tasks for the current user
+	 * @throws IOException If an I/O exception occurs
 	 */
-	public ObservableList<Task> readFromFile() throws IOException, ClassNotFoundException {
-		// Store the local tasks in a list
-		ObservableList<Task> newTasks = FXCollections.observableList(new LinkedList<>());
+	private boolean isStoredForUser() throws IOException {
 		// The path to the file
-		Path p = Paths.get(PATH_TASKS);
+		Path p = Paths.get(PATH_OWNER);
 
-		// If it doesn't exist return the already loaded tasks
-		if (!Files.exists(p)) {
-			return tasks;
+		if (user == null || !Files.exists(p) || !Files.exists(Paths.get(PATH_TASKS))) {
+			return false;
 		}
 
-		// Open a new input stream
-		try (ObjectInputStream in = new ObjectInputStream(Files.newInputStream(p))) {
-			// Read the number of tasks that are in the file
-			int len = in.readInt();
-			// Iterate all of the tasks and read them
-			while (len-- > 0) {
-				newTasks.add(Task.readTask(in));
-			}
+		// The only line is the email
+		try (BufferedReader br = Files.newBufferedReader(p)) {
+			return user.equalsIgnoreCase(br.readLine());
+		}
+	}
+
+	/**
+	 * Writes the email of the current user to file, after the
+	 * tasks have been stored for them
+	 *
+	 * @throws IOException If an I/O exception occurs
+	 */
+	private void writeOwner() throws IOException {
+		if (user == null) {
+			return;
+		}
+
+		// Create a writer for the path (overwrite existing)
+		try (BufferedWriter bw = Files.newBufferedWriter(Paths.get(PATH_OWNER))) {
+			bw.write(user);
+		}
+	}
+
+	/**
+	 * Reads the revision the local tasks were synced at. The revision
+	 * is only used if it was stored for the same user and the tasks
+	 * are stored too.
+	 *
+	 * @return The revision or null if there is none for the user
+	 * @throws IOException If an I/O exception occurs
+	 */
+	private String readCursor() throws IOException {
+		// The path to the file
+		Path p = Paths.get(PATH_CURSOR);
+
+		// The changes can't be applied without the tasks
+		if (!Files.exists(p) || !Files.exists(Paths.get(PATH_TASKS))) {
+			return null;
+		}
+
+		// First line is the email, second line is the revision
+		try (BufferedReader br = Files.newBufferedReader(p)) {
+			return user != null && user.equalsIgnoreCase(br.readLine()) ? br.readLine() : null;
+		}
+	}
+
+	/**
+	 * Read the tasks locally from file if the file exists. The file is
+	 * mapped and each task is decoded when it is first used, with the
+	 * steps only decoded when they are shown. Files in the old format
+	 * are read in full and replaced the next time tasks are written.
+	 * The list isn't copied so nothing is decoded until it is used.
+	 *
+	 * @return The local task list (empty if there isn't one)
+	 * @throws IOException If an I/O exception occurs or the file is damaged
+	 */
+	public List<Task> readFromFile() throws IOException {
+		// The path to the file
+		Path p = Paths.get(PATH_TASKS);
+
+		// Nothing has been stored yet
+		if (!Files.exists(p)) {
+			return Collections.emptyList();
 		}
 
-		return newTasks;
+		// Open the snapshot of the tasks
+		return TaskSnapshot.open(p);
 	}
 
 	/**
@@ -282,13 +724,39 @@ public class TaskSync extends TimerTask implements Callable<ObservableList<Task>
 	}
 
 	/**
-	 * Write the currently loaded tasks to file
+	 * Writes the revision of the last sync to file along with the
+	 * email so it is only used for the same user
 	 *
+	 * @param cursor The revision of the last sync (null if unknown)
 	 * @throws IOException If an I/O exception occurs
 	 */
-	public void writeToFile() throws IOException {
-		// Just write the loaded task list to file
-		writeToFile(tasks);
+	private void writeCursor(String cursor) throws IOException {
+		// The path to the file
+		Path p = Paths.get(PATH_CURSOR);
+
+		// The server does not support changes
+		if (cursor == null || user == null) {
+			Files.deleteIfExists(p);
+			return;
+		}
+
+		// Create a writer for the path (overwrite existing)
+		try (BufferedWriter bw = Files.newBufferedWriter(p)) {
+			bw.write(user);
+			bw.newLine();
+			bw.write(cursor);
+		}
+	}
+
+	/**
+	 * Write the currently loaded tasks to file in the background. This
+	 * must be called on the JavaFX thread.
+	 *
+	 * @return A future completed once the tasks have been written
+	 */
+	public CompletableFuture<Void> writeToFile() {
+		// Just write a copy of the loaded task list to file
+		return persist(tasks.copy(), false);
 	}
 
 	/**
@@ -297,19 +765,8 @@ public class TaskSync extends TimerTask implements Callable<ObservableList<Task>
 	 * @param tasks The tasks to write to the file
 	 * @throws IOException If an I/O exception occurs
 	 */
-	private void writeToFile(ObservableList<Task> tasks) throws IOException {
-		// Open a new output stream
-		try (ObjectOutputStream out = new ObjectOutputStream(Files.newOutputStream(Paths.get(PATH_TASKS)))) {
-			// Write the number of tasks (so we know how many to read)
-			out.writeInt(tasks.size());
-			// Iterate the tasks and write them to file
-			tasks.forEach(t -> {
-				try {
-					t.writeTask(out);
-				} catch (IOException e) {
-					e.printStackTrace();
-				}
-			});
-		}
+	private void writeToFile(List<Task> tasks) throws IOException {
+		// Write a snapshot of the tasks
+		TaskSnapshot.write(tasks, Paths.get(PATH_TASKS));
 	}
-}
\ No newline at end of file
+}
@@ -2,6 +2,7 @@ package uk.ac.aber.cs221.group15;
 
 import javafx.application.Application;
 import javafx.scene.Scene;
+import javafx.scene.input.InputEvent;
 import javafx.scene.image.Image;
 import javafx.stage.Stage;
 import uk.ac.aber.cs221.group15.gui.Login;
@@ -17,7 +18,7 @@ import java.nio.file.Paths;
  * will then show the main window
  *
  * @author Darren White
- * @version 0.0.6
+ * @version 0.0.8
  */
 public class TaskerCLI extends Application {
 
@@ -103,13 +104,12 @@ public class TaskerCLI extends Application {
 	 */
 	@Override
 	public void start(Stage stage) {
-		// Store the user unique token/key
-		String token;
-
 		// Begin login protocol
-		if ((token = startLogin(stage)) != null) {
+		Login login = startLogin(stage);
+
+		if (login.getToken() != null) {
 			// Show the main overview window
-			startOverview(stage, token);
+			startOverview(stage, login.getToken(), login.getEmail());
 		}
 
 		// User did not login
@@ -120,9 +120,10 @@ public class TaskerCLI extends Application {
 	 * Displays the login window
 	 *
 	 * @param stage The primary stage to be used
-	 * @return The user token
+	 * @return The closed login window with the user token
+	 * (the token is null if the user did not login)
 	 */
-	public static String startLogin(Stage stage) {
+	public static Login startLogin(Stage stage) {
 		// Create login window
 		// Use primary stage as owner
 		Login login = new Login(stage);
@@ -136,7 +137,7 @@ public class TaskerCLI extends Application {
 		login.showAndWait();
 
 		// Return if we are logged in or not
-		return login.getToken();
+		return login;
 	}
 
 	/**
@@ -144,10 +145,11 @@ public class TaskerCLI extends Application {
 	 *
 	 * @param stage The primary stage
 	 * @param token The user token to use
+	 * @param email The email the user logged in with
 	 */
-	public static void startOverview(Stage stage, String token) {
+	public static void startOverview(Stage stage, String token, String email) {
 		// Start the task sync schedule
-		taskSync = new TaskSync(token);
+		taskSync = new TaskSync(token, email);
 
 		// Initialize and show main app
 		OverviewPane ovp = new OverviewPane(token);
@@ -162,6 +164,11 @@ public class TaskerCLI extends Application {
 		// Set the primary stage scene and the default title
 		stage.setScene(scene);
 		stage.setTitle(APP_NAME);
+		// Don't sync while minimized or while the user is away
+		stage.iconifiedProperty().addListener((observable, oldValue, newValue) ->
+				taskSync.getScheduler().setPaused(newValue));
+		scene.addEventFilter(InputEvent.ANY, e -> taskSync.getScheduler().activity());
+
 		// Maximize the window
 		stage.setMaximized(true);
 		// Show main overview window
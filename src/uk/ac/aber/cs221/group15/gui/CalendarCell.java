@@ -3,22 +3,22 @@ package uk.ac.aber.cs221.group15.gui;
 import javafx.scene.control.TableCell;
 import uk.ac.aber.cs221.group15.task.Task;
 
-import java.util.Calendar;
+import java.time.LocalDate;
 
 /**
- * This class is used to represent Calendar objects in a TableCell
+ * This class is used to represent dates in a TableCell
  * using the date format used to parse and format tasks
  *
  * @author Darren White
- * @version 0.0.1
+ * @version 0.0.2
  */
-public class CalendarCell<S> extends TableCell<S, Calendar> {
+public class CalendarCell<S> extends TableCell<S, LocalDate> {
 
 	/**
 	 * {@inheritDoc}
 	 */
 	@Override
-	protected void updateItem(Calendar item, boolean empty) {
+	protected void updateItem(LocalDate item, boolean empty) {
 		// Update the item
 		super.updateItem(item, empty);
 
@@ -27,7 +27,7 @@ public class CalendarCell<S> extends TableCell<S, Calendar> {
 			setText("");
 		} else {
 			// Format the date and set it as the text
-			setText(Task.DATE_FORMAT.format(item.getTime()));
+			setText(Task.DATE_FORMAT.format(item));
 		}
 	}
 }
\ No newline at end of file
@@ -2,7 +2,6 @@ package uk.ac.aber.cs221.group15.gui;
 
 import javafx.beans.binding.Bindings;
 import javafx.collections.FXCollections;
-import javafx.collections.ObservableList;
 import javafx.geometry.HPos;
 import javafx.geometry.Insets;
 import javafx.geometry.VPos;
@@ -16,11 +15,10 @@ import javafx.scene.paint.Paint;
 import uk.ac.aber.cs221.group15.TaskerCLI;
 import uk.ac.aber.cs221.group15.task.Task;
 
+import java.time.LocalDate;
 import java.util.ArrayList;
-import java.util.Calendar;
 import java.util.List;
 import java.util.concurrent.Callable;
-import java.util.stream.Collectors;
 
 /**
  * This class is used to represent the Dashboard in the Overview
@@ -28,7 +26,7 @@ import java.util.stream.Collectors;
  * upcoming tasks and a few major details
  *
  * @author Darren White
- * @version 0.0.12
+ * @version 0.0.14
  */
 public class DashboardView extends GridPane {
 
@@ -70,8 +68,8 @@ public class DashboardView extends GridPane {
 
 		// The outstanding tasks statistic
 		Callable<Integer> outstandingTasks = () -> {
-			// Filter tasks with status allocated
-			return TaskerCLI.getTaskSync().getTasks().filtered(t -> t.getStatus() == Task.ALLOCATED).size();
+			// Count tasks with status allocated
+			return TaskerCLI.getTaskSync().getTasks().count(Task.ALLOCATED);
 		};
 		// The color for the outstanding tasks stat
 		Callable<Paint> outstandingColor = () -> {
@@ -93,10 +91,9 @@ public class DashboardView extends GridPane {
 
 		// The statistic value for overdue tasks
 		Callable<Integer> overdueTasks = () -> {
-			// The current date
-			Calendar now = Calendar.getInstance();
-			// Filter tasks to dates in past with status allocated
-			return TaskerCLI.getTaskSync().getTasks().filtered(t -> t.getDateDue().compareTo(now) < 0 && t.getStatus() == Task.ALLOCATED).size();
+			// Count tasks due today or before with status allocated
+			// (the due date is the start of the day so the day itself counts)
+			return TaskerCLI.getTaskSync().getTasks().countDue(Task.ALLOCATED, LocalDate.now());
 		};
 		// The color for the overdue tasks stat
 		Callable<Paint> overdueColor = () -> {
@@ -148,19 +145,15 @@ public class DashboardView extends GridPane {
 
 		// Set the items property to display the upcoming tasks
 		table.itemsProperty().bind(Bindings.createObjectBinding(() -> {
-			ObservableList<Task> tasks = TaskerCLI.getTaskSync().getTasks();
 			// Filter the tasks which are allocated and to the maximum number
 			// of tasks to display
 			return FXCollections.observableList(
-					tasks.stream()
-							.filter(t -> t.getStatus() == Task.ALLOCATED)
-							.limit(MAX_TASKS)
-							.collect(Collectors.toList()));
+					TaskerCLI.getTaskSync().getTasks().filter(Task.ALLOCATED, MAX_TASKS));
 		}, TaskerCLI.getTaskSync().getTasks()));
 
 		// Create columns: task, due date, member, and status
 		TableColumn<Task, String> titleCol = new TableColumn<>("Task");
-		TableColumn<Task, Calendar> dueDateCol = new TableColumn<>("Due date");
+		TableColumn<Task, LocalDate> dueDateCol = new TableColumn<>("Due date");
 		TableColumn<Task, String> creatorCol = new TableColumn<>("Assigned by");
 
 		// Set each of the cell value factories (which fields they
@@ -1,5 +1,7 @@
 package uk.ac.aber.cs221.group15.gui;
 
+import javafx.application.Platform;
+import javafx.beans.property.SimpleBooleanProperty;
 import javafx.beans.property.SimpleStringProperty;
 import javafx.geometry.Insets;
 import javafx.geometry.Pos;
@@ -23,6 +25,7 @@ import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.nio.file.StandardOpenOption;
+import java.util.concurrent.CompletionException;
 
 /**
  * This class displays a Login window where
@@ -34,7 +37,7 @@ import java.nio.file.StandardOpenOption;
  * to enable a faster login process
  *
  * @author Darren White
- * @version 0.0.8
+ * @version 0.0.11
  */
 public class Login extends Stage {
 
@@ -74,11 +77,21 @@ public class Login extends Stage {
 	 */
 	private final SimpleStringProperty statusProp = new SimpleStringProperty();
 
+	/**
+	 * Used to check if a login request is being sent
+	 */
+	private final SimpleBooleanProperty busyProp = new SimpleBooleanProperty();
+
 	/**
 	 * Store the user token/key for further database requests
 	 */
 	private String token;
 
+	/**
+	 * The email the user logged in with
+	 */
+	private String email;
+
 	/**
 	 * Creates a new login window
 	 *
@@ -105,6 +118,16 @@ public class Login extends Stage {
 		return token;
 	}
 
+	/**
+	 * Gets the email the user logged in with, which stays
+	 * the same each time the user logs in
+	 *
+	 * @return The email (null if not logged in)
+	 */
+	public String getEmail() {
+		return token != null ? email : null;
+	}
+
 	/**
 	 * Initializes this windows components
 	 */
@@ -156,6 +179,8 @@ public class Login extends Stage {
 				cbRemember.isSelected()));
 		// Make the login button stretch
 		login.setMaxWidth(WIDTH);
+		// Don't allow another login while one is being sent
+		login.disableProperty().bind(busyProp);
 
 		// Set the label id for css
 		lblStatus.setId("lbl-status");
@@ -221,7 +246,7 @@ public class Login extends Stage {
 		// The path to for the user credentials
 		Path cache = Paths.get(PATH_LOGIN);
 
-		// Check if we are offline
+		// Check if we are offline (using the last known state)
 		if (!Service.checkConnection()) {
 			// If a user has logged in before, offer offline mode
 			// otherwise don't login
@@ -236,6 +261,7 @@ public class Login extends Stage {
 							Button src = (Button) event.getSource();
 							if (src.getText().equals("Yes")) {
 								token = TOKEN_OFFLINE;
+								Login.this.email = email;
 								close();
 							}
 
@@ -247,56 +273,92 @@ public class Login extends Stage {
 			return;
 		}
 
+		// Show that we are logging in
+		statusProp.set("Signing in...");
+		busyProp.set(true);
+
+		// Submit the email and password without blocking the ui
+		// and handle the result on the JavaFX thread
+		service.loginAsync(email, pwd).whenCompleteAsync((result, ex) -> {
+			busyProp.set(false);
+
+			if (ex == null) {
+				loggedIn(result, email, remember);
+			} else {
+				loginFailed(ex instanceof CompletionException ? ex.getCause() : ex);
+			}
+		}, Platform::runLater);
+	}
+
+	/**
+	 * Called on the JavaFX thread when the login request has completed
+	 *
+	 * @param result   The token received (null if there was an error)
+	 * @param email    The email specified in the ui
+	 * @param remember If the user is to be remembered for next time
+	 */
+	private void loggedIn(String result, String email, boolean remember) {
+		// The path to for the user credentials
+		Path cache = Paths.get(PATH_LOGIN);
+
+		// Store the token is successful (null if error)
+		token = result;
+		this.email = email;
+
+		// We encountered an error
+		if (token == null) {
+			// We didn't login as there was an error
+			// Display the message
+			statusProp.set(service.getErrorMessage());
+			return;
+		}
+
+		// We logged in successfully
+		statusProp.set("");
+
 		try {
-			// Submit the email and password
-			// and store the token is successful (null if error)
-			token = service.login(email, pwd);
-
-			// We encountered an error
-			if (token == null) {
-				// We didn't login as there was an error
-				// Display the message
-				statusProp.set(service.getErrorMessage());
+			// Save the credentials for next time if we need to
+			if (remember) {
+				// Create a writer for the path (overwrite existing)
+				try (BufferedWriter bw = Files.newBufferedWriter(cache, StandardOpenOption.CREATE)) {
+					// Write the email to the file
+					bw.write(email);
+					// Flush before close
+					bw.flush();
+					// Auto close
+				}
 			} else {
-				// We logged in successfully
-
-				// Save the credentials for next time if we need to
-				if (remember) {
-					// Create a writer for the path (overwrite existing)
-					try (BufferedWriter bw = Files.newBufferedWriter(cache, StandardOpenOption.CREATE)) {
-						// Write the email to the file
-						bw.write(email);
-						// Flush before close
-						bw.flush();
-						// Auto close
-					} catch (IOException e) {
-						System.err.println("Unable to save credentials!");
-						e.printStackTrace();
-					}
-				} else {
-					// We don't want to save the credentials so delete the
-					// existing ones if there is any
-					if (Files.exists(cache)) {
-						Files.delete(cache);
-					}
+				// We don't want to save the credentials so delete the
+				// existing ones if there is any
+				if (Files.exists(cache)) {
+					Files.delete(cache);
 				}
-
-				// Close this window
-				close();
 			}
 		} catch (IOException e) {
-			// Manage the exceptions
+			System.err.println("Unable to save credentials!");
 			e.printStackTrace();
+		}
+
+		// Close this window
+		close();
+	}
+
+	/**
+	 * Called on the JavaFX thread when the login request failed
+	 *
+	 * @param e The exception that caused the failure
+	 */
+	private void loginFailed(Throwable e) {
+		// Manage the exceptions
+		e.printStackTrace();
+		token = null;
+
+		if (e instanceof IOException) {
 			statusProp.set("Cannot connect to server!");
-			token = null;
-		} catch (ParseException e) {
-			e.printStackTrace();
+		} else if (e instanceof ParseException) {
 			statusProp.set("Cannot parse server data!");
-			token = null;
-		} catch (Exception e) {
-			e.printStackTrace();
+		} else {
 			statusProp.set("An internal error occured!");
-			token = null;
 		}
 	}
 }
\ No newline at end of file
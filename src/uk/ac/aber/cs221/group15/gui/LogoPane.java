@@ -1,15 +1,17 @@
 package uk.ac.aber.cs221.group15.gui;
 
 import javafx.geometry.Pos;
+import javafx.scene.control.Label;
 import javafx.scene.image.ImageView;
 import javafx.scene.layout.StackPane;
 import uk.ac.aber.cs221.group15.TaskerCLI;
 
 /**
- * This class will display a banner/logo for the client
+ * This class will display a banner/logo for the client and
+ * shows when the tasks haven't been synced with the server yet
  *
  * @author Darren White
- * @version 0.0.3
+ * @version 0.0.4
  */
 public class LogoPane extends StackPane {
 
@@ -33,5 +35,12 @@ public class LogoPane extends StackPane {
 		getChildren().add(img);
 		// Center the banner
 		setAlignment(img, Pos.CENTER_LEFT);
+
+		// Shown while the stored tasks are being synced
+		Label lblStale = new Label("Showing saved tasks - updating...");
+		lblStale.setId("lbl-stale");
+		lblStale.visibleProperty().bind(TaskerCLI.getTaskSync().staleProperty());
+		getChildren().add(lblStale);
+		setAlignment(lblStale, Pos.BOTTOM_RIGHT);
 	}
 }
\ No newline at end of file
@@ -13,7 +13,7 @@ import uk.ac.aber.cs221.group15.TaskerCLI;
  * where the current view will be at index 0 of the StackPane
  *
  * @author Darren White
- * @version 0.0.9
+ * @version 0.0.11
  */
 public class NavigationPane extends GridPane {
 
@@ -118,16 +118,18 @@ public class NavigationPane extends GridPane {
 	private void logout() {
 		// Hide the current window
 		getScene().getWindow().hide();
+		// Stop syncing the tasks of the user who logged out
+		TaskerCLI.getTaskSync().shutdown();
 
 		// Create new stage to restart
 		Stage stage = new Stage();
-		// Store the user unique token/key
-		String token;
 		// Show login again
-		if ((token = TaskerCLI.startLogin(stage)) != null) {
+		Login login = TaskerCLI.startLogin(stage);
+
+		if (login.getToken() != null) {
 			// If we are logged in
 			// Display main window again
-			TaskerCLI.startOverview(stage, token);
+			TaskerCLI.startOverview(stage, login.getToken(), login.getEmail());
 		}
 
 		// Application will exit automatically
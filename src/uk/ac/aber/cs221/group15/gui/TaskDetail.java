@@ -1,5 +1,6 @@
 package uk.ac.aber.cs221.group15.gui;
 
+import javafx.application.Platform;
 import javafx.beans.binding.Bindings;
 import javafx.geometry.HPos;
 import javafx.geometry.Insets;
@@ -16,15 +17,19 @@ import javafx.scene.layout.RowConstraints;
 import javafx.stage.Modality;
 import javafx.stage.Stage;
 import javafx.stage.Window;
-import org.json.simple.parser.ParseException;
 import uk.ac.aber.cs221.group15.TaskerCLI;
 import uk.ac.aber.cs221.group15.service.TaskService;
+import uk.ac.aber.cs221.group15.service.Update;
 import uk.ac.aber.cs221.group15.task.Step;
 import uk.ac.aber.cs221.group15.task.Task;
 
-import java.io.IOException;
-import java.util.Calendar;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 
 /**
  * This class will display a new window which
@@ -33,7 +38,7 @@ import java.util.Set;
  * set tasks as completed (or uncompleted)
  *
  * @author Darren White
- * @version 0.1.5
+ * @version 0.1.10
  */
 public class TaskDetail extends Stage {
 
@@ -55,7 +60,13 @@ public class TaskDetail extends Stage {
 	/**
 	 * The initial date completed of the task
 	 */
-	private final Calendar initialCompletedDate;
+	private final LocalDate initialCompletedDate;
+
+	/**
+	 * The time the task was completed in this window (null if it wasn't),
+	 * which is sent to the server as the task only keeps the date
+	 */
+	private Instant completedTime;
 
 	/**
 	 * Used to check if any comments have been edited
@@ -145,7 +156,9 @@ public class TaskDetail extends Stage {
 		grid.add(lblTitle, 0, currentRow++, 3, 1);
 
 		// Create and add the due date label
-		Label lblDateDue = new Label("Due by " + Task.DATE_FORMAT.format(task.getDateDue().getTime()));
+		// The server may not have set a due date
+		Label lblDateDue = new Label(task.getDateDue() == null ? "No due date" :
+				"Due by " + Task.DATE_FORMAT.format(task.getDateDue()));
 		lblDateDue.setId("lbl-task-due");
 		grid.add(lblDateDue, 0, currentRow++);
 
@@ -225,11 +238,13 @@ public class TaskDetail extends Stage {
 				task.setStatus(Task.ALLOCATED);
 				// Change the date completed as nothing
 				task.setDateCompleted(null);
+				completedTime = null;
 			} else if (task.getStatus() == Task.ALLOCATED || task.getStatus() == Task.ABANDONED) {
 				// Set the status as completed as all steps have comments
 				task.setStatus(Task.COMPLETED);
 				// Set the date completed as now
-				task.setDateCompleted(Calendar.getInstance());
+				completedTime = Instant.now();
+				task.setDateCompleted(LocalDate.now());
 			}
 
 			// Task status changed
@@ -243,15 +258,24 @@ public class TaskDetail extends Stage {
 		btnSave.setDefaultButton(true);
 		// Save the task on press and close the window
 		btnSave.setOnAction(e -> {
-			try {
-				// Save the task & steps
-				save(token, steps);
-				// Close this window
-				close();
-			} catch (IOException | ParseException ex) {
-				lblErr.setText("Unable to save changes: " + ex.getLocalizedMessage());
-				ex.printStackTrace();
-			}
+			// Don't allow saving again until this has finished
+			btnSave.setDisable(true);
+
+			// Save the task & steps without blocking the ui
+			// and handle the result on the JavaFX thread
+			save(token, steps).whenCompleteAsync((v, ex) -> {
+				btnSave.setDisable(false);
+
+				if (ex == null) {
+					// Close this window
+					close();
+				} else {
+					Throwable cause = ex instanceof CompletionException ? ex.getCause() : ex;
+
+					lblErr.setText("Unable to save changes: " + cause.getLocalizedMessage());
+					cause.printStackTrace();
+				}
+			}, Platform::runLater);
 		});
 		grid.add(btnSave, 1, currentRow++);
 
@@ -284,34 +308,41 @@ public class TaskDetail extends Stage {
 	}
 
 	/**
-	 * Saves the Task to the server with the performed edits if there are any
+	 * Saves the Task to the server with the performed edits if there are any.
+	 * The status and all of the edited comments are sent together without
+	 * blocking the ui.
 	 *
 	 * @param token The user token
 	 * @param steps The steps of the task
-	 * @throws IOException    If an I/O exception occurs
-	 * @throws ParseException If a ParseException occurs
+	 * @return A future completed once the changes have been saved
 	 */
-	private void save(String token, Set<Step> steps) throws IOException, ParseException {
+	private CompletableFuture<Void> save(String token, Set<Step> steps) {
+		// The changes to send (the values are read now as they may change)
+		List<Update> updates = new ArrayList<>();
+
 		// Check if changes were made
 		if (!edited) {
-			return;
+			return CompletableFuture.completedFuture(null);
 		}
 
 		// Update the task status if it has changed
 		if (task.getStatus() != initialStatus) {
-			service.updateTaskStatus(token, task);
+			updates.add(Update.status(task, completedTime));
 		}
 
 		// Update the edited task steps
 		for (Step s : steps) {
 			if (s.isEdited()) {
-				service.updateTaskStepComment(token, s);
+				updates.add(Update.comment(s.getId(), s.getComment()));
 			}
 		}
 
-		// Write the tasks to file first
-		TaskerCLI.getTaskSync().writeToFile();
-		// Then force a sync with the server
-		TaskerCLI.getTaskSync().forceSync();
+		// Sent in one request if the server accepts batches
+		CompletableFuture<Void> future = service.updateAsync(token, updates);
+
+		// Once saved, write the tasks to file (reading them on the JavaFX
+		// thread) and then force a sync with the server
+		return future.thenComposeAsync(v -> TaskerCLI.getTaskSync().writeToFile(), Platform::runLater)
+				.thenRun(() -> TaskerCLI.getTaskSync().forceSync());
 	}
 }
\ No newline at end of file
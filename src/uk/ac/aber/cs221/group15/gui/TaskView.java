@@ -16,7 +16,7 @@ import uk.ac.aber.cs221.group15.TaskerCLI;
 import uk.ac.aber.cs221.group15.service.TaskService;
 import uk.ac.aber.cs221.group15.task.Task;
 
-import java.util.Calendar;
+import java.time.LocalDate;
 
 /**
  * Used to display all tasks for the user in a table
@@ -24,7 +24,7 @@ import java.util.Calendar;
  * set as completed (or complete each step)
  *
  * @author Darren White
- * @version 0.0.3
+ * @version 0.0.4
  */
 public class TaskView extends GridPane {
 
@@ -73,9 +73,9 @@ public class TaskView extends GridPane {
 		// Create six columns: task, created date, due date,
 		// completed date, member and status
 		TableColumn<Task, String> titleCol = new TableColumn<>("Task");
-		TableColumn<Task, Calendar> createdDateCol = new TableColumn<>("Date created");
-		TableColumn<Task, Calendar> dueDateCol = new TableColumn<>("Due date");
-		TableColumn<Task, Calendar> completedDateCol = new TableColumn<>("Date completed");
+		TableColumn<Task, LocalDate> createdDateCol = new TableColumn<>("Date created");
+		TableColumn<Task, LocalDate> dueDateCol = new TableColumn<>("Due date");
+		TableColumn<Task, LocalDate> completedDateCol = new TableColumn<>("Date completed");
 		TableColumn<Task, String> creatorCol = new TableColumn<>("Assigned by");
 		TableColumn<Task, String> statusCol = new TableColumn<>("Status");
 
@@ -0,0 +1,134 @@
+package uk.ac.aber.cs221.group15.service;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import uk.ac.aber.cs221.group15.task.Task;
+
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+/**
+ * Tests sending a number of updates in one request, using the local api,
+ * and falling back to a request for each update
+ *
+ * @author Darren White
+ * @version 0.0.1
+ */
+public class BatchUpdateTest {
+
+	/**
+	 * The local stand-in for the api
+	 */
+	private LocalApiServer server;
+
+	/**
+	 * The transport used before the test
+	 */
+	private Transport transport;
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Before
+	public void setUp() throws Exception {
+		server = new LocalApiServer(10, 3);
+		transport = Service.getTransport();
+
+		// Send the requests to the local server
+		Service.setTransport(server.createTransport());
+		TaskService.setBatchSupported(true);
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@After
+	public void tearDown() throws Exception {
+		Service.setTransport(transport);
+		TaskService.setBatchSupported(true);
+		server.close();
+	}
+
+	/**
+	 * Creates the updates made when saving a task with two comments
+	 *
+	 * @return The updates
+	 */
+	private static List<Update> createUpdates() {
+		return Arrays.asList(Update.status(1, Task.COMPLETED, 1462060800),
+				Update.comment(1, "First\nsecond & third"),
+				Update.comment(2, "Another"));
+	}
+
+	/**
+	 * Checks the updates from createUpdates were made on the server
+	 */
+	private void checkUpdated() {
+		assertEquals(Task.COMPLETED, server.getTaskStatus(1));
+		assertEquals("First\nsecond & third", server.getStepComment(1));
+		assertEquals("Another", server.getStepComment(2));
+	}
+
+	/**
+	 * Test all of the updates are sent in one request
+	 *
+	 * @throws Exception If an exception occurs
+	 */
+	@Test
+	public void testBatch() throws Exception {
+		TaskService service = new TaskService();
+		int requests = server.getRequestCount();
+
+		service.update(LocalApiServer.TOKEN, createUpdates());
+
+		assertEquals(1, server.getRequestCount() - requests);
+		checkUpdated();
+	}
+
+	/**
+	 * Test each update in a batch has its own result
+	 *
+	 * @throws Exception If an exception occurs
+	 */
+	@Test
+	public void testBatchResults() throws Exception {
+		TaskService service = new TaskService();
+		int[] results = service.submitUpdates(LocalApiServer.TOKEN, Arrays.asList(
+				Update.comment(1, "Valid"), Update.comment(-1, "Invalid")));
+
+		assertArrayEquals(new int[]{Service.STATUS_SUCCESS, Service.STATUS_ERROR}, results);
+		assertNull(service.getErrorMessage(0));
+		assertEquals("Invalid step id", service.getErrorMessage(1));
+		// The valid update is still made
+		assertEquals("Valid", server.getStepComment(1));
+	}
+
+	/**
+	 * Test each update is sent on its own if the server doesn't
+	 * accept batches, and batches aren't tried again
+	 *
+	 * @throws Exception If an exception occurs
+	 */
+	@Test
+	public void testFallback() throws Exception {
+		TaskService service = new TaskService();
+		int requests = server.getRequestCount();
+
+		server.setBatchSupported(false);
+		service.update(LocalApiServer.TOKEN, createUpdates());
+
+		// The batch then one for each update
+		assertEquals(4, server.getRequestCount() - requests);
+		checkUpdated();
+
+		requests = server.getRequestCount();
+		service.update(LocalApiServer.TOKEN, createUpdates());
+
+		assertEquals(3, server.getRequestCount() - requests);
+	}
+}
@@ -0,0 +1,246 @@
+package uk.ac.aber.cs221.group15.service;
+
+import java.io.IOException;
+import java.net.ConnectException;
+import java.net.NoRouteToHostException;
+import java.net.UnknownHostException;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
+
+/**
+ * Keeps track of the connection to the server. The state is learnt from
+ * the outcome of the requests that are sent, so checking the state does
+ * not touch the network. The server is only probed when the state is not
+ * yet known or in the background while offline, until it is reachable.
+ *
+ * @author Darren White
+ * @version 0.0.1
+ */
+public class ConnectionMonitor {
+
+	/**
+	 * The number of failed requests in a row before we are offline
+	 */
+	private static final int FAILURE_THRESHOLD = 2;
+
+	/**
+	 * The time in seconds between each probe while offline
+	 */
+	private static final int PROBE_INTERVAL = 15;
+
+	/**
+	 * The listeners notified when the state changes
+	 */
+	private final List<Listener> listeners = new CopyOnWriteArrayList<>();
+
+	/**
+	 * Used to check if the server can be reached
+	 */
+	private final BooleanSupplier probe;
+
+	/**
+	 * The executor used to probe the server while offline
+	 */
+	private final ScheduledExecutorService executor;
+
+	/**
+	 * The current state (null until it is known)
+	 */
+	private State state;
+
+	/**
+	 * The number of requests that have failed in a row
+	 */
+	private int failures;
+
+	/**
+	 * The scheduled background probe if we are offline
+	 */
+	private ScheduledFuture<?> probeTask;
+
+	/**
+	 * Creates a new monitor which uses the probe to check
+	 * if the server can be reached
+	 *
+	 * @param probe Used to check if the server can be reached
+	 */
+	public ConnectionMonitor(BooleanSupplier probe) {
+		this.probe = probe;
+
+		// Create the executor for probing in the background
+		executor = Executors.newSingleThreadScheduledExecutor(r -> {
+			Thread t = new Thread(r);
+
+			// Make the thread daemon
+			if (!t.isDaemon()) {
+				t.setDaemon(true);
+			}
+
+			return t;
+		});
+	}
+
+	/**
+	 * Adds a listener to be notified when the state changes
+	 *
+	 * @param listener The listener to add
+	 */
+	public void addListener(Listener listener) {
+		listeners.add(listener);
+	}
+
+	/**
+	 * Gets the current state. If the state is not known yet the
+	 * server will be probed once to find out.
+	 *
+	 * @return The current state
+	 */
+	public State getState() {
+		synchronized (this) {
+			// Return the known state
+			if (state != null) {
+				return state;
+			}
+		}
+
+		// Don't hold the lock while probing
+		boolean reachable = probe.getAsBoolean();
+
+		synchronized (this) {
+			// Another thread may have learnt the state already
+			if (state == null) {
+				setState(reachable ? State.ONLINE : State.OFFLINE);
+			}
+
+			return state;
+		}
+	}
+
+	/**
+	 * Checks if the server is thought to be reachable. A degraded
+	 * connection is still online.
+	 *
+	 * @return If we are not offline
+	 */
+	public boolean isOnline() {
+		return getState() != State.OFFLINE;
+	}
+
+	/**
+	 * Probes the server in the background until it can be reached
+	 */
+	private void probe() {
+		if (probe.getAsBoolean()) {
+			reportSuccess();
+		}
+	}
+
+	/**
+	 * Removes a listener so it is no longer notified
+	 *
+	 * @param listener The listener to remove
+	 */
+	public void removeListener(Listener listener) {
+		listeners.remove(listener);
+	}
+
+	/**
+	 * Reports a request that failed. Failing to connect at all means we
+	 * are offline straight away, other failures degrade the connection
+	 * until too many have happened in a row.
+	 *
+	 * @param e The exception the request failed with
+	 */
+	public void reportFailure(IOException e) {
+		synchronized (this) {
+			failures++;
+
+			if (e instanceof ConnectException || e instanceof UnknownHostException ||
+					e instanceof NoRouteToHostException || failures >= FAILURE_THRESHOLD) {
+				setState(State.OFFLINE);
+			} else {
+				setState(State.DEGRADED);
+			}
+		}
+	}
+
+	/**
+	 * Reports a request (or probe) that succeeded
+	 */
+	public void reportSuccess() {
+		synchronized (this) {
+			failures = 0;
+			setState(State.ONLINE);
+		}
+	}
+
+	/**
+	 * Changes the state and notifies the listeners if it has changed.
+	 * Must be called while holding the lock.
+	 *
+	 * @param newState The new state
+	 */
+	private void setState(State newState) {
+		// The previous state
+		State oldState = state;
+
+		if (oldState == newState) {
+			return;
+		}
+
+		state = newState;
+
+		// Only probe in the background while offline
+		if (newState == State.OFFLINE) {
+			probeTask = executor.scheduleWithFixedDelay(this::probe,
+					PROBE_INTERVAL, PROBE_INTERVAL, TimeUnit.SECONDS);
+		} else if (probeTask != null) {
+			probeTask.cancel(false);
+			probeTask = null;
+		}
+
+		// Notify the listeners on another thread so they
+		// don't run while the lock is held
+		executor.execute(() -> listeners.forEach(l -> l.stateChanged(oldState, newState)));
+	}
+
+	/**
+	 * The state of the connection to the server
+	 */
+	public enum State {
+
+		/**
+		 * The last request succeeded
+		 */
+		ONLINE,
+
+		/**
+		 * A request has recently failed but we may still be online
+		 */
+		DEGRADED,
+
+		/**
+		 * The server cannot be reached
+		 */
+		OFFLINE
+	}
+
+	/**
+	 * A listener notified when the state of the connection changes
+	 */
+	public interface Listener {
+
+		/**
+		 * Called when the state has changed
+		 *
+		 * @param oldState The previous state (null if it was not known)
+		 * @param newState The new state
+		 */
+		void stateChanged(State oldState, State newState);
+	}
+}
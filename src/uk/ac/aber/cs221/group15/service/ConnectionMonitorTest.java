@@ -0,0 +1,146 @@
+package uk.ac.aber.cs221.group15.service;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.net.ConnectException;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests the connection moves between online, degraded and offline from
+ * the outcome of requests and the listeners are notified of each change
+ *
+ * @author Darren White
+ * @version 0.0.1
+ */
+public class ConnectionMonitorTest {
+
+	/**
+	 * The number of times the server was probed
+	 */
+	private final AtomicInteger probes = new AtomicInteger();
+
+	/**
+	 * The changes the listener was notified of
+	 */
+	private final BlockingQueue<String> changes = new LinkedBlockingQueue<>();
+
+	/**
+	 * The monitor being tested
+	 */
+	private ConnectionMonitor monitor;
+
+	/**
+	 * The listener recording the changes
+	 */
+	private ConnectionMonitor.Listener listener;
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Before
+	public void setUp() throws Exception {
+		// The server can always be reached when probed
+		monitor = new ConnectionMonitor(() -> probes.incrementAndGet() > 0);
+		listener = (oldState, newState) -> changes.add(oldState + " -> " + newState);
+		monitor.addListener(listener);
+	}
+
+	/**
+	 * Waits for the next change the listener is notified of
+	 *
+	 * @return The change (null if there wasn't one)
+	 * @throws InterruptedException If the thread is interrupted
+	 */
+	private String nextChange() throws InterruptedException {
+		return changes.poll(5, TimeUnit.SECONDS);
+	}
+
+	/**
+	 * Test the server is probed once to learn the state when it
+	 * isn't known yet
+	 *
+	 * @throws Exception If an exception occurs
+	 */
+	@Test
+	public void testUnknown() throws Exception {
+		assertEquals(ConnectionMonitor.State.ONLINE, monitor.getState());
+		assertTrue(monitor.isOnline());
+		assertEquals("null -> ONLINE", nextChange());
+
+		// The state is known now
+		monitor.getState();
+
+		assertEquals(1, probes.get());
+	}
+
+	/**
+	 * Test failed requests degrade the connection until too many fail in
+	 * a row and failing to connect is offline straight away
+	 *
+	 * @throws Exception If an exception occurs
+	 */
+	@Test
+	public void testTransitions() throws Exception {
+		monitor.reportSuccess();
+		assertEquals("null -> ONLINE", nextChange());
+
+		// One failure may be a blip
+		monitor.reportFailure(new IOException());
+		assertEquals(ConnectionMonitor.State.DEGRADED, monitor.getState());
+		assertTrue(monitor.isOnline());
+		assertEquals("ONLINE -> DEGRADED", nextChange());
+
+		// A second in a row is not
+		monitor.reportFailure(new IOException());
+		assertEquals(ConnectionMonitor.State.OFFLINE, monitor.getState());
+		assertFalse(monitor.isOnline());
+		assertEquals("DEGRADED -> OFFLINE", nextChange());
+
+		monitor.reportSuccess();
+		assertEquals(ConnectionMonitor.State.ONLINE, monitor.getState());
+		assertEquals("OFFLINE -> ONLINE", nextChange());
+
+		// The failures were reset by the success
+		monitor.reportFailure(new IOException());
+		assertEquals("ONLINE -> DEGRADED", nextChange());
+		monitor.reportSuccess();
+		assertEquals("DEGRADED -> ONLINE", nextChange());
+
+		// Not connecting at all is offline straight away
+		monitor.reportFailure(new ConnectException());
+		assertEquals(ConnectionMonitor.State.OFFLINE, monitor.getState());
+		assertEquals("ONLINE -> OFFLINE", nextChange());
+
+		// Only changes are notified
+		monitor.reportFailure(new ConnectException());
+		monitor.reportSuccess();
+		assertEquals("OFFLINE -> ONLINE", nextChange());
+		assertEquals(0, probes.get());
+	}
+
+	/**
+	 * Test a removed listener is no longer notified
+	 *
+	 * @throws Exception If an exception occurs
+	 */
+	@Test
+	public void testRemoveListener() throws Exception {
+		monitor.reportSuccess();
+		assertEquals("null -> ONLINE", nextChange());
+
+		monitor.removeListener(listener);
+		monitor.reportFailure(new ConnectException());
+
+		assertNull(changes.poll(200, TimeUnit.MILLISECONDS));
+	}
+}
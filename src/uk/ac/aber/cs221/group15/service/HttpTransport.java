@@ -0,0 +1,225 @@
+package uk.ac.aber.cs221.group15.service;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A Transport which uses HttpURLConnection with persistent (keep-alive)
+ * connections. The JRE keeps a pool of idle connections for each server
+ * and reuses them as long as every response body is read to the end and
+ * closed, which is what this transport makes sure of. Idle connections
+ * are evicted from the pool after the idle timeout.
+ *
+ * @author Darren White
+ * @version 0.0.2
+ */
+public class HttpTransport implements Transport {
+
+	/**
+	 * The default maximum number of idle connections kept per server
+	 */
+	public static final int DEFAULT_POOL_SIZE = 5;
+
+	/**
+	 * The default time in seconds before idle connections are evicted
+	 */
+	public static final int DEFAULT_IDLE_TIMEOUT = 30;
+
+	/**
+	 * The time in milliseconds to wait for a connection
+	 */
+	private static final int CONNECT_TIMEOUT = 10000;
+
+	/**
+	 * The time in milliseconds to wait for data to be read
+	 */
+	private static final int READ_TIMEOUT = 30000;
+
+	/**
+	 * The system property for enabling keep-alive connections
+	 */
+	private static final String PROP_KEEP_ALIVE = "http.keepAlive";
+
+	/**
+	 * The system property for the maximum idle connections per server
+	 */
+	private static final String PROP_MAX_CONNECTIONS = "http.maxConnections";
+
+	/**
+	 * The system property for the idle timeout of server connections
+	 */
+	private static final String PROP_IDLE_TIMEOUT = "http.keepAlive.time.server";
+
+	/**
+	 * If connections should be kept open after each request
+	 */
+	private final boolean keepAlive;
+
+	/**
+	 * Creates a new pooled transport with the default pool size
+	 * and idle timeout
+	 */
+	public HttpTransport() {
+		this(DEFAULT_POOL_SIZE, DEFAULT_IDLE_TIMEOUT, true);
+	}
+
+	/**
+	 * Creates a new transport. The pool size and idle timeout are read by
+	 * the JRE when the first connection is made so only the first transport
+	 * created will change them. If keep-alive is not used then a new
+	 * connection is made for every request.
+	 *
+	 * @param poolSize    The maximum number of idle connections per server
+	 * @param idleTimeout The time in seconds before idle connections are evicted
+	 * @param keepAlive   If connections should be reused
+	 */
+	public HttpTransport(int poolSize, int idleTimeout, boolean keepAlive) {
+		if (poolSize <= 0) {
+			throw new IllegalArgumentException("Invalid pool size: " + poolSize);
+		}
+
+		if (idleTimeout <= 0) {
+			throw new IllegalArgumentException("Invalid idle timeout: " + idleTimeout);
+		}
+
+		this.keepAlive = keepAlive;
+
+		// Don't override values which have been set by the user
+		setDefaultProperty(PROP_KEEP_ALIVE, "true");
+		setDefaultProperty(PROP_MAX_CONNECTIONS, String.valueOf(poolSize));
+		setDefaultProperty(PROP_IDLE_TIMEOUT, String.valueOf(idleTimeout));
+	}
+
+	/**
+	 * Opens a new connection to the url. The connection may reuse a
+	 * socket from the pool.
+	 *
+	 * @param url The url to connect to
+	 * @return The connection for the url
+	 * @throws IOException If an I/O exception occurs
+	 */
+	private HttpURLConnection open(String url) throws IOException {
+		// Get the connection for the url
+		HttpURLConnection conn = (HttpURLConnection) new URL(url).openConnection();
+
+		conn.setConnectTimeout(CONNECT_TIMEOUT);
+		conn.setReadTimeout(READ_TIMEOUT);
+
+		// Tell the server to close the connection after this request
+		if (!keepAlive) {
+			conn.setRequestProperty("Connection", "close");
+		}
+
+		return conn;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public boolean probe(String url) {
+		try {
+			// Connect to the server
+			HttpURLConnection conn = open(url);
+
+			// We don't need the body
+			conn.setRequestMethod("HEAD");
+
+			// Read the response code and close the stream so the
+			// connection is returned to the pool
+			try (Response r = read(conn)) {
+				// If we got here the server is reachable
+				return r.getCode() > 0;
+			}
+		} catch (IOException e) {
+			// Unable to connect to the server
+			return false;
+		}
+	}
+
+	/**
+	 * Reads the response from the connection. Error responses
+	 * are also returned so the error body can be drained.
+	 *
+	 * @param conn The connection to read the response from
+	 * @return The response
+	 * @throws IOException If an I/O exception occurs
+	 */
+	private Response read(HttpURLConnection conn) throws IOException {
+		// Get the response code (this sends the request)
+		int code = conn.getResponseCode();
+		// The body of the response
+		InputStream body = code < HttpURLConnection.HTTP_BAD_REQUEST ?
+				conn.getInputStream() : conn.getErrorStream();
+
+		// The response headers (only the last value of each is used)
+		Map<String, String> headers = new HashMap<>();
+
+		// Some responses (such as HEAD) may not have a body
+		if (body == null) {
+			body = new ByteArrayInputStream(new byte[0]);
+		}
+
+		for (Map.Entry<String, List<String>> e : conn.getHeaderFields().entrySet()) {
+			// The status line has no name
+			if (e.getKey() != null && !e.getValue().isEmpty()) {
+				headers.put(e.getKey(), e.getValue().get(e.getValue().size() - 1));
+			}
+		}
+
+		return new Response(code, body, headers);
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public Response send(String url, String post, Map<String, String> headers) throws IOException {
+		// Connect to the url
+		HttpURLConnection conn = open(url);
+
+		// Add the extra headers
+		headers.forEach(conn::setRequestProperty);
+
+		if (post != null) {
+			// The post data in bytes
+			byte[] data = post.getBytes(StandardCharsets.UTF_8);
+
+			// We want to send data to the connection
+			conn.setDoOutput(true);
+			// Set the length so the request isn't chunked
+			conn.setFixedLengthStreamingMode(data.length);
+			conn.setRequestProperty("Content-Type", "application/x-www-form-urlencoded");
+
+			// Open the output stream to send data
+			try (OutputStream out = conn.getOutputStream()) {
+				// Send the 'post' string
+				out.write(data);
+				// Flush the outputstream to force the data to be written
+				out.flush();
+			}
+		}
+
+		return read(conn);
+	}
+
+	/**
+	 * Sets the system property if it has not already been set
+	 *
+	 * @param key   The property key
+	 * @param value The value to set
+	 */
+	private static void setDefaultProperty(String key, String value) {
+		if (System.getProperty(key) == null) {
+			System.setProperty(key, value);
+		}
+	}
+}
@@ -0,0 +1,126 @@
+package uk.ac.aber.cs221.group15.service;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Tests connection reuse and compares the per-request latency of
+ * new connections with pooled connections using the local api
+ *
+ * @author Darren White
+ * @version 0.0.1
+ */
+public class HttpTransportTest {
+
+	/**
+	 * The number of requests to send for each transport
+	 */
+	private static final int REQUESTS = 200;
+
+	/**
+	 * The local stand-in for the api
+	 */
+	private LocalApiServer server;
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Before
+	public void setUp() throws Exception {
+		// Use the same amount of data as a typical account
+		server = new LocalApiServer(50, 3);
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@After
+	public void tearDown() throws Exception {
+		server.close();
+	}
+
+	/**
+	 * Sends the requests using the transport and returns the
+	 * average time taken for each request
+	 *
+	 * @param transport The transport to send requests with
+	 * @return The average time for each request in microseconds
+	 * @throws Exception If an exception occurs
+	 */
+	private long benchmark(Transport transport) throws Exception {
+		// The url to request the task list
+		String url = server.getApiUrl() + "?method=list_tasks&token=" + LocalApiServer.TOKEN;
+		long start = System.nanoTime();
+
+		for (int i = 0; i < REQUESTS; i++) {
+			// Send the request and read the whole response
+			try (Response r = transport.send(url, null)) {
+				assertEquals(200, r.getCode());
+			}
+		}
+
+		return (System.nanoTime() - start) / REQUESTS / 1000;
+	}
+
+	/**
+	 * Test that pooled connections are reused and that new connections
+	 * are made each time when not pooled
+	 *
+	 * @throws Exception If an exception occurs
+	 */
+	@Test
+	public void testConnectionReuse() throws Exception {
+		// Warm up the JIT for both transports
+		benchmark(new HttpTransport(1, 30, false));
+		benchmark(new HttpTransport());
+
+		// Start counting connections again
+		server.close();
+		server = new LocalApiServer(50, 3);
+
+		long before = benchmark(new HttpTransport(1, 30, false));
+		int unpooled = server.getConnectionCount();
+
+		System.out.println("New connection per request...");
+		System.out.println("Connections: " + unpooled);
+		System.out.println("Latency: " + before + "us/request");
+		System.out.println();
+
+		// Every request should have made a new connection
+		assertEquals(REQUESTS, unpooled);
+
+		server.close();
+		server = new LocalApiServer(50, 3);
+
+		long after = benchmark(new HttpTransport());
+		int pooled = server.getConnectionCount();
+
+		System.out.println("Pooled keep-alive connections...");
+		System.out.println("Connections: " + pooled);
+		System.out.println("Latency: " + after + "us/request");
+		System.out.println();
+
+		// Only one connection should be used
+		assertEquals(1, pooled);
+	}
+
+	/**
+	 * Test that the probe reuses the pooled connection
+	 *
+	 * @throws Exception If an exception occurs
+	 */
+	@Test
+	public void testProbe() throws Exception {
+		Transport transport = new HttpTransport();
+
+		for (int i = 0; i < 10; i++) {
+			assertEquals(true, transport.probe(server.getBaseUrl()));
+		}
+
+		// The probe should not leave connections open
+		assertEquals(1, server.getConnectionCount());
+	}
+}
@@ -0,0 +1,843 @@
+package uk.ac.aber.cs221.group15.service;
+
+import java.io.BufferedReader;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.UUID;
+import java.util.function.Predicate;
+import java.util.zip.CRC32;
+
+/**
+ * An append only journal of the updates made while offline. Each update
+ * is written as a record with its length and a CRC32 so a record which
+ * was only partly written (for example if the app was closed while
+ * writing) is found and cut off when the journal is opened. The header
+ * holds the replay cursor, the position of the first update which hasn't
+ * been sent, so replaying continues where it stopped. Updates which have
+ * been replaced by a later update of the same task status or step
+ * comment can be removed by compacting the journal. The key of each
+ * update is kept so it is sent with the same key every time. Journals
+ * written before updates had keys are upgraded when they are opened.
+ * <p>
+ * When records are forced to disk depends on the {@link SyncPolicy}.
+ *
+ * @author Darren White
+ * @version 0.0.6
+ */
+public class Journal implements Closeable {
+
+	/**
+	 * When the journal is forced to disk
+	 */
+	public enum SyncPolicy {
+
+		/**
+		 * After every record is written
+		 */
+		RECORD,
+
+		/**
+		 * After records are written, with records written at the same
+		 * time as another is being forced covered by one force
+		 */
+		GROUP,
+
+		/**
+		 * Only when the journal is closed
+		 */
+		CLOSE
+	}
+
+	/**
+	 * The magic number at the start of a journal ("TSKJ")
+	 */
+	private static final int MAGIC = 0x54534B4A;
+
+	/**
+	 * The version of the journal format
+	 */
+	private static final int VERSION = 2;
+
+	/**
+	 * The size of the header: magic, version, cursor and checksum
+	 */
+	static final int HEADER_SIZE = 17;
+
+	/**
+	 * The size of the length and checksum before each record
+	 */
+	private static final int RECORD_HEADER_SIZE = 8;
+
+	/**
+	 * The largest record which is read
+	 */
+	private static final int MAX_RECORD_SIZE = 1 << 20;
+
+	/**
+	 * The path of the journal
+	 */
+	private final Path path;
+
+	/**
+	 * The file channel used to read and write the journal
+	 * (replaced when the journal is compacted)
+	 */
+	private FileChannel channel;
+
+	/**
+	 * When the journal is forced to disk
+	 */
+	private final SyncPolicy policy;
+
+	/**
+	 * Used so only one thread forces the journal at a time
+	 */
+	private final Object syncLock = new Object();
+
+	/**
+	 * The updates after the cursor which have been sent, with the
+	 * position of the update as the key and the end as the value
+	 */
+	private final Map<Long, Long> acked = new HashMap<>();
+
+	/**
+	 * The version of the journal file that was opened
+	 */
+	private int version;
+
+	/**
+	 * The position of the first update which hasn't been sent
+	 */
+	private long cursor;
+
+	/**
+	 * The end of the last complete record
+	 */
+	private long end;
+
+	/**
+	 * The position up to which the journal has been forced to disk
+	 */
+	private volatile long synced;
+
+	/**
+	 * Opens the journal, creating it if it doesn't exist. Any record at
+	 * the end which is incomplete or damaged is removed.
+	 *
+	 * @param path   The path of the journal
+	 * @param policy When the journal is forced to disk
+	 * @throws IOException If an I/O exception occurs or this is not a journal
+	 */
+	public Journal(Path path, SyncPolicy policy) throws IOException {
+		this.path = path;
+		this.policy = policy;
+
+		open();
+
+		// Give the updates in an old journal keys which are then kept
+		if (version < VERSION) {
+			rewrite(update -> true);
+		}
+	}
+
+	/**
+	 * Marks the update as sent. Updates can be sent in any order but
+	 * the cursor is only moved past updates once every update before
+	 * them has been sent too, so an update which hasn't been sent is
+	 * never skipped.
+	 *
+	 * @param update The update which was sent
+	 * @throws IOException If an I/O exception occurs
+	 */
+	public synchronized void ack(Update update) throws IOException {
+		if (update.getStart() < cursor) {
+			return;
+		}
+
+		acked.put(update.getStart(), update.getEnd());
+
+		// Move the cursor past the updates which have all been sent
+		long oldCursor = cursor;
+		Long next;
+
+		while ((next = acked.remove(cursor)) != null) {
+			cursor = next;
+		}
+
+		if (cursor == oldCursor) {
+			return;
+		}
+
+		// Start again once everything has been sent
+		if (cursor == end) {
+			channel.truncate(HEADER_SIZE);
+			cursor = end = HEADER_SIZE;
+			synced = Math.min(synced, end);
+		}
+
+		writeHeader();
+
+		if (policy == SyncPolicy.RECORD) {
+			channel.force(false);
+		}
+	}
+
+	/**
+	 * Writes the update to the end of the journal. Depending on the sync
+	 * policy the update is on disk once this returns.
+	 *
+	 * @param update The update to write
+	 * @throws IOException If an I/O exception occurs
+	 */
+	public void append(Update update) throws IOException {
+		ByteBuffer buf = record(update);
+		long recordEnd;
+
+		synchronized (this) {
+			writeFully(channel, buf, end);
+			end += buf.limit();
+			recordEnd = end;
+			update.setPosition(recordEnd - buf.limit(), recordEnd);
+
+			if (policy == SyncPolicy.RECORD) {
+				channel.force(false);
+				synced = recordEnd;
+			}
+		}
+
+		if (policy == SyncPolicy.GROUP) {
+			sync(recordEnd);
+		}
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public synchronized void close() throws IOException {
+		if (channel.isOpen()) {
+			channel.force(false);
+			channel.close();
+		}
+	}
+
+	/**
+	 * Removes the updates which haven't been sent but have been replaced
+	 * by a later update, keeping only the last status of each task and
+	 * the last comment of each step. The remaining updates are written
+	 * to a new file which then replaces the journal, so the journal is
+	 * never left half compacted.
+	 *
+	 * @return The number of updates which were removed
+	 * @throws IOException If an I/O exception occurs
+	 */
+	public synchronized int compact() throws IOException {
+		// The end of the last update of each task status or step comment
+		Map<Long, Long> latest = new HashMap<>();
+		int count = 0;
+
+		// Only the positions are kept so the updates are read twice,
+		// updates which have been sent are skipped and removed anyway
+		for (Update update = readPending(cursor); update != null; update = readPending(update.getEnd())) {
+			latest.put(key(update), update.getEnd());
+			count++;
+		}
+
+		int removed = count - latest.size();
+
+		if (removed == 0) {
+			return 0;
+		}
+
+		rewrite(update -> latest.get(key(update)) == update.getEnd());
+
+		return removed;
+	}
+
+	/**
+	 * Writes the updates which haven't been sent to a new file which then
+	 * replaces the journal, so the journal is never left half written
+	 *
+	 * @param keep The updates to keep
+	 * @throws IOException If an I/O exception occurs
+	 */
+	private void rewrite(Predicate<Update> keep) throws IOException {
+		Path tmp = path.resolveSibling(path.getFileName() + ".tmp");
+
+		try (FileChannel out = FileChannel.open(tmp, StandardOpenOption.CREATE,
+				StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+			long pos = HEADER_SIZE;
+
+			writeFully(out, header(HEADER_SIZE), 0);
+
+			// Copy the updates in the order they were made
+			for (Update update = readPending(cursor); update != null; update = readPending(update.getEnd())) {
+				if (keep.test(update)) {
+					ByteBuffer buf = record(update);
+
+					writeFully(out, buf, pos);
+					pos += buf.limit();
+				}
+			}
+
+			out.force(false);
+		}
+
+		// The journal must be closed before it is replaced on some systems
+		channel.close();
+
+		try {
+			Files.move(tmp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+		} finally {
+			open();
+		}
+	}
+
+	/**
+	 * Reads an update from a record. Updates in a journal from before
+	 * updates had keys are given a new key.
+	 *
+	 * @param buf     The payload of the record
+	 * @param version The version of the journal
+	 * @return The update
+	 * @throws IOException If the record is not an update
+	 */
+	private static Update decode(ByteBuffer buf, int version) throws IOException {
+		int type = buf.get();
+		int id = buf.getInt();
+		UUID key = version < 2 ? UUID.randomUUID() : new UUID(buf.getLong(), buf.getLong());
+
+		switch (type) {
+			case Update.STATUS:
+				return new Update(key, type, id, buf.getInt(), buf.getLong(), null);
+			case Update.COMMENT:
+				int len = buf.getInt();
+				String comment = null;
+
+				if (len > buf.remaining()) {
+					throw new IOException("Journal comment is too long: " + len);
+				}
+
+				if (len >= 0) {
+					comment = new String(buf.array(), buf.position(), len, StandardCharsets.UTF_8);
+				}
+
+				return new Update(key, type, id, 0, 0, comment);
+			default:
+				throw new IOException("Unknown journal record type: " + type);
+		}
+	}
+
+	/**
+	 * Writes an update as the payload of a record
+	 *
+	 * @param update The update
+	 * @return The payload
+	 */
+	private static byte[] encode(Update update) {
+		byte[] comment = update.getComment() == null ? null :
+				update.getComment().getBytes(StandardCharsets.UTF_8);
+		ByteBuffer buf = ByteBuffer.allocate(37 + (comment == null ? 0 : comment.length));
+
+		buf.put((byte) update.getType()).putInt(update.getId())
+				.putLong(update.getKey().getMostSignificantBits())
+				.putLong(update.getKey().getLeastSignificantBits());
+
+		if (update.getType() == Update.STATUS) {
+			buf.putInt(update.getStatus()).putLong(update.getSeconds());
+		} else if (comment == null) {
+			buf.putInt(-1);
+		} else {
+			buf.putInt(comment.length).put(comment);
+		}
+
+		byte[] payload = new byte[buf.position()];
+
+		buf.flip();
+		buf.get(payload);
+
+		return payload;
+	}
+
+	/**
+	 * Imports the updates from the old text file used before the journal.
+	 * Each update in the file is the url, id, value and the post data
+	 * (which may be blank) on separate lines followed by a blank line.
+	 * The file is deleted once the updates are in the journal.
+	 *
+	 * @param path The path of the old file
+	 * @return The number of updates imported
+	 * @throws IOException If an I/O exception occurs
+	 */
+	public int importLegacy(Path path) throws IOException {
+		if (!Files.exists(path)) {
+			return 0;
+		}
+
+		int count = 0;
+
+		try (BufferedReader in = Files.newBufferedReader(path, StandardCharsets.UTF_8)) {
+			String url;
+
+			while ((url = in.readLine()) != null) {
+				if (!url.startsWith("http")) {
+					continue;
+				}
+
+				String id = in.readLine(), value = in.readLine();
+
+				if (id == null || value == null) {
+					break;
+				}
+
+				Map<String, String> args = parseQuery(url);
+
+				try {
+					if (url.contains("method=change_status")) {
+						append(Update.status(Integer.parseInt(id), Integer.parseInt(args.get("status")),
+								Long.parseLong(args.get("completed_time"))));
+					} else if (url.contains("method=set_task_step_comment")) {
+						append(Update.comment(Integer.parseInt(id), value));
+					} else {
+						continue;
+					}
+				} catch (NumberFormatException | NullPointerException e) {
+					System.err.println("Skipping invalid local update: " + url);
+					continue;
+				}
+
+				count++;
+			}
+		}
+
+		sync(end);
+		Files.delete(path);
+
+		return count;
+	}
+
+	/**
+	 * Gets the key used to find updates which replace each other
+	 *
+	 * @param update The update
+	 * @return The type and id of the update
+	 */
+	static long key(Update update) {
+		return (long) update.getType() << 32 | update.getId() & 0xFFFFFFFFL;
+	}
+
+	/**
+	 * Opens the journal file and recovers it
+	 *
+	 * @throws IOException If an I/O exception occurs or this is not a journal
+	 */
+	private void open() throws IOException {
+		acked.clear();
+		channel = FileChannel.open(path, StandardOpenOption.CREATE,
+				StandardOpenOption.READ, StandardOpenOption.WRITE);
+
+		try {
+			recover();
+		} catch (IOException e) {
+			channel.close();
+			throw e;
+		}
+	}
+
+	/**
+	 * Parses the arguments of a url
+	 *
+	 * @param url The url
+	 * @return The arguments with the name as the key
+	 */
+	private static Map<String, String> parseQuery(String url) {
+		Map<String, String> args = new HashMap<>();
+		int i = url.indexOf('?');
+
+		if (i != -1) {
+			for (String arg : url.substring(i + 1).split("&")) {
+				int eq = arg.indexOf('=');
+
+				if (eq != -1) {
+					args.put(arg.substring(0, eq), arg.substring(eq + 1));
+				}
+			}
+		}
+
+		return args;
+	}
+
+	/**
+	 * Checks if there are any updates which haven't been sent
+	 *
+	 * @return If there are updates after the cursor
+	 */
+	public synchronized boolean hasPending() {
+		return cursor < end;
+	}
+
+	/**
+	 * Reads the updates which haven't been sent, starting at the cursor
+	 *
+	 * @return The updates in the order they were made
+	 * @throws IOException If an I/O exception occurs
+	 */
+	public synchronized List<Update> pending() throws IOException {
+		List<Update> updates = new ArrayList<>();
+
+		for (Update update = readPending(cursor); update != null; update = readPending(update.getEnd())) {
+			updates.add(update);
+		}
+
+		return updates;
+	}
+
+	/**
+	 * Reads the update at the position
+	 *
+	 * @param pos The position of the record
+	 * @return The update or null if the position is the end of the journal
+	 * @throws IOException If an I/O exception occurs
+	 */
+	private synchronized Update read(long pos) throws IOException {
+		if (pos >= end) {
+			return null;
+		}
+
+		ByteBuffer payload = readRecord(pos, end);
+
+		// The records were checked when the journal was opened
+		if (payload == null) {
+			throw new IOException("Journal record is damaged at " + pos);
+		}
+
+		Update update = decode(payload, version);
+
+		update.setPosition(pos, pos + RECORD_HEADER_SIZE + payload.limit());
+
+		return update;
+	}
+
+	/**
+	 * Reads the first update at or after the position which hasn't been
+	 * acknowledged. Updates which were acknowledged before an earlier
+	 * update are still in the journal until the cursor moves past them.
+	 *
+	 * @param pos The position of the record
+	 * @return The update or null if there are no more updates to send
+	 * @throws IOException If an I/O exception occurs
+	 */
+	private synchronized Update readPending(long pos) throws IOException {
+		Long next;
+
+		while ((next = acked.get(pos)) != null) {
+			pos = next;
+		}
+
+		return read(pos);
+	}
+
+	/**
+	 * Creates the record for an update
+	 *
+	 * @param update The update
+	 * @return The record with its length and checksum
+	 */
+	private static ByteBuffer record(Update update) {
+		byte[] payload = encode(update);
+		ByteBuffer buf = ByteBuffer.allocate(RECORD_HEADER_SIZE + payload.length);
+		CRC32 crc = new CRC32();
+
+		crc.update(payload);
+		buf.putInt(payload.length).putInt((int) crc.getValue()).put(payload).flip();
+
+		return buf;
+	}
+
+	/**
+	 * Reads the record at the position, checking its length and checksum
+	 *
+	 * @param pos   The position of the record
+	 * @param limit The position the record must end before
+	 * @return The payload of the record or null if it is incomplete or damaged
+	 * @throws IOException If an I/O exception occurs
+	 */
+	private ByteBuffer readRecord(long pos, long limit) throws IOException {
+		if (pos + RECORD_HEADER_SIZE > limit) {
+			return null;
+		}
+
+		ByteBuffer header = ByteBuffer.allocate(RECORD_HEADER_SIZE);
+
+		readFully(header, pos);
+
+		int len = header.getInt(0);
+
+		if (len <= 0 || len > MAX_RECORD_SIZE || pos + RECORD_HEADER_SIZE + len > limit) {
+			return null;
+		}
+
+		ByteBuffer payload = ByteBuffer.allocate(len);
+		CRC32 crc = new CRC32();
+
+		readFully(payload, pos + RECORD_HEADER_SIZE);
+		crc.update(payload.array());
+
+		if (header.getInt(4) != (int) crc.getValue()) {
+			return null;
+		}
+
+		payload.rewind();
+
+		return payload;
+	}
+
+	/**
+	 * Reads bytes from the journal until the buffer is full
+	 *
+	 * @param buf The buffer to read into
+	 * @param pos The position to read from
+	 * @throws IOException If an I/O exception occurs or the end is reached
+	 */
+	private void readFully(ByteBuffer buf, long pos) throws IOException {
+		while (buf.hasRemaining()) {
+			int n = channel.read(buf, pos);
+
+			if (n < 0) {
+				throw new IOException("Unexpected end of journal");
+			}
+
+			pos += n;
+		}
+
+		buf.flip();
+	}
+
+	/**
+	 * Reads the header and finds the end of the last complete record.
+	 * Anything after it is removed.
+	 *
+	 * @throws IOException If an I/O exception occurs or this is not a journal
+	 */
+	private void recover() throws IOException {
+		long size = channel.size();
+
+		// A new journal
+		if (size < HEADER_SIZE) {
+			channel.truncate(0);
+			cursor = end = HEADER_SIZE;
+			version = VERSION;
+			writeHeader();
+			channel.force(false);
+			synced = end;
+			return;
+		}
+
+		ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+		CRC32 crc = new CRC32();
+
+		readFully(header, 0);
+
+		if (header.getInt(0) != MAGIC) {
+			throw new IOException("Not a journal");
+		}
+
+		version = header.get(4);
+
+		if (version < 1 || version > VERSION) {
+			throw new IOException("Unsupported journal version: " + version);
+		}
+
+		crc.update(header.array(), 0, HEADER_SIZE - 4);
+
+		// If the cursor was only partly written everything is sent again
+		cursor = header.getInt(13) == (int) crc.getValue() ? header.getLong(5) : HEADER_SIZE;
+
+		// Find the end of the last complete record
+		ByteBuffer payload;
+
+		end = HEADER_SIZE;
+
+		while ((payload = readRecord(end, size)) != null) {
+			end += RECORD_HEADER_SIZE + payload.limit();
+		}
+
+		if (end < size) {
+			System.err.println("Removing incomplete journal record at " + end);
+			channel.truncate(end);
+		}
+
+		// The cursor must be at the start of a record
+		if (cursor < HEADER_SIZE || cursor > end) {
+			cursor = HEADER_SIZE;
+		} else if (cursor != HEADER_SIZE) {
+			long pos = HEADER_SIZE;
+
+			while (pos < cursor) {
+				pos += RECORD_HEADER_SIZE + readRecord(pos, end).limit();
+			}
+
+			if (pos != cursor) {
+				cursor = HEADER_SIZE;
+			}
+		}
+
+		synced = end;
+	}
+
+	/**
+	 * Gets the updates which haven't been sent, starting at the cursor.
+	 * The updates are read from the journal one at a time as they are
+	 * iterated, so replaying doesn't need all of them in memory. Updates
+	 * appended while iterating are included. The journal must not be
+	 * compacted while iterating.
+	 *
+	 * @return The updates in the order they were made
+	 * @throws UncheckedIOException If an I/O exception occurs while iterating
+	 */
+	public Iterable<Update> replay() {
+		return () -> new Iterator<Update>() {
+
+			/**
+			 * The position of the next update
+			 */
+			private long pos;
+
+			/**
+			 * The next update (null if it hasn't been read)
+			 */
+			private Update next;
+
+			{
+				synchronized (Journal.this) {
+					pos = cursor;
+				}
+			}
+
+			/**
+			 * {@inheritDoc}
+			 */
+			@Override
+			public boolean hasNext() {
+				if (next == null) {
+					try {
+						next = readPending(pos);
+					} catch (IOException e) {
+						throw new UncheckedIOException(e);
+					}
+				}
+
+				return next != null;
+			}
+
+			/**
+			 * {@inheritDoc}
+			 */
+			@Override
+			public Update next() {
+				if (!hasNext()) {
+					throw new NoSuchElementException();
+				}
+
+				Update update = next;
+
+				pos = update.getEnd();
+				next = null;
+
+				return update;
+			}
+		};
+	}
+
+	/**
+	 * Forces the journal to disk if it hasn't been forced up to the
+	 * position already. Records written by other threads while waiting
+	 * are forced at the same time.
+	 *
+	 * @param pos The position which must be on disk
+	 * @throws IOException If an I/O exception occurs
+	 */
+	private void sync(long pos) throws IOException {
+		synchronized (syncLock) {
+			if (synced >= pos) {
+				return;
+			}
+
+			FileChannel ch;
+			long target;
+
+			synchronized (this) {
+				ch = channel;
+				target = end;
+			}
+
+			try {
+				ch.force(false);
+			} catch (ClosedChannelException e) {
+				// The journal was compacted and the new file is on disk
+				synchronized (this) {
+					if (ch == channel) {
+						throw e;
+					}
+				}
+			}
+
+			synced = Math.max(synced, target);
+		}
+	}
+
+	/**
+	 * Creates the header with the cursor
+	 *
+	 * @param cursor The position of the first update which hasn't been sent
+	 * @return The header
+	 */
+	private static ByteBuffer header(long cursor) {
+		ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+		CRC32 crc = new CRC32();
+
+		header.putInt(MAGIC).put((byte) VERSION).putLong(cursor);
+		crc.update(header.array(), 0, HEADER_SIZE - 4);
+		header.putInt((int) crc.getValue()).flip();
+
+		return header;
+	}
+
+	/**
+	 * Writes the header with the current cursor
+	 *
+	 * @throws IOException If an I/O exception occurs
+	 */
+	private void writeHeader() throws IOException {
+		writeFully(channel, header(cursor), 0);
+	}
+
+	/**
+	 * Writes all of the bytes in the buffer to a file
+	 *
+	 * @param channel The channel of the file
+	 * @param buf     The bytes to write
+	 * @param pos     The position to write at
+	 * @throws IOException If an I/O exception occurs
+	 */
+	private static void writeFully(FileChannel channel, ByteBuffer buf, long pos) throws IOException {
+		while (buf.hasRemaining()) {
+			pos += channel.write(buf, pos);
+		}
+	}
+}
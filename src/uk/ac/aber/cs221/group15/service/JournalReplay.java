@@ -0,0 +1,292 @@
+package uk.ac.aber.cs221.group15.service;
+
+import org.json.simple.parser.ParseException;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Predicate;
+
+/**
+ * Sends the updates in the journal to the server. Updates to different
+ * tasks and steps are sent at the same time, up to the concurrency
+ * limit, while the updates to the status of one task or the comment of
+ * one step are sent in the order they were made. Requests which fail
+ * while the server can still be reached are tried again after a delay
+ * which doubles each time. An update is only removed from the journal
+ * once the server has answered it, so anything which wasn't sent is
+ * replayed next time.
+ *
+ * @author Darren White
+ * @version 0.0.3
+ */
+public class JournalReplay {
+
+	/**
+	 * The default number of updates sent at the same time
+	 */
+	public static final int DEFAULT_CONCURRENCY = 4;
+
+	/**
+	 * The default number of times an update is tried
+	 */
+	public static final int DEFAULT_ATTEMPTS = 3;
+
+	/**
+	 * The default delay before an update is tried again (in ms)
+	 */
+	public static final long DEFAULT_BACKOFF = 500;
+
+	/**
+	 * The journal of updates to send
+	 */
+	private final Journal journal;
+
+	/**
+	 * The token for the current user
+	 */
+	private final String token;
+
+	/**
+	 * The updates the server accepted in the order they were answered
+	 */
+	private final List<Update> accepted = Collections.synchronizedList(new ArrayList<>());
+
+	/**
+	 * The keys of the updates which couldn't be sent, later updates with
+	 * the same key aren't sent so they are never sent out of order
+	 */
+	private final Set<Long> failed = ConcurrentHashMap.newKeySet();
+
+	/**
+	 * The number of updates the server rejected
+	 */
+	private final AtomicInteger rejected = new AtomicInteger();
+
+	/**
+	 * The number of updates sent at the same time
+	 */
+	private int concurrency = DEFAULT_CONCURRENCY;
+
+	/**
+	 * The number of times an update is tried
+	 */
+	private int attempts = DEFAULT_ATTEMPTS;
+
+	/**
+	 * The delay before an update is tried again the first time (in ms)
+	 */
+	private long backoff = DEFAULT_BACKOFF;
+
+	/**
+	 * If the replay has stopped as the server can't be reached
+	 */
+	private volatile boolean stopped;
+
+	/**
+	 * The first exception from writing to the journal
+	 */
+	private volatile IOException error;
+
+	/**
+	 * Creates a new replay of the journal
+	 *
+	 * @param journal The journal of updates to send
+	 * @param token   The token for the current user
+	 */
+	public JournalReplay(Journal journal, String token) {
+		this.journal = journal;
+		this.token = token;
+	}
+
+	/**
+	 * Gets the updates the server accepted. Updates to the same task
+	 * status or step comment are in the order they were made.
+	 *
+	 * @return The accepted updates
+	 */
+	public List<Update> getAccepted() {
+		return accepted;
+	}
+
+	/**
+	 * Gets the number of updates the server rejected. Rejected updates
+	 * are removed from the journal as they won't be accepted next time.
+	 *
+	 * @return The number of rejected updates
+	 */
+	public int getRejectedCount() {
+		return rejected.get();
+	}
+
+	/**
+	 * Checks if every update was answered by the server
+	 *
+	 * @return If nothing is left to replay
+	 */
+	public boolean isComplete() {
+		return !stopped && failed.isEmpty();
+	}
+
+	/**
+	 * Sends the updates in the journal, waiting until they have all been
+	 * answered or the server can't be reached
+	 *
+	 * @param skip Updates which shouldn't be sent (they are removed)
+	 * @throws IOException          If the journal can't be read or written
+	 * @throws InterruptedException If the thread is interrupted
+	 */
+	public void run(Predicate<Update> skip) throws IOException, InterruptedException {
+		// Limits the number of updates being sent
+		Semaphore permits = new Semaphore(concurrency);
+		// The last update for each task status or step comment
+		Map<Long, CompletableFuture<Void>> last = new HashMap<>();
+
+		// Each update is read from the journal as it is sent
+		for (Update update : journal.replay()) {
+			if (stopped) {
+				break;
+			}
+
+			if (skip.test(update)) {
+				journal.ack(update);
+				continue;
+			}
+
+			permits.acquire();
+
+			long key = Journal.key(update);
+			CompletableFuture<Void> previous = last.getOrDefault(key, CompletableFuture.completedFuture(null));
+
+			// Sent after the last update with the same key, and the
+			// permit is released however this one ends. An update which
+			// failed unexpectedly marks the key as failed so the later
+			// updates with the key aren't sent ahead of it.
+			last.put(key, previous.exceptionally(ex -> null)
+					.thenRunAsync(() -> send(update, key), Service.getExecutor())
+					.whenComplete((v, ex) -> {
+						if (ex != null) {
+							System.err.println("Unable to sync local update: " + update);
+							ex.printStackTrace();
+							failed.add(key);
+						}
+
+						permits.release();
+					}));
+		}
+
+		// Wait for the updates still being sent
+		CompletableFuture.allOf(last.values().toArray(new CompletableFuture<?>[0])).join();
+
+		if (error != null) {
+			throw error;
+		}
+	}
+
+	/**
+	 * Sends an update, trying again if the request fails while the server
+	 * can still be reached. The update is acknowledged in the journal once
+	 * the server has answered it.
+	 *
+	 * @param update The update to send
+	 * @param key    The key of the update
+	 */
+	private void send(Update update, long key) {
+		// Each request needs its own service for the result
+		TaskService service = new TaskService();
+		long delay = backoff;
+
+		for (int attempt = 1; !stopped && !failed.contains(key); attempt++) {
+			// The status of the request
+			int result;
+
+			try {
+				result = service.submitUpdate(token, update);
+			} catch (IOException | ParseException e) {
+				// Try again later if the server can still be reached
+				if (Service.checkConnection() && attempt < attempts) {
+					try {
+						Thread.sleep(delay);
+					} catch (InterruptedException ex) {
+						Thread.currentThread().interrupt();
+						stopped = true;
+						return;
+					}
+
+					delay *= 2;
+					continue;
+				}
+
+				result = Service.checkConnection() ? Service.STATUS_ERROR : Service.STATUS_OFFLINE;
+
+				if (result == Service.STATUS_ERROR) {
+					// Leave it in the journal and try again next time
+					System.err.println("Unable to sync local update: " + update);
+					e.printStackTrace();
+					failed.add(key);
+					return;
+				}
+			}
+
+			// Stop and continue from this update next time
+			if (result == Service.STATUS_OFFLINE) {
+				stopped = true;
+				return;
+			}
+
+			if (result == Service.STATUS_ERROR) {
+				// The server rejected it so it won't be accepted next time either
+				System.err.println("Local update was rejected: " + update + " " + service.getErrorMessage());
+				rejected.incrementAndGet();
+			} else {
+				accepted.add(update);
+			}
+
+			try {
+				journal.ack(update);
+			} catch (IOException e) {
+				error = e;
+				stopped = true;
+			}
+
+			return;
+		}
+	}
+
+	/**
+	 * Sets the delay before an update is tried again the first time,
+	 * which is doubled for each attempt after that
+	 *
+	 * @param backoff The delay in ms
+	 */
+	public void setBackoff(long backoff) {
+		this.backoff = backoff;
+	}
+
+	/**
+	 * Sets the number of times an update is tried before it is left
+	 * for the next replay
+	 *
+	 * @param attempts The number of attempts (at least 1)
+	 */
+	public void setAttempts(int attempts) {
+		this.attempts = Math.max(1, attempts);
+	}
+
+	/**
+	 * Sets the number of updates sent at the same time
+	 *
+	 * @param concurrency The number of updates (at least 1)
+	 */
+	public void setConcurrency(int concurrency) {
+		this.concurrency = Math.max(1, concurrency);
+	}
+}
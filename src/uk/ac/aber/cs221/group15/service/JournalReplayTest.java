@@ -0,0 +1,261 @@
+package uk.ac.aber.cs221.group15.service;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import uk.ac.aber.cs221.group15.task.Task;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests replaying the journal to the local api with updates to different
+ * tasks and steps sent at the same time
+ *
+ * @author Darren White
+ * @version 0.0.4
+ */
+public class JournalReplayTest {
+
+	/**
+	 * The local stand-in for the api
+	 */
+	private LocalApiServer server;
+
+	/**
+	 * The transport used before the test
+	 */
+	private Transport transport;
+
+	/**
+	 * The path of the journal
+	 */
+	private Path path;
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Before
+	public void setUp() throws Exception {
+		server = new LocalApiServer(10, 3);
+		transport = Service.getTransport();
+		path = Files.createTempFile("tasker", ".journal");
+		Files.delete(path);
+
+		// Send the requests to the local server
+		Service.setTransport(server.createTransport());
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@After
+	public void tearDown() throws Exception {
+		Service.setTransport(transport);
+		server.close();
+		Files.deleteIfExists(path);
+	}
+
+	/**
+	 * Test updates to the same step are sent in the order they were
+	 * made while other updates are sent at the same time
+	 *
+	 * @throws Exception If an exception occurs
+	 */
+	@Test
+	public void testOrder() throws Exception {
+		try (Journal journal = new Journal(path, Journal.SyncPolicy.CLOSE)) {
+			for (int i = 0; i < 10; i++) {
+				journal.append(Update.comment(1, "Comment " + i));
+				journal.append(Update.comment(2 + i, "Other " + i));
+			}
+
+			journal.append(Update.status(1, Task.COMPLETED, 1462060800));
+
+			JournalReplay replay = new JournalReplay(journal, LocalApiServer.TOKEN);
+			replay.setConcurrency(4);
+			replay.run(update -> false);
+
+			assertTrue(replay.isComplete());
+			assertFalse(journal.hasPending());
+			assertEquals(21, replay.getAccepted().size());
+			assertEquals("Comment 9", server.getStepComment(1));
+			assertEquals(Task.COMPLETED, server.getTaskStatus(1));
+
+			// The accepted updates to the first step are still in order
+			List<String> comments = new ArrayList<>();
+
+			for (Update update : replay.getAccepted()) {
+				if (update.getType() == Update.COMMENT && update.getId() == 1) {
+					comments.add(update.getComment());
+				}
+			}
+
+			for (int i = 0; i < 10; i++) {
+				assertEquals("Comment " + i, comments.get(i));
+			}
+		}
+	}
+
+	/**
+	 * Test an update which failed unexpectedly keeps the later updates
+	 * to the same step in the journal rather than sending them ahead of
+	 * it, while other updates are still sent and don't wait forever for
+	 * a permit
+	 *
+	 * @throws Exception If an exception occurs
+	 */
+	@Test(timeout = 10000)
+	public void testUnexpectedFailure() throws Exception {
+		Transport local = server.createTransport();
+		AtomicInteger failures = new AtomicInteger(1);
+
+		// The first request fails with an unchecked exception
+		Service.setTransport(new Transport() {
+
+			@Override
+			public boolean probe(String url) {
+				return local.probe(url);
+			}
+
+			@Override
+			public Response send(String url, String post, Map<String, String> headers) throws IOException {
+				if (failures.getAndDecrement() > 0) {
+					throw new IllegalStateException("Unexpected failure");
+				}
+
+				return local.send(url, post, headers);
+			}
+		});
+
+		try (Journal journal = new Journal(path, Journal.SyncPolicy.CLOSE)) {
+			for (int i = 0; i < 3; i++) {
+				journal.append(Update.comment(1, "Comment " + i));
+			}
+
+			journal.append(Update.comment(2, "Other"));
+
+			JournalReplay replay = new JournalReplay(journal, LocalApiServer.TOKEN);
+			replay.setConcurrency(1);
+			replay.run(update -> false);
+
+			// Only the update to the other step was sent
+			assertEquals(1, replay.getAccepted().size());
+			assertEquals("Other", server.getStepComment(2));
+			assertEquals("", server.getStepComment(1));
+			assertFalse(replay.isComplete());
+			assertTrue(journal.hasPending());
+
+			// They are sent in order next time
+			replay = new JournalReplay(journal, LocalApiServer.TOKEN);
+			replay.run(update -> false);
+
+			assertEquals(3, replay.getAccepted().size());
+			assertEquals("Comment 2", server.getStepComment(1));
+			assertTrue(replay.isComplete());
+		}
+	}
+
+	/**
+	 * Test an update whose response was lost is only made once when it
+	 * is sent again
+	 *
+	 * @throws Exception If an exception occurs
+	 */
+	@Test
+	public void testLostResponse() throws Exception {
+		Transport local = server.createTransport();
+		AtomicInteger lost = new AtomicInteger(1);
+
+		// The server makes the first update but the response is lost
+		Service.setTransport(new Transport() {
+
+			@Override
+			public boolean probe(String url) {
+				return local.probe(url);
+			}
+
+			@Override
+			public Response send(String url, String post, Map<String, String> headers) throws IOException {
+				Response response = local.send(url, post, headers);
+
+				if (lost.getAndDecrement() > 0) {
+					response.close();
+					throw new IOException("Connection reset");
+				}
+
+				return response;
+			}
+		});
+
+		try (Journal journal = new Journal(path, Journal.SyncPolicy.CLOSE)) {
+			long revision = server.getRevision();
+
+			journal.append(Update.status(1, Task.COMPLETED, 0));
+
+			JournalReplay replay = new JournalReplay(journal, LocalApiServer.TOKEN);
+			replay.setBackoff(1);
+			replay.run(update -> false);
+
+			assertTrue(replay.isComplete());
+			assertEquals(1, replay.getAccepted().size());
+			assertEquals(1, server.getDuplicateCount());
+			// The task was only changed once
+			assertEquals(revision + 1, server.getRevision());
+		}
+	}
+
+	/**
+	 * Test a request which fails while the server can be reached is tried
+	 * again and skipped updates aren't sent
+	 *
+	 * @throws Exception If an exception occurs
+	 */
+	@Test
+	public void testRetry() throws Exception {
+		Transport local = server.createTransport();
+		AtomicInteger failures = new AtomicInteger(1);
+
+		// Fail the first request
+		Service.setTransport(new Transport() {
+
+			@Override
+			public boolean probe(String url) {
+				return local.probe(url);
+			}
+
+			@Override
+			public Response send(String url, String post, Map<String, String> headers) throws IOException {
+				if (failures.getAndDecrement() > 0) {
+					throw new IOException("Connection reset");
+				}
+
+				return local.send(url, post, headers);
+			}
+		});
+
+		try (Journal journal = new Journal(path, Journal.SyncPolicy.CLOSE)) {
+			journal.append(Update.comment(1, "Sent"));
+			journal.append(Update.status(2, Task.COMPLETED, 0));
+
+			JournalReplay replay = new JournalReplay(journal, LocalApiServer.TOKEN);
+			replay.setBackoff(1);
+			replay.run(update -> update.getType() == Update.STATUS);
+
+			assertTrue(replay.isComplete());
+			assertFalse(journal.hasPending());
+			assertEquals(1, replay.getAccepted().size());
+			assertEquals("Sent", server.getStepComment(1));
+			assertEquals(Task.ALLOCATED, server.getTaskStatus(2));
+		}
+	}
+}
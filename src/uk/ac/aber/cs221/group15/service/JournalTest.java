@@ -0,0 +1,406 @@
+package uk.ac.aber.cs221.group15.service;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import uk.ac.aber.cs221.group15.task.Task;
+
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.UUID;
+import java.util.zip.CRC32;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests writing local updates to the journal, recovering it after an
+ * incomplete write, compacting it, replaying it from the cursor and
+ * upgrading an old journal
+ *
+ * @author Darren White
+ * @version 0.0.5
+ */
+public class JournalTest {
+
+	/**
+	 * The path of the journal
+	 */
+	private Path path;
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Before
+	public void setUp() throws Exception {
+		path = Files.createTempFile("tasker", ".journal");
+		Files.delete(path);
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@After
+	public void tearDown() throws Exception {
+		Files.deleteIfExists(path);
+	}
+
+	/**
+	 * Test updates are read back after the journal is opened again and
+	 * replaying continues after the updates which were sent
+	 *
+	 * @throws Exception If an exception occurs
+	 */
+	@Test
+	public void testReplay() throws Exception {
+		try (Journal journal = new Journal(path, Journal.SyncPolicy.RECORD)) {
+			journal.append(Update.status(1, Task.COMPLETED, 1462060800));
+			// Comments can have new lines now
+			journal.append(Update.comment(2, "Line one\nLine two \u00e9"));
+			journal.append(Update.comment(3, null));
+		}
+
+		try (Journal journal = new Journal(path, Journal.SyncPolicy.RECORD)) {
+			List<Update> pending = journal.pending();
+
+			assertEquals(3, pending.size());
+			assertEquals(Update.STATUS, pending.get(0).getType());
+			assertEquals(1, pending.get(0).getId());
+			assertEquals(Task.COMPLETED, pending.get(0).getStatus());
+			assertEquals(1462060800, pending.get(0).getSeconds());
+			assertEquals("Line one\nLine two \u00e9", pending.get(1).getComment());
+			assertNull(pending.get(2).getComment());
+
+			journal.ack(pending.get(0));
+		}
+
+		try (Journal journal = new Journal(path, Journal.SyncPolicy.RECORD)) {
+			List<Update> pending = journal.pending();
+
+			// Continues from the cursor
+			assertEquals(2, pending.size());
+			assertEquals(2, pending.get(0).getId());
+
+			journal.ack(pending.get(0));
+			journal.ack(pending.get(1));
+
+			assertTrue(journal.pending().isEmpty());
+		}
+
+		// Once everything is sent the journal starts again
+		assertEquals(Journal.HEADER_SIZE, Files.size(path));
+	}
+
+	/**
+	 * Test the cursor only moves past updates once all of the updates
+	 * before them have been sent
+	 *
+	 * @throws Exception If an exception occurs
+	 */
+	@Test
+	public void testAckOutOfOrder() throws Exception {
+		try (Journal journal = new Journal(path, Journal.SyncPolicy.RECORD)) {
+			journal.append(Update.status(1, Task.COMPLETED, 0));
+			journal.append(Update.comment(2, "Comment"));
+			journal.append(Update.comment(3, "Comment"));
+
+			List<Update> pending = journal.pending();
+
+			// The second update was answered first
+			journal.ack(pending.get(1));
+		}
+
+		try (Journal journal = new Journal(path, Journal.SyncPolicy.RECORD)) {
+			List<Update> pending = journal.pending();
+
+			// Nothing is lost but the second update is sent again
+			assertEquals(3, pending.size());
+
+			journal.ack(pending.get(2));
+			journal.ack(pending.get(0));
+
+			assertEquals(1, journal.pending().size());
+			assertEquals(2, journal.pending().get(0).getId());
+		}
+	}
+
+	/**
+	 * Test a large journal is replayed one update at a time with updates
+	 * appended while replaying included
+	 *
+	 * @throws Exception If an exception occurs
+	 */
+	@Test
+	public void testReplayStream() throws Exception {
+		int count = 100000;
+
+		try (Journal journal = new Journal(path, Journal.SyncPolicy.CLOSE)) {
+			for (int i = 0; i < count; i++) {
+				journal.append(Update.comment(i, "Comment " + i));
+			}
+
+			long start = System.nanoTime();
+			int replayed = 0;
+
+			for (Update update : journal.replay()) {
+				assertEquals(replayed, update.getId());
+
+				if (replayed++ == 0) {
+					journal.append(Update.status(count, Task.COMPLETED, 0));
+				}
+
+				journal.ack(update);
+			}
+
+			System.out.println("Replayed " + replayed + " updates in " +
+					(System.nanoTime() - start) / 1000000 + "ms");
+			System.out.println();
+
+			assertEquals(count + 1, replayed);
+			assertFalse(journal.hasPending());
+		}
+	}
+
+	/**
+	 * Test a record which was only partly written is removed
+	 *
+	 * @throws Exception If an exception occurs
+	 */
+	@Test
+	public void testTornTail() throws Exception {
+		try (Journal journal = new Journal(path, Journal.SyncPolicy.CLOSE)) {
+			journal.append(Update.status(1, Task.COMPLETED, 0));
+			journal.append(Update.comment(2, "Comment"));
+		}
+
+		long size = Files.size(path);
+
+		// Cut off the end of the last record
+		try (FileChannel channel = FileChannel.open(path, StandardOpenOption.WRITE)) {
+			channel.truncate(size - 3);
+		}
+
+		try (Journal journal = new Journal(path, Journal.SyncPolicy.CLOSE)) {
+			assertEquals(1, journal.pending().size());
+
+			// New updates are written after the last complete record
+			journal.append(Update.comment(3, "Comment"));
+		}
+
+		// Add some garbage to the end
+		Files.write(path, new byte[]{0, 0, 0, 9, 1, 2}, StandardOpenOption.APPEND);
+
+		try (Journal journal = new Journal(path, Journal.SyncPolicy.CLOSE)) {
+			List<Update> pending = journal.pending();
+
+			assertEquals(2, pending.size());
+			assertEquals(3, pending.get(1).getId());
+		}
+	}
+
+	/**
+	 * Test updates written at the same time are all kept when forcing
+	 * the journal to disk in groups
+	 *
+	 * @throws Exception If an exception occurs
+	 */
+	@Test
+	public void testGroupCommit() throws Exception {
+		try (Journal journal = new Journal(path, Journal.SyncPolicy.GROUP)) {
+			List<Thread> threads = new ArrayList<>();
+
+			for (int i = 0; i < 4; i++) {
+				int thread = i;
+
+				threads.add(new Thread(() -> {
+					try {
+						for (int j = 0; j < 25; j++) {
+							journal.append(Update.status(thread * 100 + j, Task.ALLOCATED, 0));
+						}
+					} catch (Exception e) {
+						throw new RuntimeException(e);
+					}
+				}));
+			}
+
+			threads.forEach(Thread::start);
+
+			for (Thread t : threads) {
+				t.join();
+			}
+		}
+
+		try (Journal journal = new Journal(path, Journal.SyncPolicy.GROUP)) {
+			assertEquals(100, journal.pending().size());
+		}
+	}
+
+	/**
+	 * Test only the last status of each task and comment of each step
+	 * are kept when the journal is compacted
+	 *
+	 * @throws Exception If an exception occurs
+	 */
+	@Test
+	public void testCompact() throws Exception {
+		try (Journal journal = new Journal(path, Journal.SyncPolicy.RECORD)) {
+			journal.append(Update.status(1, Task.ALLOCATED, 0));
+
+			// Already sent so it is removed too
+			journal.ack(journal.pending().get(0));
+
+			// Toggle a task ten times and retype a comment
+			for (int i = 0; i < 10; i++) {
+				journal.append(Update.status(1, i % 2 == 0 ? Task.COMPLETED : Task.ALLOCATED, i));
+				journal.append(Update.comment(2, "Comment " + i));
+			}
+
+			// A step with the same id as the task is kept
+			journal.append(Update.comment(1, "Other"));
+
+			assertEquals(18, journal.compact());
+			// Nothing left to remove
+			assertEquals(0, journal.compact());
+
+			List<Update> pending = journal.pending();
+
+			assertEquals(3, pending.size());
+			assertEquals(Update.STATUS, pending.get(0).getType());
+			assertEquals(Task.ALLOCATED, pending.get(0).getStatus());
+			assertEquals(9, pending.get(0).getSeconds());
+			assertEquals("Comment 9", pending.get(1).getComment());
+			assertEquals("Other", pending.get(2).getComment());
+
+			// Still works after being replaced
+			journal.append(Update.comment(3, "New"));
+			journal.ack(pending.get(0));
+		}
+
+		try (Journal journal = new Journal(path, Journal.SyncPolicy.RECORD)) {
+			List<Update> pending = journal.pending();
+
+			assertEquals(3, pending.size());
+			assertEquals("New", pending.get(2).getComment());
+		}
+	}
+
+	/**
+	 * Test the key of each update is kept in the journal
+	 *
+	 * @throws Exception If an exception occurs
+	 */
+	@Test
+	public void testKey() throws Exception {
+		Update status = Update.status(1, Task.COMPLETED, 0);
+		Update comment = Update.comment(2, "Comment");
+
+		try (Journal journal = new Journal(path, Journal.SyncPolicy.RECORD)) {
+			journal.append(status);
+			journal.append(comment);
+			journal.append(Update.comment(2, "Replaced"));
+		}
+
+		try (Journal journal = new Journal(path, Journal.SyncPolicy.RECORD)) {
+			List<Update> pending = journal.pending();
+
+			assertEquals(status.getKey(), pending.get(0).getKey());
+			assertEquals(comment.getKey(), pending.get(1).getKey());
+
+			// Compacting keeps the keys too
+			journal.compact();
+
+			assertEquals(status.getKey(), journal.pending().get(0).getKey());
+		}
+	}
+
+	/**
+	 * Test a journal from before updates had keys is upgraded with the
+	 * cursor and updates kept
+	 *
+	 * @throws Exception If an exception occurs
+	 */
+	@Test
+	public void testUpgrade() throws Exception {
+		ByteBuffer buf = ByteBuffer.allocate(100);
+		CRC32 crc = new CRC32();
+
+		// The header with the cursor after the first update
+		buf.putInt(0x54534B4A).put((byte) 1).putLong(Journal.HEADER_SIZE + 25);
+		crc.update(buf.array(), 0, buf.position());
+		buf.putInt((int) crc.getValue());
+
+		for (int i = 1; i <= 2; i++) {
+			byte[] payload = ByteBuffer.allocate(17).put((byte) Update.STATUS)
+					.putInt(i).putInt(Task.COMPLETED).putLong(i * 100).array();
+
+			crc.reset();
+			crc.update(payload);
+			buf.putInt(payload.length).putInt((int) crc.getValue()).put(payload);
+		}
+
+		Files.write(path, Arrays.copyOf(buf.array(), buf.position()));
+
+		UUID key;
+
+		try (Journal journal = new Journal(path, Journal.SyncPolicy.RECORD)) {
+			List<Update> pending = journal.pending();
+
+			assertEquals(1, pending.size());
+			assertEquals(2, pending.get(0).getId());
+			assertEquals(200, pending.get(0).getSeconds());
+
+			key = pending.get(0).getKey();
+		}
+
+		// The key given when upgrading is kept
+		try (Journal journal = new Journal(path, Journal.SyncPolicy.RECORD)) {
+			assertEquals(key, journal.pending().get(0).getKey());
+		}
+	}
+
+	/**
+	 * Test the updates in the old text file are imported
+	 *
+	 * @throws Exception If an exception occurs
+	 */
+	@Test
+	public void testImportLegacy() throws Exception {
+		Path legacy = Files.createTempFile("tasker", ".sync");
+
+		Files.write(legacy, Arrays.asList(
+				"http://localhost/api.php?method=change_status&token=offline-mode&id=4&status=2&completed_time=100",
+				"4",
+				"2",
+				"",
+				"http://localhost/api.php?method=set_task_step_comment&token=offline-mode&id=7",
+				"7",
+				"A comment",
+				"comment=A+comment",
+				""), StandardCharsets.UTF_8);
+
+		try (Journal journal = new Journal(path, Journal.SyncPolicy.RECORD)) {
+			assertEquals(2, journal.importLegacy(legacy));
+
+			List<Update> pending = journal.pending();
+
+			assertEquals(Update.STATUS, pending.get(0).getType());
+			assertEquals(4, pending.get(0).getId());
+			assertEquals(Task.COMPLETED, pending.get(0).getStatus());
+			assertEquals(100, pending.get(0).getSeconds());
+			assertEquals(Update.COMMENT, pending.get(1).getType());
+			assertEquals(7, pending.get(1).getId());
+			assertEquals("A comment", pending.get(1).getComment());
+		}
+
+		assertFalse(Files.exists(legacy));
+	}
+}
@@ -0,0 +1,672 @@
+package uk.ac.aber.cs221.group15.service;
+
+import org.json.simple.parser.ParseException;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.Reader;
+
+/**
+ * Reads a JSON document one token at a time from a stream. Unlike the
+ * JSONParser no tree is built, so the memory used does not depend on the
+ * size of the document and values can be used as soon as they are read.
+ *
+ * @author Darren White
+ * @version 0.0.1
+ */
+public class JsonReader implements Closeable {
+
+	/**
+	 * An array with no values read yet
+	 */
+	private static final int EMPTY_ARRAY = 1;
+
+	/**
+	 * An array with at least one value read
+	 */
+	private static final int NONEMPTY_ARRAY = 2;
+
+	/**
+	 * An object with no names read yet
+	 */
+	private static final int EMPTY_OBJECT = 3;
+
+	/**
+	 * An object where a name has been read but not its value
+	 */
+	private static final int DANGLING_NAME = 4;
+
+	/**
+	 * An object with at least one name and value read
+	 */
+	private static final int NONEMPTY_OBJECT = 5;
+
+	/**
+	 * The document before the top level value
+	 */
+	private static final int EMPTY_DOCUMENT = 6;
+
+	/**
+	 * The document after the top level value
+	 */
+	private static final int NONEMPTY_DOCUMENT = 7;
+
+	/**
+	 * The stream to read from
+	 */
+	private final Reader in;
+
+	/**
+	 * The characters read from the stream
+	 */
+	private final char[] buf = new char[8192];
+
+	/**
+	 * Used to build strings
+	 */
+	private final StringBuilder sb = new StringBuilder();
+
+	/**
+	 * The scopes that have been entered (arrays, objects and the document)
+	 */
+	private int[] stack = new int[32];
+
+	/**
+	 * The number of scopes on the stack
+	 */
+	private int depth;
+
+	/**
+	 * The position of the next character in the buffer
+	 */
+	private int pos;
+
+	/**
+	 * The number of characters in the buffer
+	 */
+	private int limit;
+
+	/**
+	 * The number of characters read before the buffer
+	 */
+	private int offset;
+
+	/**
+	 * The next token if it has been peeked
+	 */
+	private Token peeked;
+
+	/**
+	 * Creates a new reader for the stream
+	 *
+	 * @param in The stream to read from
+	 */
+	public JsonReader(Reader in) {
+		this.in = in;
+		stack[depth++] = EMPTY_DOCUMENT;
+	}
+
+	/**
+	 * Consumes the start of an array
+	 *
+	 * @throws IOException    If an I/O exception occurs
+	 * @throws ParseException If the next token is not the start of an array
+	 */
+	public void beginArray() throws IOException, ParseException {
+		expect(Token.BEGIN_ARRAY);
+		push(EMPTY_ARRAY);
+	}
+
+	/**
+	 * Consumes the start of an object
+	 *
+	 * @throws IOException    If an I/O exception occurs
+	 * @throws ParseException If the next token is not the start of an object
+	 */
+	public void beginObject() throws IOException, ParseException {
+		expect(Token.BEGIN_OBJECT);
+		push(EMPTY_OBJECT);
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public void close() throws IOException {
+		in.close();
+	}
+
+	/**
+	 * Consumes the end of the current array
+	 *
+	 * @throws IOException    If an I/O exception occurs
+	 * @throws ParseException If the next token is not the end of an array
+	 */
+	public void endArray() throws IOException, ParseException {
+		expect(Token.END_ARRAY);
+		depth--;
+	}
+
+	/**
+	 * Consumes the end of the current object
+	 *
+	 * @throws IOException    If an I/O exception occurs
+	 * @throws ParseException If the next token is not the end of an object
+	 */
+	public void endObject() throws IOException, ParseException {
+		expect(Token.END_OBJECT);
+		depth--;
+	}
+
+	/**
+	 * Creates an exception for an unexpected character
+	 *
+	 * @param c The unexpected character (-1 for the end of the stream)
+	 * @return The exception to throw
+	 */
+	private ParseException error(int c) {
+		// The position of the character in the stream
+		int position = offset + pos - 1;
+
+		if (c == -1) {
+			return new ParseException(position, ParseException.ERROR_UNEXPECTED_TOKEN, null);
+		}
+
+		return new ParseException(position, ParseException.ERROR_UNEXPECTED_CHAR, (char) c);
+	}
+
+	/**
+	 * Consumes the next token which must be the expected token
+	 *
+	 * @param expected The expected token
+	 * @throws IOException    If an I/O exception occurs
+	 * @throws ParseException If the next token is not expected
+	 */
+	private void expect(Token expected) throws IOException, ParseException {
+		if (peek() != expected) {
+			throw new ParseException(offset + pos, ParseException.ERROR_UNEXPECTED_TOKEN, peeked);
+		}
+
+		peeked = null;
+	}
+
+	/**
+	 * Checks if the current array or object has another value
+	 *
+	 * @return If there is another value
+	 * @throws IOException    If an I/O exception occurs
+	 * @throws ParseException If the document is invalid
+	 */
+	public boolean hasNext() throws IOException, ParseException {
+		Token t = peek();
+
+		return t != Token.END_OBJECT && t != Token.END_ARRAY && t != Token.END_DOCUMENT;
+	}
+
+	/**
+	 * Reads the next value as an int. Numbers and strings containing
+	 * numbers can both be read without creating a string.
+	 *
+	 * @return The int value
+	 * @throws IOException    If an I/O exception occurs
+	 * @throws ParseException If the document is invalid
+	 */
+	public int nextInt() throws IOException, ParseException {
+		// The token being read
+		Token t = peek();
+
+		if (t != Token.NUMBER && t != Token.STRING) {
+			throw new ParseException(offset + pos, ParseException.ERROR_UNEXPECTED_TOKEN, t);
+		}
+
+		peeked = null;
+
+		int value = 0;
+		boolean negative = false;
+		boolean digits = false;
+		int c;
+
+		// Read the sign
+		if ((c = read()) == '-') {
+			negative = true;
+			c = read();
+		}
+
+		// Read the digits
+		while (c >= '0' && c <= '9') {
+			value = value * 10 + (c - '0');
+			digits = true;
+			c = read();
+		}
+
+		if (t == Token.STRING) {
+			// A string must be closed with a quote
+			if (c != '"') {
+				throw new NumberFormatException("Not an int at position " + (offset + pos - 1));
+			}
+		} else if (c != -1) {
+			// Push back the character after the number
+			pos--;
+		}
+
+		if (!digits) {
+			throw new NumberFormatException("Not an int at position " + (offset + pos - 1));
+		}
+
+		return negative ? -value : value;
+	}
+
+	/**
+	 * Reads the next name in an object
+	 *
+	 * @return The name
+	 * @throws IOException    If an I/O exception occurs
+	 * @throws ParseException If the next token is not a name
+	 */
+	public String nextName() throws IOException, ParseException {
+		expect(Token.NAME);
+
+		return readString();
+	}
+
+	/**
+	 * Reads the next character that is not whitespace
+	 *
+	 * @return The character or -1 at the end of the stream
+	 * @throws IOException If an I/O exception occurs
+	 */
+	private int nextNonWhitespace() throws IOException {
+		int c;
+
+		do {
+			c = read();
+		} while (c == ' ' || c == '\n' || c == '\r' || c == '\t');
+
+		return c;
+	}
+
+	/**
+	 * Reads the next value as a string. Numbers and booleans are returned
+	 * as they appear in the document and null is returned for null.
+	 *
+	 * @return The string value
+	 * @throws IOException    If an I/O exception occurs
+	 * @throws ParseException If the next token is not a value
+	 */
+	public String nextString() throws IOException, ParseException {
+		switch (peek()) {
+			case STRING:
+				peeked = null;
+				return readString();
+			case NUMBER:
+			case BOOLEAN:
+				peeked = null;
+				return readLiteral();
+			case NULL:
+				peeked = null;
+				readLiteral();
+				return null;
+			default:
+				throw new ParseException(offset + pos, ParseException.ERROR_UNEXPECTED_TOKEN, peeked);
+		}
+	}
+
+	/**
+	 * Gets the type of the next token without consuming it
+	 *
+	 * @return The next token
+	 * @throws IOException    If an I/O exception occurs
+	 * @throws ParseException If the document is invalid
+	 */
+	public Token peek() throws IOException, ParseException {
+		if (peeked != null) {
+			return peeked;
+		}
+
+		// The current scope
+		int scope = stack[depth - 1];
+		int c;
+
+		switch (scope) {
+			case EMPTY_ARRAY:
+			case NONEMPTY_ARRAY:
+				stack[depth - 1] = NONEMPTY_ARRAY;
+				c = nextNonWhitespace();
+
+				if (c == ']') {
+					return peeked = Token.END_ARRAY;
+				} else if (scope == NONEMPTY_ARRAY) {
+					// Values are separated with commas
+					if (c != ',') {
+						throw error(c);
+					}
+				} else if (c == -1) {
+					throw error(c);
+				} else {
+					// This is the first value
+					pos--;
+				}
+				break;
+			case EMPTY_OBJECT:
+			case NONEMPTY_OBJECT:
+				stack[depth - 1] = DANGLING_NAME;
+				c = nextNonWhitespace();
+
+				if (c == '}') {
+					return peeked = Token.END_OBJECT;
+				} else if (scope == NONEMPTY_OBJECT) {
+					// Names are separated with commas
+					if (c != ',') {
+						throw error(c);
+					}
+
+					c = nextNonWhitespace();
+				}
+
+				// Names are always strings
+				if (c != '"') {
+					throw error(c);
+				}
+
+				return peeked = Token.NAME;
+			case DANGLING_NAME:
+				stack[depth - 1] = NONEMPTY_OBJECT;
+
+				// Names are separated from values with a colon
+				if ((c = nextNonWhitespace()) != ':') {
+					throw error(c);
+				}
+				break;
+			case EMPTY_DOCUMENT:
+				stack[depth - 1] = NONEMPTY_DOCUMENT;
+				break;
+			default:
+				// Only whitespace is allowed after the top level value
+				if ((c = nextNonWhitespace()) != -1) {
+					throw error(c);
+				}
+
+				return peeked = Token.END_DOCUMENT;
+		}
+
+		// The start of a value
+		c = nextNonWhitespace();
+
+		switch (c) {
+			case '{':
+				return peeked = Token.BEGIN_OBJECT;
+			case '[':
+				return peeked = Token.BEGIN_ARRAY;
+			case '"':
+				return peeked = Token.STRING;
+			case 't':
+			case 'f':
+				pos--;
+				return peeked = Token.BOOLEAN;
+			case 'n':
+				pos--;
+				return peeked = Token.NULL;
+			default:
+				if (c == '-' || (c >= '0' && c <= '9')) {
+					pos--;
+					return peeked = Token.NUMBER;
+				}
+
+				throw error(c);
+		}
+	}
+
+	/**
+	 * Pushes a scope onto the stack
+	 *
+	 * @param scope The scope entered
+	 */
+	private void push(int scope) {
+		// Grow the stack if it is full
+		if (depth == stack.length) {
+			int[] newStack = new int[depth * 2];
+			System.arraycopy(stack, 0, newStack, 0, depth);
+			stack = newStack;
+		}
+
+		stack[depth++] = scope;
+	}
+
+	/**
+	 * Reads the next character from the buffer and fills it if needed
+	 *
+	 * @return The next character or -1 at the end of the stream
+	 * @throws IOException If an I/O exception occurs
+	 */
+	private int read() throws IOException {
+		if (pos == limit) {
+			offset += limit;
+			pos = 0;
+			limit = in.read(buf, 0, buf.length);
+
+			// End of the stream
+			if (limit <= 0) {
+				limit = 0;
+				return -1;
+			}
+		}
+
+		return buf[pos++];
+	}
+
+	/**
+	 * Reads an unquoted number or literal
+	 *
+	 * @return The literal as it appears in the document
+	 * @throws IOException    If an I/O exception occurs
+	 * @throws ParseException If the literal is invalid
+	 */
+	private String readLiteral() throws IOException, ParseException {
+		sb.setLength(0);
+
+		int c;
+
+		// Read until a separator
+		while ((c = read()) != -1 && c != ',' && c != '}' && c != ']' && c != ' ' &&
+				c != '\n' && c != '\r' && c != '\t') {
+			sb.append((char) c);
+		}
+
+		// Push back the separator
+		if (c != -1) {
+			pos--;
+		}
+
+		// The literal that was read
+		String s = sb.toString();
+
+		// Check the keywords are valid
+		if (Character.isLetter(s.charAt(0)) && !s.equals("true") &&
+				!s.equals("false") && !s.equals("null")) {
+			throw new ParseException(offset + pos, ParseException.ERROR_UNEXPECTED_TOKEN, s);
+		}
+
+		return s;
+	}
+
+	/**
+	 * Reads the rest of a string after the opening quote
+	 *
+	 * @return The string without quotes
+	 * @throws IOException    If an I/O exception occurs
+	 * @throws ParseException If the string is invalid
+	 */
+	private String readString() throws IOException, ParseException {
+		sb.setLength(0);
+
+		while (true) {
+			// The start of the characters to copy
+			int start = pos;
+
+			// Find the end quote or an escape in the buffer
+			while (pos < limit) {
+				char c = buf[pos++];
+
+				if (c == '"') {
+					sb.append(buf, start, pos - start - 1);
+					return sb.toString();
+				} else if (c == '\\') {
+					sb.append(buf, start, pos - start - 1);
+					readEscape();
+					start = pos;
+				}
+			}
+
+			// Copy the rest of the buffer and fill it again
+			sb.append(buf, start, pos - start);
+
+			int c = read();
+
+			if (c == -1) {
+				throw error(c);
+			}
+
+			// Process the character again in the loop
+			pos--;
+		}
+	}
+
+	/**
+	 * Reads an escape sequence after the backslash
+	 *
+	 * @throws IOException    If an I/O exception occurs
+	 * @throws ParseException If the escape sequence is invalid
+	 */
+	private void readEscape() throws IOException, ParseException {
+		int c = read();
+
+		switch (c) {
+			case 'b':
+				sb.append('\b');
+				break;
+			case 'f':
+				sb.append('\f');
+				break;
+			case 'n':
+				sb.append('\n');
+				break;
+			case 'r':
+				sb.append('\r');
+				break;
+			case 't':
+				sb.append('\t');
+				break;
+			case 'u':
+				int value = 0;
+
+				// Read the four hex digits
+				for (int i = 0; i < 4; i++) {
+					int digit = Character.digit(read(), 16);
+
+					if (digit < 0) {
+						throw error(c);
+					}
+
+					value = (value << 4) | digit;
+				}
+
+				sb.append((char) value);
+				break;
+			case '"':
+			case '\\':
+			case '/':
+				sb.append((char) c);
+				break;
+			default:
+				throw error(c);
+		}
+	}
+
+	/**
+	 * Skips the next value including any nested arrays and objects
+	 *
+	 * @throws IOException    If an I/O exception occurs
+	 * @throws ParseException If the document is invalid
+	 */
+	public void skipValue() throws IOException, ParseException {
+		switch (peek()) {
+			case BEGIN_ARRAY:
+				beginArray();
+
+				while (hasNext()) {
+					skipValue();
+				}
+
+				endArray();
+				break;
+			case BEGIN_OBJECT:
+				beginObject();
+
+				while (hasNext()) {
+					nextName();
+					skipValue();
+				}
+
+				endObject();
+				break;
+			default:
+				nextString();
+		}
+	}
+
+	/**
+	 * The types of token in a JSON document
+	 */
+	public enum Token {
+
+		/**
+		 * The start of an array
+		 */
+		BEGIN_ARRAY,
+
+		/**
+		 * The end of an array
+		 */
+		END_ARRAY,
+
+		/**
+		 * The start of an object
+		 */
+		BEGIN_OBJECT,
+
+		/**
+		 * The end of an object
+		 */
+		END_OBJECT,
+
+		/**
+		 * A name in an object
+		 */
+		NAME,
+
+		/**
+		 * A string value
+		 */
+		STRING,
+
+		/**
+		 * A number value
+		 */
+		NUMBER,
+
+		/**
+		 * A true or false value
+		 */
+		BOOLEAN,
+
+		/**
+		 * A null value
+		 */
+		NULL,
+
+		/**
+		 * The end of the document
+		 */
+		END_DOCUMENT
+	}
+}
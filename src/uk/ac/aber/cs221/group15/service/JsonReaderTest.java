@@ -0,0 +1,215 @@
+package uk.ac.aber.cs221.group15.service;
+
+import org.json.simple.JSONArray;
+import org.json.simple.JSONObject;
+import org.json.simple.parser.JSONParser;
+import org.junit.Test;
+import uk.ac.aber.cs221.group15.task.Task;
+
+import java.io.StringReader;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+
+/**
+ * Tests the streaming JSON reader and compares decoding a task list
+ * with it against building a tree with the JSONParser
+ *
+ * @author Darren White
+ * @version 0.0.2
+ */
+public class JsonReaderTest {
+
+	/**
+	 * The number of tasks used for the comparison
+	 */
+	private static final int TASKS = 20000;
+
+	/**
+	 * The number of times each decoder is run
+	 */
+	private static final int ITERATIONS = 10;
+
+	/**
+	 * Creates a list_tasks response in the same format as the server
+	 *
+	 * @param count The number of tasks in the response
+	 * @return The response as a string
+	 */
+	@SuppressWarnings("unchecked")
+	private static String createTaskList(int count) {
+		JSONArray tasks = new JSONArray();
+
+		for (int id = 1; id <= count; id++) {
+			JSONObject task = new JSONObject();
+
+			// All values are strings as with the real server
+			task.put("id", String.valueOf(id));
+			task.put("title", "Task \"" + id + "\"\n\u00e9");
+			task.put("created_name", "Member " + (id % 10));
+			task.put("created_time", "2016-05-01");
+			task.put("due_by", "2016-06-01");
+			task.put("completed_time", "2016-05-20");
+			task.put("status", String.valueOf(id % 3));
+			task.put("unused", new JSONArray());
+
+			tasks.add(task);
+		}
+
+		JSONObject response = new JSONObject();
+		JSONObject result = new JSONObject();
+
+		response.put("tasks", tasks);
+		result.put("status", "success");
+		result.put("response", response);
+
+		return result.toJSONString();
+	}
+
+	/**
+	 * Decodes the tasks by building a tree with the JSONParser
+	 *
+	 * @param json The list_tasks response
+	 * @return The decoded tasks
+	 * @throws Exception If an exception occurs
+	 */
+	private static List<Task> parseTree(String json) throws Exception {
+		List<Task> tasks = new ArrayList<>();
+		JSONObject result = (JSONObject) new JSONParser().parse(new StringReader(json));
+		JSONArray taskList = (JSONArray) ((JSONObject) result.get("response")).get("tasks");
+
+		for (Object o : taskList) {
+			JSONObject obj = (JSONObject) o;
+			int status = Integer.parseInt((String) obj.get("status"));
+
+			tasks.add(new Task(Integer.parseInt((String) obj.get("id")),
+					(String) obj.get("title"), (String) obj.get("created_name"),
+					parseDate((String) obj.get("created_time")), parseDate((String) obj.get("due_by")),
+					status == Task.COMPLETED ? parseDate((String) obj.get("completed_time")) : null,
+					status));
+		}
+
+		return tasks;
+	}
+
+	/**
+	 * Parses a date in the task date format
+	 *
+	 * @param s The date string
+	 * @return The parsed date
+	 * @throws Exception If an exception occurs
+	 */
+	private static LocalDate parseDate(String s) throws Exception {
+		return LocalDate.parse(s, Task.DATE_FORMAT);
+	}
+
+	/**
+	 * Test reading each type of value and skipping nested values
+	 *
+	 * @throws Exception If an exception occurs
+	 */
+	@Test
+	public void testReader() throws Exception {
+		JsonReader in = new JsonReader(new StringReader(
+				"{\"a\" : [1, -20, \"30\"], \"b\":{\"c\":[{}, []]}, \"d\":\"x\\u0041\\\"\\n\"," +
+						" \"e\":true, \"f\":null, \"g\":1.5e3}"));
+
+		in.beginObject();
+
+		assertEquals("a", in.nextName());
+		in.beginArray();
+		assertEquals(1, in.nextInt());
+		assertEquals(-20, in.nextInt());
+		assertEquals(30, in.nextInt());
+		assertFalse(in.hasNext());
+		in.endArray();
+
+		assertEquals("b", in.nextName());
+		in.skipValue();
+
+		assertEquals("d", in.nextName());
+		assertEquals("xA\"\n", in.nextString());
+		assertEquals("e", in.nextName());
+		assertEquals("true", in.nextString());
+		assertEquals("f", in.nextName());
+		assertNull(in.nextString());
+		assertEquals("g", in.nextName());
+		assertEquals("1.5e3", in.nextString());
+
+		in.endObject();
+
+		assertEquals(JsonReader.Token.END_DOCUMENT, in.peek());
+	}
+
+	/**
+	 * Test the streamed tasks are the same as the parsed tree and compare
+	 * the time taken for each
+	 *
+	 * @throws Exception If an exception occurs
+	 */
+	@Test
+	public void testReadTasks() throws Exception {
+		String json = createTaskList(TASKS);
+		List<Task> expected = parseTree(json);
+		List<Task> actual = new ArrayList<>();
+
+		// Check the status is read
+		JSONObject result = TaskService.readTasks(new StringReader(json), actual::add);
+		assertEquals("success", result.get("status"));
+
+		// Check every task was read the same
+		assertEquals(expected.size(), actual.size());
+
+		for (int i = 0; i < expected.size(); i++) {
+			Task e = expected.get(i), a = actual.get(i);
+
+			assertEquals(e.getId(), a.getId());
+			assertEquals(e.getTitle(), a.getTitle());
+			assertEquals(e.getCreator(), a.getCreator());
+			assertEquals(e.getDateDue(), a.getDateDue());
+			assertEquals(e.getDateCompleted(), a.getDateCompleted());
+			assertEquals(e.getStatus(), a.getStatus());
+		}
+
+		long tree = 0, stream = 0;
+
+		// Run both a number of times (the first is warm up)
+		for (int i = 0; i <= ITERATIONS; i++) {
+			long start = System.nanoTime();
+			parseTree(json);
+			long mid = System.nanoTime();
+			TaskService.readTasks(new StringReader(json), t -> {
+			});
+			long end = System.nanoTime();
+
+			if (i > 0) {
+				tree += mid - start;
+				stream += end - mid;
+			}
+		}
+
+		System.out.println("Decoding " + TASKS + " tasks...");
+		System.out.println("JSONParser tree: " + tree / ITERATIONS / 1000000 + "ms");
+		System.out.println("Streaming reader: " + stream / ITERATIONS / 1000000 + "ms");
+		System.out.println();
+	}
+
+	/**
+	 * Test the error message is read when there is no response
+	 *
+	 * @throws Exception If an exception occurs
+	 */
+	@Test
+	public void testReadError() throws Exception {
+		JSONObject result = TaskService.readTasks(new StringReader(
+				"{\"status\":\"error\",\"error\":{\"code\":1,\"message\":\"Invalid token\"}}"), t -> {
+		});
+
+		assertEquals("error", result.get("status"));
+		assertEquals("Invalid token", ((JSONObject) result.get("error")).get("message"));
+	}
+}
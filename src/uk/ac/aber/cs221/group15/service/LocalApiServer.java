@@ -0,0 +1,679 @@
+package uk.ac.aber.cs221.group15.service;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import org.json.simple.JSONArray;
+import org.json.simple.JSONObject;
+import org.json.simple.parser.JSONParser;
+import org.json.simple.parser.ParseException;
+
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A local stand-in for the TaskerMAN api.php used for testing and
+ * benchmarking the services without the real server. It holds a set
+ * of generated tasks and steps in memory and answers the same methods
+ * the client uses. Updates sent with a key which has been seen before
+ * aren't made again.
+ *
+ * @author Darren White
+ * @version 0.0.6
+ */
+public class LocalApiServer implements Closeable {
+
+	/**
+	 * The email accepted for login
+	 */
+	public static final String EMAIL = "test@aber.ac.uk";
+
+	/**
+	 * The password accepted for login
+	 */
+	public static final String PASSWORD = "password";
+
+	/**
+	 * The token given out at login
+	 */
+	public static final String TOKEN = "local-token";
+
+	/**
+	 * The path of the api
+	 */
+	private static final String PATH_API = "/api.php";
+
+	static {
+		// Without this the server waits for delayed acks when
+		// responding on a kept alive connection
+		System.setProperty("sun.net.httpserver.nodelay", "true");
+	}
+
+	/**
+	 * The tasks stored with the task id as the key
+	 */
+	private final Map<Integer, JSONObject> tasks = new LinkedHashMap<>();
+
+	/**
+	 * The steps for each task with the task id as the key
+	 */
+	private final Map<Integer, JSONArray> steps = new HashMap<>();
+
+	/**
+	 * The steps stored with the step id as the key
+	 */
+	private final Map<Integer, JSONObject> stepsById = new HashMap<>();
+
+	/**
+	 * The step ids with the id of the task they belong to
+	 */
+	private final Map<Integer, Integer> stepTasks = new HashMap<>();
+
+	/**
+	 * The revision each task was last changed in
+	 */
+	private final Map<Integer, Long> modified = new HashMap<>();
+
+	/**
+	 * The revision each deleted task was deleted in
+	 */
+	private final Map<Integer, Long> deleted = new HashMap<>();
+
+	/**
+	 * The result of each update which has been made with the
+	 * idempotency key of the update as the key
+	 */
+	private final Map<String, JSONObject> applied = new HashMap<>();
+
+	/**
+	 * The address of each client connection that has been used
+	 */
+	private final Set<String> connections = ConcurrentHashMap.newKeySet();
+
+	/**
+	 * The number of requests received
+	 */
+	private final AtomicInteger requests = new AtomicInteger();
+
+	/**
+	 * The number of requests answered with 304 Not Modified
+	 */
+	private final AtomicInteger notModified = new AtomicInteger();
+
+	/**
+	 * The number of updates which were already made
+	 */
+	private final AtomicInteger duplicates = new AtomicInteger();
+
+	/**
+	 * The executor used to handle requests
+	 */
+	private final ExecutorService executor = Executors.newCachedThreadPool(r -> {
+		Thread t = new Thread(r);
+
+		// Don't prevent the vm from exiting
+		t.setDaemon(true);
+
+		return t;
+	});
+
+	/**
+	 * The http server
+	 */
+	private final HttpServer server;
+
+	/**
+	 * The current revision which is increased with every change
+	 */
+	private long revision;
+
+	/**
+	 * If list_tasks supports only listing the changes since a revision
+	 */
+	private boolean deltaSupported = true;
+
+	/**
+	 * If responses have an ETag and conditional requests are answered
+	 */
+	private boolean etagSupported;
+
+	/**
+	 * If a number of updates can be sent in one batch_update request
+	 */
+	private boolean batchSupported = true;
+
+	/**
+	 * Creates and starts a new server on a free local port with
+	 * generated tasks and steps
+	 *
+	 * @param taskCount    The number of tasks to create
+	 * @param stepsPerTask The number of steps for each task
+	 * @throws IOException If the server could not be started
+	 */
+	@SuppressWarnings("unchecked")
+	public LocalApiServer(int taskCount, int stepsPerTask) throws IOException {
+		// The next id to use for a step
+		int stepId = 1;
+
+		// Create the tasks
+		for (int id = 1; id <= taskCount; id++) {
+			JSONObject task = new JSONObject();
+			JSONArray taskSteps = new JSONArray();
+
+			// All values are strings as with the real server
+			task.put("id", String.valueOf(id));
+			task.put("title", "Task " + id);
+			task.put("created_name", "Member " + (id % 10));
+			task.put("created_time", "2016-05-01");
+			task.put("due_by", String.format("2016-06-%02d", 1 + id % 28));
+			task.put("completed_time", "0000-00-00");
+			task.put("status", "1");
+
+			// Create the steps for the task
+			for (int i = 0; i < stepsPerTask; i++, stepId++) {
+				JSONObject step = new JSONObject();
+
+				step.put("id", String.valueOf(stepId));
+				step.put("title", "Step " + stepId);
+				step.put("comment", "");
+
+				taskSteps.add(step);
+				stepsById.put(stepId, step);
+				stepTasks.put(stepId, id);
+			}
+
+			tasks.put(id, task);
+			steps.put(id, taskSteps);
+			modified.put(id, revision);
+		}
+
+		// Bind to the loopback address on any free port
+		server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+		// The root is used to check the connection
+		server.createContext("/", e -> {
+			connections.add(e.getRemoteAddress().toString());
+			respond(e, "OK");
+		});
+		server.createContext(PATH_API, this::handle);
+		server.setExecutor(executor);
+		server.start();
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public void close() {
+		server.stop(0);
+		executor.shutdownNow();
+	}
+
+	/**
+	 * Creates a transport which sends requests for the real server
+	 * to this server instead
+	 *
+	 * @return The new transport
+	 */
+	public Transport createTransport() {
+		HttpTransport transport = new HttpTransport();
+
+		return new Transport() {
+
+			@Override
+			public boolean probe(String url) {
+				return transport.probe(url.replace(Service.URL_BASE, getBaseUrl()));
+			}
+
+			@Override
+			public Response send(String url, String post, Map<String, String> headers) throws IOException {
+				return transport.send(url.replace(Service.URL_BASE, getBaseUrl()), post, headers);
+			}
+		};
+	}
+
+	/**
+	 * Deletes a task and its steps
+	 *
+	 * @param id The task id
+	 */
+	public synchronized void deleteTask(int id) {
+		tasks.remove(id);
+		steps.remove(id);
+		modified.remove(id);
+		deleted.put(id, ++revision);
+	}
+
+	/**
+	 * Creates an error result with the message
+	 *
+	 * @param message The error message
+	 * @return The error result
+	 */
+	@SuppressWarnings("unchecked")
+	private static JSONObject error(String message) {
+		JSONObject result = new JSONObject();
+		JSONObject err = new JSONObject();
+
+		err.put("message", message);
+		result.put("status", "error");
+		result.put("error", err);
+
+		return result;
+	}
+
+	/**
+	 * Gets the url of the api
+	 *
+	 * @return The api url
+	 */
+	public String getApiUrl() {
+		return getBaseUrl() + PATH_API.substring(1);
+	}
+
+	/**
+	 * Gets the base url of this server
+	 *
+	 * @return The base url
+	 */
+	public String getBaseUrl() {
+		return "http://" + server.getAddress().getHostString() + ':' +
+				server.getAddress().getPort() + '/';
+	}
+
+	/**
+	 * Gets the number of different client connections that
+	 * have been used to send requests
+	 *
+	 * @return The number of connections
+	 */
+	public int getConnectionCount() {
+		return connections.size();
+	}
+
+	/**
+	 * Gets the number of updates received which had already been made
+	 * and were answered without making them again
+	 *
+	 * @return The number of duplicate updates
+	 */
+	public int getDuplicateCount() {
+		return duplicates.get();
+	}
+
+	/**
+	 * Gets the number of requests answered with 304 Not Modified
+	 *
+	 * @return The number of not modified responses
+	 */
+	public int getNotModifiedCount() {
+		return notModified.get();
+	}
+
+	/**
+	 * Gets the number of requests the api has received
+	 *
+	 * @return The number of requests
+	 */
+	public int getRequestCount() {
+		return requests.get();
+	}
+
+	/**
+	 * Gets the current status of a task
+	 *
+	 * @param id The task id
+	 * @return The task status
+	 */
+	public synchronized int getTaskStatus(int id) {
+		return Integer.parseInt((String) tasks.get(id).get("status"));
+	}
+
+	/**
+	 * Gets the current revision
+	 *
+	 * @return The revision
+	 */
+	public synchronized long getRevision() {
+		return revision;
+	}
+
+	/**
+	 * Gets the current comment of a step
+	 *
+	 * @param id The step id
+	 * @return The step comment
+	 */
+	public synchronized String getStepComment(int id) {
+		return (String) stepsById.get(id).get("comment");
+	}
+
+	/**
+	 * Sets if a number of updates can be sent in one batch_update
+	 * request. When they can't the method is unknown, as with the
+	 * real server.
+	 *
+	 * @param batchSupported If batches are supported
+	 */
+	public synchronized void setBatchSupported(boolean batchSupported) {
+		this.batchSupported = batchSupported;
+	}
+
+	/**
+	 * Sets if list_tasks supports only listing the changes since a
+	 * revision. When it doesn't the revision is ignored and every task
+	 * is listed, as with the real server.
+	 *
+	 * @param deltaSupported If changes are supported
+	 */
+	public synchronized void setDeltaSupported(boolean deltaSupported) {
+		this.deltaSupported = deltaSupported;
+	}
+
+	/**
+	 * Sets if responses have an ETag and requests with a matching
+	 * If-None-Match are answered with 304 Not Modified. The real server
+	 * doesn't do this so it is off by default.
+	 *
+	 * @param etagSupported If ETags are supported
+	 */
+	public synchronized void setEtagSupported(boolean etagSupported) {
+		this.etagSupported = etagSupported;
+	}
+
+	/**
+	 * Changes the title of a task
+	 *
+	 * @param id    The task id
+	 * @param title The new title
+	 */
+	@SuppressWarnings("unchecked")
+	public synchronized void setTaskTitle(int id, String title) {
+		tasks.get(id).put("title", title);
+		modified.put(id, ++revision);
+	}
+
+	/**
+	 * Handles a request to the api
+	 *
+	 * @param e The exchange for the request
+	 * @throws IOException If an I/O exception occurs
+	 */
+	private void handle(HttpExchange e) throws IOException {
+		// Get the arguments from the url and the body
+		Map<String, String> args = parseArgs(e.getRequestURI().getRawQuery());
+		args.putAll(parseArgs(readBody(e.getRequestBody())));
+
+		requests.incrementAndGet();
+		connections.add(e.getRemoteAddress().toString());
+
+		String body;
+		boolean etag;
+
+		synchronized (this) {
+			body = handle(args).toJSONString();
+			etag = etagSupported;
+		}
+
+		if (etag) {
+			// Use the hash of the body as the tag
+			String tag = '"' + Integer.toHexString(body.hashCode()) + '"';
+
+			e.getResponseHeaders().set("ETag", tag);
+
+			// The client already has this body
+			if (tag.equals(e.getRequestHeaders().getFirst("If-None-Match"))) {
+				notModified.incrementAndGet();
+				e.sendResponseHeaders(304, -1);
+				e.close();
+				return;
+			}
+		}
+
+		respond(e, body);
+	}
+
+	/**
+	 * Handles the api method in the arguments
+	 *
+	 * @param args The arguments for the request
+	 * @return The result to send back
+	 */
+	@SuppressWarnings("unchecked")
+	private JSONObject handle(Map<String, String> args) {
+		// The method to invoke
+		String method = args.getOrDefault("method", "");
+		// The response object for success
+		JSONObject response = new JSONObject();
+
+		// Everything except login needs a valid token
+		if (!method.equals("login") && !TOKEN.equals(args.get("token"))) {
+			return error("Invalid token");
+		}
+
+		// Updates which were already made are answered the same way again
+		String key = args.get("idempotency_key");
+
+		if (key != null && applied.containsKey(key)) {
+			duplicates.incrementAndGet();
+			return (JSONObject) applied.get(key).clone();
+		}
+
+		switch (method) {
+			case "login":
+				if (!EMAIL.equals(args.get("email")) || !PASSWORD.equals(args.get("password"))) {
+					return error("Invalid email or password");
+				}
+
+				response.put("key", TOKEN);
+				break;
+			case "list_tasks":
+				JSONArray taskList = new JSONArray();
+
+				if (!deltaSupported) {
+					// List every task like the real server
+					taskList.addAll(tasks.values());
+					response.put("tasks", taskList);
+					break;
+				}
+
+				// List everything if there is no revision
+				long since = Long.parseLong(args.getOrDefault("since", "-1"));
+				JSONArray deletedList = new JSONArray();
+
+				// Only the tasks changed after the revision
+				tasks.forEach((id, task) -> {
+					if (modified.get(id) > since) {
+						taskList.add(task);
+					}
+				});
+
+				// Only the tasks deleted after the revision
+				deleted.forEach((id, rev) -> {
+					if (rev > since) {
+						deletedList.add(String.valueOf(id));
+					}
+				});
+
+				response.put("tasks", taskList);
+				response.put("deleted", deletedList);
+				response.put("revision", String.valueOf(revision));
+				break;
+			case "get_steps":
+				JSONObject stepList = new JSONObject();
+
+				// Ids are separated with commas
+				for (String id : args.getOrDefault("id", "").split(",")) {
+					if (!id.isEmpty() && steps.containsKey(Integer.parseInt(id))) {
+						stepList.put(id, steps.get(Integer.parseInt(id)));
+					}
+				}
+
+				response.put("steps", stepList);
+				break;
+			case "change_status":
+				JSONObject task = tasks.get(Integer.parseInt(args.get("id")));
+
+				if (task == null) {
+					return error("Invalid task id");
+				}
+
+				task.put("status", args.get("status"));
+				modified.put(Integer.parseInt(args.get("id")), ++revision);
+				break;
+			case "set_task_step_comment":
+				JSONObject step = stepsById.get(Integer.parseInt(args.get("id")));
+
+				if (step == null) {
+					return error("Invalid step id");
+				}
+
+				step.put("comment", args.getOrDefault("comment", ""));
+				modified.put(stepTasks.get(Integer.parseInt(args.get("id"))), ++revision);
+				break;
+			case "batch_update":
+				if (!batchSupported) {
+					return error("Unknown method: " + method);
+				}
+
+				JSONArray results = new JSONArray();
+				Object updates;
+
+				try {
+					updates = new JSONParser().parse(args.getOrDefault("updates", ""));
+				} catch (ParseException ex) {
+					return error("Invalid updates");
+				}
+
+				if (!(updates instanceof JSONArray)) {
+					return error("Invalid updates");
+				}
+
+				// Each update is handled as a request of its own
+				for (Object obj : (JSONArray) updates) {
+					Map<String, String> updateArgs = new HashMap<>();
+
+					((JSONObject) obj).forEach((k, v) -> updateArgs.put((String) k, (String) v));
+					updateArgs.put("token", args.get("token"));
+
+					String updateMethod = updateArgs.getOrDefault("method", "");
+
+					if (updateMethod.equals("change_status") || updateMethod.equals("set_task_step_comment")) {
+						JSONObject updateResult = handle(updateArgs);
+
+						// Only the status and error are sent back
+						updateResult.remove("response");
+						results.add(updateResult);
+					} else {
+						results.add(error("Invalid update method: " + updateMethod));
+					}
+				}
+
+				response.put("results", results);
+				break;
+			default:
+				return error("Unknown method: " + method);
+		}
+
+		JSONObject result = new JSONObject();
+
+		result.put("status", "success");
+		result.put("response", response);
+
+		if (key != null) {
+			applied.put(key, (JSONObject) result.clone());
+		}
+
+		return result;
+	}
+
+	/**
+	 * Parses url encoded arguments
+	 *
+	 * @param s The encoded arguments
+	 * @return A map of the argument names to values
+	 * @throws IOException If an argument cannot be decoded
+	 */
+	private static Map<String, String> parseArgs(String s) throws IOException {
+		Map<String, String> args = new HashMap<>();
+
+		if (s == null || s.isEmpty()) {
+			return args;
+		}
+
+		for (String arg : s.split("&")) {
+			// Split the name and value
+			int i = arg.indexOf('=');
+
+			if (i < 0) {
+				args.put(URLDecoder.decode(arg, "UTF-8"), "");
+			} else {
+				args.put(URLDecoder.decode(arg.substring(0, i), "UTF-8"),
+						URLDecoder.decode(arg.substring(i + 1), "UTF-8"));
+			}
+		}
+
+		return args;
+	}
+
+	/**
+	 * Reads the whole request body
+	 *
+	 * @param in The request body
+	 * @return The body as a string
+	 * @throws IOException If an I/O exception occurs
+	 */
+	private static String readBody(InputStream in) throws IOException {
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		byte[] buf = new byte[4096];
+		int len;
+
+		while ((len = in.read(buf)) != -1) {
+			out.write(buf, 0, len);
+		}
+
+		return new String(out.toByteArray(), StandardCharsets.UTF_8);
+	}
+
+	/**
+	 * Sends the body as the response
+	 *
+	 * @param e    The exchange to respond to
+	 * @param body The body of the response
+	 * @throws IOException If an I/O exception occurs
+	 */
+	private static void respond(HttpExchange e, String body) throws IOException {
+		byte[] data = body.getBytes(StandardCharsets.UTF_8);
+
+		// Make sure the request body has been read
+		readBody(e.getRequestBody());
+
+		e.getResponseHeaders().set("Content-Type", "application/json; charset=utf-8");
+
+		// HEAD requests must not have a body
+		if (e.getRequestMethod().equals("HEAD")) {
+			e.sendResponseHeaders(200, -1);
+		} else {
+			e.sendResponseHeaders(200, data.length);
+
+			try (OutputStream out = e.getResponseBody()) {
+				out.write(data);
+			}
+		}
+
+		e.close();
+	}
+}
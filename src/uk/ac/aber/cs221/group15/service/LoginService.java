@@ -4,13 +4,14 @@ import org.json.simple.JSONObject;
 import org.json.simple.parser.ParseException;
 
 import java.io.IOException;
+import java.util.concurrent.CompletableFuture;
 
 /**
  * This service provides functionality to submit a login
  * request to the database and retrieve the token
  *
  * @author Darren White
- * @version 0.0.5
+ * @version 0.0.6
  */
 public class LoginService extends Service {
 
@@ -67,4 +68,18 @@ public class LoginService extends Service {
 			return null;
 		}
 	}
+
+	/**
+	 * Submits a login request without blocking and completes with the
+	 * token. The token can be null if an error occurred, in which case
+	 * the error message is available once the future has completed.
+	 *
+	 * @param email The email to submit
+	 * @param pwd   The password to submit
+	 * @return A future completed with the unique token/key for the user
+	 * {@link LoginService#login(String, String)}
+	 */
+	public CompletableFuture<String> loginAsync(String email, String pwd) {
+		return async(() -> login(email, pwd));
+	}
 }
\ No newline at end of file
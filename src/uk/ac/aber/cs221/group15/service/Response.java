@@ -0,0 +1,112 @@
+package uk.ac.aber.cs221.group15.service;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Collections;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * A response received from a Transport. The body should be read and the
+ * response closed so the underlying connection can be reused for the
+ * next request.
+ *
+ * @author Darren White
+ * @version 0.0.2
+ * @see Transport
+ */
+public class Response implements Closeable {
+
+	/**
+	 * The size of the buffer used to drain the body
+	 */
+	private static final int DRAIN_BUFFER_SIZE = 4096;
+
+	/**
+	 * The http response code
+	 */
+	private final int code;
+
+	/**
+	 * The body of the response
+	 */
+	private final InputStream body;
+
+	/**
+	 * The response headers (the names are not case sensitive)
+	 */
+	private final Map<String, String> headers = new TreeMap<>(String.CASE_INSENSITIVE_ORDER);
+
+	/**
+	 * Creates a new response with the code and the body
+	 *
+	 * @param code The http response code
+	 * @param body The body of the response
+	 */
+	public Response(int code, InputStream body) {
+		this(code, body, Collections.emptyMap());
+	}
+
+	/**
+	 * Creates a new response with the code, body and headers
+	 *
+	 * @param code    The http response code
+	 * @param body    The body of the response
+	 * @param headers The response headers
+	 */
+	public Response(int code, InputStream body, Map<String, String> headers) {
+		this.code = code;
+		this.body = body;
+		this.headers.putAll(headers);
+	}
+
+	/**
+	 * Drains any of the body which has not been read and closes it. A
+	 * body must be read to the end before a connection can be reused.
+	 *
+	 * @throws IOException If an I/O exception occurs
+	 */
+	@Override
+	public void close() throws IOException {
+		try {
+			// Buffer to read any remaining data into
+			byte[] buf = new byte[DRAIN_BUFFER_SIZE];
+
+			// Read until the end of the body
+			while (body.read(buf) != -1) {
+				// Nothing to do - just discard the data
+			}
+		} finally {
+			body.close();
+		}
+	}
+
+	/**
+	 * Gets the body of the response
+	 *
+	 * @return The response body
+	 */
+	public InputStream getBody() {
+		return body;
+	}
+
+	/**
+	 * Gets the value of a response header
+	 *
+	 * @param name The name of the header
+	 * @return The header value or null if it was not sent
+	 */
+	public String getHeader(String name) {
+		return headers.get(name);
+	}
+
+	/**
+	 * Gets the http response code
+	 *
+	 * @return The response code
+	 */
+	public int getCode() {
+		return code;
+	}
+}
@@ -5,18 +5,34 @@ import org.json.simple.parser.JSONParser;
 import org.json.simple.parser.ParseException;
 
 import java.io.IOException;
+import java.io.InputStream;
 import java.io.InputStreamReader;
-import java.io.OutputStream;
+import java.io.Reader;
 import java.io.UnsupportedEncodingException;
-import java.net.URL;
-import java.net.URLConnection;
+import java.lang.reflect.Method;
+import java.net.HttpURLConnection;
 import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 /**
- * This class sends requests to the database server
+ * This class sends requests to the database server. Each request made
+ * by a service instance replaces the result of the previous one, so an
+ * instance should only be used for one request at a time.
  *
  * @author Darren White
- * @version 0.1.4
+ * @version 0.1.11
  */
 public abstract class Service {
 
@@ -30,6 +46,18 @@ public abstract class Service {
 	 */
 	public static final int STATUS_ERROR = 1;
 
+	/**
+	 * The status value returned when the request was not sent
+	 * because the server cannot be reached
+	 */
+	public static final int STATUS_OFFLINE = -1;
+
+	/**
+	 * The status value returned by a conditional request when the
+	 * response is the same as last time (the body is not read)
+	 */
+	public static final int STATUS_NOT_MODIFIED = 2;
+
 	/**
 	 * The base url of the database
 	 */
@@ -43,22 +71,22 @@ public abstract class Service {
 	/**
 	 * The key attribute to get the error object
 	 */
-	private static final String KEY_ERROR = "error";
+	protected static final String KEY_ERROR = "error";
 
 	/**
 	 * The key attribute to get the error message
 	 */
-	private static final String KEY_ERROR_MESSAGE = "message";
+	protected static final String KEY_ERROR_MESSAGE = "message";
 
 	/**
 	 * The key attribute to get the response object
 	 */
-	private static final String KEY_RESPONSE = "response";
+	protected static final String KEY_RESPONSE = "response";
 
 	/**
 	 * The key attribute to get the status object
 	 */
-	private static final String KEY_STATUS = "status";
+	protected static final String KEY_STATUS = "status";
 
 	/**
 	 * The value representing an error for the status
@@ -68,7 +96,57 @@ public abstract class Service {
 	/**
 	 * The value representing success for the status
 	 */
-	private static final String VALUE_STATUS_SUCCESS = "success";
+	protected static final String VALUE_STATUS_SUCCESS = "success";
+
+	/**
+	 * The maximum number of urls to remember validators for
+	 */
+	private static final int MAX_VALIDATORS = 256;
+
+	/**
+	 * The size of the buffer used to read the rest of a body
+	 */
+	private static final int BUFFER_SIZE = 8192;
+
+	/**
+	 * The algorithm used to hash response bodies
+	 */
+	private static final String HASH_ALGORITHM = "SHA-1";
+
+	/**
+	 * The validators from the last response for each url, with the least
+	 * recently used removed first
+	 */
+	private static final Map<String, Validator> validators = Collections.synchronizedMap(
+			new LinkedHashMap<String, Validator>(16, 0.75f, true) {
+
+				@Override
+				protected boolean removeEldestEntry(Map.Entry<String, Validator> eldest) {
+					return size() > MAX_VALIDATORS;
+				}
+			});
+
+	/**
+	 * The validators read since they were last committed, which are
+	 * only used once the results they came from have been kept
+	 */
+	private static final Map<String, Validator> staged = Collections.synchronizedMap(new HashMap<>());
+
+	/**
+	 * The transport used to send requests to the server
+	 */
+	private static volatile Transport transport = new HttpTransport();
+
+	/**
+	 * Keeps track of the connection to the server
+	 */
+	private static final ConnectionMonitor monitor =
+			new ConnectionMonitor(() -> transport.probe(URL_BASE));
+
+	/**
+	 * The executor used to send requests without blocking the caller
+	 */
+	private static final ExecutorService executor = createExecutor();
 
 	/**
 	 * The main JSONObject is stored here
@@ -76,23 +154,192 @@ public abstract class Service {
 	private JSONObject result;
 
 	/**
-	 * Tests the availability of the server
+	 * If requests without post data are sent conditionally
+	 */
+	private boolean conditional;
+
+	/**
+	 * Runs the task on the I/O executor. The future is completed on the
+	 * I/O thread so callers updating the ui should continue on the JavaFX
+	 * thread, e.g. using whenCompleteAsync(action, Platform::runLater).
+	 *
+	 * @param task The task to run
+	 * @param <T>  The result type of the task
+	 * @return A future completed with the result of the task
+	 */
+	protected static <T> CompletableFuture<T> async(Callable<T> task) {
+		CompletableFuture<T> future = new CompletableFuture<>();
+
+		executor.execute(() -> {
+			try {
+				future.complete(task.call());
+			} catch (Exception e) {
+				future.completeExceptionally(e);
+			}
+		});
+
+		return future;
+	}
+
+	/**
+	 * Tests the availability of the server. The state is learnt from
+	 * previous requests so this only touches the network the first
+	 * time it is called.
 	 *
 	 * @return Checks if a connection to the server is reachable from the client
+	 * {@link ConnectionMonitor}
 	 */
 	public static boolean checkConnection() {
+		return monitor.isOnline();
+	}
+
+	/**
+	 * Gets the executor used to send requests without blocking
+	 *
+	 * @return The I/O executor
+	 */
+	public static ExecutorService getExecutor() {
+		return executor;
+	}
+
+	/**
+	 * Gets the monitor used to keep track of the connection
+	 *
+	 * @return The connection monitor
+	 */
+	public static ConnectionMonitor getConnectionMonitor() {
+		return monitor;
+	}
+
+	/**
+	 * Gets the transport used to send requests to the server
+	 *
+	 * @return The current transport
+	 */
+	public static Transport getTransport() {
+		return transport;
+	}
+
+	/**
+	 * Sets the transport used to send requests to the server
+	 *
+	 * @param transport The transport to use
+	 */
+	public static void setTransport(Transport transport) {
+		if (transport == null) {
+			throw new NullPointerException("transport");
+		}
+
+		Service.transport = transport;
+	}
+
+	/**
+	 * Creates the executor used for requests. Virtual threads are used
+	 * if the runtime supports them, otherwise daemon threads are pooled.
+	 *
+	 * @return The new executor
+	 */
+	private static ExecutorService createExecutor() {
 		try {
-			// Connect to the server
-			URLConnection conn = new URL(URL_BASE).openConnection();
+			// Only available from Java 21 so find it reflectively
+			Method m = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+
+			return (ExecutorService) m.invoke(null);
+		} catch (ReflectiveOperationException e) {
+			// Use platform threads instead
+			return Executors.newCachedThreadPool(r -> {
+				Thread t = new Thread(r, "TaskerCLI-IO");
+
+				// Make the thread daemon
+				if (!t.isDaemon()) {
+					t.setDaemon(true);
+				}
+
+				return t;
+			});
+		}
+	}
 
-			conn.connect();
+	/**
+	 * Forgets the validators for every url so the next
+	 * requests are read in full
+	 */
+	public static void clearValidators() {
+		validators.clear();
+		staged.clear();
+	}
 
-			// If we got here the server is reachable
+	/**
+	 * Uses the validators read since the last commit for the next
+	 * requests. This should only be called once the results the
+	 * validators came from have been kept, otherwise the next
+	 * conditional request would skip changes which were never kept.
+	 */
+	public static void commitValidators() {
+		takeValidators().run();
+	}
 
-			return true;
-		} catch (IOException e) {
-			// Unable to connect to the server
-			return false;
+	/**
+	 * Takes the validators read since the last commit so they can be
+	 * committed later, once the results they came from have been kept.
+	 * Validators read after this are not committed with them.
+	 *
+	 * @return Commits the validators taken when run
+	 */
+	public static Runnable takeValidators() {
+		Map<String, Validator> taken;
+
+		synchronized (staged) {
+			taken = new HashMap<>(staged);
+			staged.clear();
+		}
+
+		return () -> validators.putAll(taken);
+	}
+
+	/**
+	 * Forgets the validators read since the last commit, as the
+	 * results they came from weren't kept
+	 */
+	public static void discardValidators() {
+		staged.clear();
+	}
+
+	/**
+	 * Gets the hash committed for a key
+	 *
+	 * @param key The url or other key the hash was stored with
+	 * @return The hash or null if there isn't one
+	 */
+	protected static byte[] getHash(String key) {
+		Validator validator = validators.get(key);
+
+		return validator != null ? validator.hash : null;
+	}
+
+	/**
+	 * Stages a hash of something other than a response body, which is
+	 * committed along with the validators
+	 *
+	 * @param key  The key to store the hash with
+	 * @param hash The hash
+	 * {@link Service#commitValidators()}
+	 */
+	protected static void stageHash(String key, byte[] hash) {
+		staged.put(key, new Validator(null, null, hash));
+	}
+
+	/**
+	 * Creates a new hash for response bodies
+	 *
+	 * @return The message digest
+	 */
+	protected static MessageDigest createDigest() {
+		try {
+			return MessageDigest.getInstance(HASH_ALGORITHM);
+		} catch (NoSuchAlgorithmException e) {
+			// Every jvm must support SHA-1
+			throw new IllegalStateException(e);
 		}
 	}
 
@@ -189,7 +436,7 @@ public abstract class Service {
 
 	/**
 	 * Submits the arguments and returns a status integer. Status value
-	 * can be one of STATUS_SUCCESS and STATUS_ERROR.
+	 * can be one of STATUS_SUCCESS, STATUS_ERROR and STATUS_OFFLINE.
 	 *
 	 * @param url  The url to request data from
 	 * @param post The data to send as POST
@@ -199,35 +446,199 @@ public abstract class Service {
 	 * {@link Service#getStatus()}
 	 */
 	public int submit(String url, String post) throws IOException, ParseException {
+		// Parse the whole response into a JSONObject
+		return submit(url, post, in -> (JSONObject) new JSONParser().parse(in));
+	}
+
+	/**
+	 * Submits the arguments and reads the response using the reader.
+	 * The reader must return an object with at least the status (and
+	 * the error if there is one). Status value can be one of
+	 * STATUS_SUCCESS, STATUS_ERROR and STATUS_OFFLINE, or
+	 * STATUS_NOT_MODIFIED if this service is conditional.
+	 *
+	 * @param url    The url to request data from
+	 * @param post   The data to send as POST (can be null)
+	 * @param reader Used to read the result from the response
+	 * @return The status value
+	 * @throws IOException    If an I/O exception occurs
+	 * @throws ParseException If a Parse exception occurs
+	 * {@link Service#getStatus()}
+	 */
+	protected int submit(String url, String post, ResultReader reader) throws IOException, ParseException {
 		// Can't do anything if we're offline
 		if (!checkConnection()) {
-			return -1;
+			return STATUS_OFFLINE;
 		}
 
-		// Create a new parser for json
-		JSONParser parser = new JSONParser();
-		// Connect to the url
-		URLConnection conn = new URL(url).openConnection();
-
-		if (post != null) {
-			// We want to send data to the connection
-			conn.setDoOutput(true);
-			// Open the output stream to send data
-			try (OutputStream out = conn.getOutputStream()) {
-				// Send the 'post' string
-				out.write(post.getBytes());
-				// Flush the outputstream to force the data to be written
-				out.flush();
+		// Only requests which don't change anything have validators
+		Validator validator = post == null && conditional ? validators.get(url) : null;
+		// The headers to make the request conditional
+		Map<String, String> headers = new HashMap<>();
+
+		if (validator != null) {
+			if (validator.etag != null) {
+				headers.put("If-None-Match", validator.etag);
+			}
+
+			if (validator.lastModified != null) {
+				headers.put("If-Modified-Since", validator.lastModified);
 			}
 		}
 
-		// Open the stream and prepare a reader
-		try (InputStreamReader in = new InputStreamReader(conn.getInputStream())) {
-			// Read the stream
-			result = (JSONObject) parser.parse(in);
+		// Send the request (and the 'post' string if there is one)
+		// Closing the response lets the connection be reused
+		try (Response r = transport.send(url, post, headers)) {
+			// The body is the same as last time
+			if (r.getCode() == HttpURLConnection.HTTP_NOT_MODIFIED && !headers.isEmpty()) {
+				monitor.reportSuccess();
+				return notModified();
+			}
+
+			// The server should always respond with OK
+			if (r.getCode() != HttpURLConnection.HTTP_OK) {
+				throw new IOException("Unexpected response code: " + r.getCode());
+			}
+
+			// The body of the response
+			InputStream body = r.getBody();
+			// Used to hash the body to compare with the next response
+			MessageDigest digest = null;
+
+			if (post == null) {
+				// The body is hashed as it is read
+				digest = createDigest();
+				body = new DigestInputStream(body, digest);
+			}
+
+			// Prepare a reader and read the stream
+			result = reader.read(new InputStreamReader(body, StandardCharsets.UTF_8));
+
+			if (digest != null) {
+				// Hash anything the reader didn't need
+				skipRest(body);
+
+				byte[] hash = digest.digest();
+
+				// Without any validators from the server the body is
+				// compared with last time once it has been read, and
+				// what was parsed is thrown away if it's the same
+				if (validator != null && headers.isEmpty() && Arrays.equals(validator.hash, hash)) {
+					monitor.reportSuccess();
+					return notModified();
+				}
+
+				// Remember the validators for successful results
+				// (they are used once the caller commits them)
+				if (VALUE_STATUS_SUCCESS.equals(result.get(KEY_STATUS))) {
+					staged.put(url, new Validator(r.getHeader("ETag"), r.getHeader("Last-Modified"), hash));
+				} else {
+					validators.remove(url);
+					staged.remove(url);
+				}
+			}
+		} catch (IOException e) {
+			// Learn from the failed request
+			monitor.reportFailure(e);
+			throw e;
 		}
 
+		// The server is reachable
+		monitor.reportSuccess();
+
 		// Return the status
 		return getStatus();
 	}
-}
\ No newline at end of file
+
+	/**
+	 * Sets the result for a response which is the same as last time.
+	 * There is no response object as the body was not read.
+	 *
+	 * @return The not modified status
+	 */
+	@SuppressWarnings("unchecked")
+	private int notModified() {
+		result = new JSONObject();
+		result.put(KEY_STATUS, VALUE_STATUS_SUCCESS);
+
+		return STATUS_NOT_MODIFIED;
+	}
+
+	/**
+	 * Reads and discards the rest of the stream
+	 *
+	 * @param in The stream to read
+	 * @throws IOException If an I/O exception occurs
+	 */
+	private static void skipRest(InputStream in) throws IOException {
+		byte[] buf = new byte[BUFFER_SIZE];
+
+		while (in.read(buf) != -1) {
+			// Only read so the stream hashes it
+		}
+	}
+
+	/**
+	 * Sets if requests without post data are sent conditionally. A
+	 * conditional request returns STATUS_NOT_MODIFIED without reading
+	 * the body if the server says it hasn't changed (using the ETag or
+	 * Last-Modified from last time), or after reading it if the body
+	 * hashes the same. Validators are only used once committed.
+	 * {@link Service#commitValidators()}
+	 *
+	 * @param conditional If requests are conditional
+	 */
+	protected void setConditional(boolean conditional) {
+		this.conditional = conditional;
+	}
+
+	/**
+	 * Used to read the result object from the body of a response
+	 */
+	protected interface ResultReader {
+
+		/**
+		 * Reads the result from the body
+		 *
+		 * @param in The body of the response
+		 * @return The result object
+		 * @throws IOException    If an I/O exception occurs
+		 * @throws ParseException If a Parse exception occurs
+		 */
+		JSONObject read(Reader in) throws IOException, ParseException;
+	}
+
+	/**
+	 * The values used to check if the response to a url has changed
+	 */
+	private static class Validator {
+
+		/**
+		 * The ETag sent by the server (can be null)
+		 */
+		private final String etag;
+
+		/**
+		 * The Last-Modified date sent by the server (can be null)
+		 */
+		private final String lastModified;
+
+		/**
+		 * The hash of the body
+		 */
+		private final byte[] hash;
+
+		/**
+		 * Creates a new validator
+		 *
+		 * @param etag         The ETag sent by the server
+		 * @param lastModified The Last-Modified date sent by the server
+		 * @param hash         The hash of the body
+		 */
+		private Validator(String etag, String lastModified, byte[] hash) {
+			this.etag = etag;
+			this.lastModified = lastModified;
+			this.hash = hash;
+		}
+	}
+}
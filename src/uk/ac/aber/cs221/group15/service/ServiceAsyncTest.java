@@ -0,0 +1,198 @@
+package uk.ac.aber.cs221.group15.service;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import uk.ac.aber.cs221.group15.task.Step;
+import uk.ac.aber.cs221.group15.task.Task;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * Tests the requests sent without blocking complete with their result
+ * or complete exceptionally with the exception of the request, using
+ * the local api
+ *
+ * @author Darren White
+ * @version 0.0.2
+ */
+public class ServiceAsyncTest {
+
+	/**
+	 * The number of tasks on the server
+	 */
+	private static final int TASKS = 10;
+
+	/**
+	 * The time in seconds to wait for a request to complete
+	 */
+	private static final int TIMEOUT = 10;
+
+	/**
+	 * The local stand-in for the api
+	 */
+	private LocalApiServer server;
+
+	/**
+	 * The transport used before the test
+	 */
+	private Transport transport;
+
+	/**
+	 * The path of the journal updates are stored in while offline
+	 */
+	private Path path;
+
+	/**
+	 * The journal updates are stored in while offline
+	 */
+	private Journal journal;
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Before
+	public void setUp() throws Exception {
+		server = new LocalApiServer(TASKS, 3);
+		transport = Service.getTransport();
+
+		path = Files.createTempFile("tasker", ".journal");
+		Files.delete(path);
+		journal = new Journal(path, Journal.SyncPolicy.CLOSE);
+
+		// Send the requests to the local server
+		Service.setTransport(server.createTransport());
+		// Don't start offline after an earlier test
+		Service.getConnectionMonitor().reportSuccess();
+		// Keep updates which aren't sent out of the user's journal
+		TaskService.setJournal(journal);
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@After
+	public void tearDown() throws Exception {
+		Service.setTransport(transport);
+		server.close();
+		// Forget the failed requests
+		Service.getConnectionMonitor().reportSuccess();
+		// The user's journal is opened again when it is needed
+		TaskService.setJournal(null);
+		journal.close();
+		Files.deleteIfExists(path);
+	}
+
+	/**
+	 * Waits for the future and gets the exception it completed with
+	 *
+	 * @param future The future which should complete exceptionally
+	 * @return The cause of the failure
+	 * @throws Exception If the future doesn't complete in time
+	 */
+	private static Throwable getFailure(CompletableFuture<?> future) throws Exception {
+		try {
+			future.get(TIMEOUT, TimeUnit.SECONDS);
+		} catch (ExecutionException e) {
+			return e.getCause();
+		}
+
+		fail("Completed without an exception");
+		return null;
+	}
+
+	/**
+	 * Test logging in completes with the token, or with null and the
+	 * error message for the wrong password
+	 *
+	 * @throws Exception If an exception occurs
+	 */
+	@Test
+	public void testLoginAsync() throws Exception {
+		LoginService service = new LoginService();
+
+		assertEquals(LocalApiServer.TOKEN, service.loginAsync(LocalApiServer.EMAIL, LocalApiServer.PASSWORD)
+				.get(TIMEOUT, TimeUnit.SECONDS));
+
+		assertNull(service.loginAsync(LocalApiServer.EMAIL, "wrong").get(TIMEOUT, TimeUnit.SECONDS));
+		assertNotNull(service.getErrorMessage());
+	}
+
+	/**
+	 * Test logging in completes exceptionally when the request fails
+	 *
+	 * @throws Exception If an exception occurs
+	 */
+	@Test
+	public void testLoginAsyncFailure() throws Exception {
+		Service.setTransport(new Transport() {
+
+			@Override
+			public boolean probe(String url) {
+				return true;
+			}
+
+			@Override
+			public Response send(String url, String post, Map<String, String> headers) throws IOException {
+				throw new IOException("Connection reset");
+			}
+		});
+
+		Throwable cause = getFailure(new LoginService().loginAsync(LocalApiServer.EMAIL, LocalApiServer.PASSWORD));
+
+		assertTrue(cause instanceof IOException);
+		assertEquals("Connection reset", cause.getMessage());
+	}
+
+	/**
+	 * Test the updates have reached the server once they complete
+	 *
+	 * @throws Exception If an exception occurs
+	 */
+	@Test
+	public void testUpdateAsync() throws Exception {
+		TaskService service = new TaskService();
+
+		service.updateTaskStatusAsync(LocalApiServer.TOKEN, 2, Task.COMPLETED, 0).get(TIMEOUT, TimeUnit.SECONDS);
+		assertEquals(Task.COMPLETED, server.getTaskStatus(2));
+
+		service.updateTaskStepCommentAsync(LocalApiServer.TOKEN, new Step(1, "Step 1", "Async"))
+				.get(TIMEOUT, TimeUnit.SECONDS);
+		assertEquals("Async", server.getStepComment(1));
+		// The updates were sent rather than stored
+		assertFalse(journal.hasPending());
+	}
+
+	/**
+	 * Test updates complete exceptionally with the error from the server
+	 *
+	 * @throws Exception If an exception occurs
+	 */
+	@Test
+	public void testUpdateAsyncError() throws Exception {
+		TaskService service = new TaskService();
+		// The server doesn't accept the token
+		Throwable cause = getFailure(service.updateTaskStatusAsync("invalid", 2, Task.COMPLETED, 0));
+
+		assertTrue(cause instanceof IllegalStateException);
+		assertEquals(Task.ALLOCATED, server.getTaskStatus(2));
+
+		cause = getFailure(service.updateTaskStepCommentAsync("invalid", 1, "Async"));
+
+		assertTrue(cause instanceof IllegalStateException);
+		assertEquals("", server.getStepComment(1));
+	}
+}
@@ -0,0 +1,130 @@
+package uk.ac.aber.cs221.group15.service;
+
+import uk.ac.aber.cs221.group15.task.Task;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The tasks received from a list_tasks request. This is either the full
+ * list of tasks or only the tasks that changed since a revision, along
+ * with the ids of the tasks that were deleted. A delta without any
+ * changes means the tasks are the same as the last sync.
+ *
+ * @author Darren White
+ * @version 0.0.2
+ */
+public class TaskDelta {
+
+	/**
+	 * The tasks which were received (with their steps)
+	 */
+	private final List<Task> tasks;
+
+	/**
+	 * The ids of the tasks that were deleted
+	 */
+	private final Collection<Integer> deleted;
+
+	/**
+	 * The revision of the server after these changes
+	 * (null if the server does not support changes)
+	 */
+	private final String revision;
+
+	/**
+	 * If the tasks are the full list of tasks
+	 */
+	private final boolean full;
+
+	/**
+	 * Creates a new delta
+	 *
+	 * @param tasks    The tasks which were received
+	 * @param deleted  The ids of the tasks that were deleted
+	 * @param revision The revision of the server (can be null)
+	 * @param full     If the tasks are the full list of tasks
+	 */
+	public TaskDelta(List<Task> tasks, Collection<Integer> deleted, String revision, boolean full) {
+		this.tasks = tasks;
+		this.deleted = deleted;
+		this.revision = revision;
+		this.full = full;
+	}
+
+	/**
+	 * Applies the changes to the current list of tasks. Changed tasks
+	 * replace the current task in the same position, new tasks are added
+	 * to the end and deleted tasks are removed. If this is the full list
+	 * it is returned as it is.
+	 *
+	 * @param current The current list of tasks (not changed)
+	 * @return The new list of tasks
+	 */
+	public List<Task> applyTo(List<Task> current) {
+		if (full) {
+			return tasks;
+		}
+
+		// Keep the current order using the id as the key
+		Map<Integer, Task> merged = new LinkedHashMap<>();
+
+		current.forEach(t -> merged.put(t.getId(), t));
+		// Replace or add the changed tasks
+		tasks.forEach(t -> merged.put(t.getId(), t));
+		// Remove the deleted tasks
+		deleted.forEach(merged::remove);
+
+		return new ArrayList<>(merged.values());
+	}
+
+	/**
+	 * Gets the ids of the tasks that were deleted
+	 *
+	 * @return The deleted task ids
+	 */
+	public Collection<Integer> getDeleted() {
+		return deleted;
+	}
+
+	/**
+	 * Gets the revision of the server after these changes. Used
+	 * as the cursor to get the next changes.
+	 *
+	 * @return The revision or null if the server does not support changes
+	 */
+	public String getRevision() {
+		return revision;
+	}
+
+	/**
+	 * Gets the tasks which were received
+	 *
+	 * @return The changed tasks or all tasks if this is the full list
+	 */
+	public List<Task> getTasks() {
+		return tasks;
+	}
+
+	/**
+	 * Checks if nothing has changed since the last sync, in which
+	 * case the tasks from the last sync can be kept as they are
+	 *
+	 * @return If there are no changes
+	 */
+	public boolean isUnchanged() {
+		return !full && tasks.isEmpty() && deleted.isEmpty();
+	}
+
+	/**
+	 * Checks if the tasks are the full list of tasks
+	 *
+	 * @return If this is the full list
+	 */
+	public boolean isFull() {
+		return full;
+	}
+}
@@ -0,0 +1,516 @@
+package uk.ac.aber.cs221.group15.service;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import uk.ac.aber.cs221.group15.task.Step;
+import uk.ac.aber.cs221.group15.task.Task;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.net.ConnectException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * Tests getting only the tasks changed since a revision and applying
+ * them to the tasks from the last sync, skipping responses which haven't
+ * changed and getting steps while the task list arrives, using the
+ * local api. The steps are split into batches which fit in a url.
+ *
+ * @author Darren White
+ * @version 0.0.6
+ */
+public class TaskDeltaTest {
+
+	/**
+	 * The number of tasks on the server
+	 */
+	private static final int TASKS = 50;
+
+	/**
+	 * The longest get_steps url which may be sent
+	 */
+	private static final int MAX_URL_LENGTH = 2000;
+
+	/**
+	 * The local stand-in for the api
+	 */
+	private LocalApiServer server;
+
+	/**
+	 * The transport used before the test
+	 */
+	private Transport transport;
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Before
+	public void setUp() throws Exception {
+		server = new LocalApiServer(TASKS, 3);
+		transport = Service.getTransport();
+
+		// Send the requests to the local server
+		Service.setTransport(server.createTransport());
+		Service.clearValidators();
+		// Don't start offline after an earlier test
+		Service.getConnectionMonitor().reportSuccess();
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@After
+	public void tearDown() throws Exception {
+		Service.setTransport(transport);
+		server.close();
+		// Don't leave the other tests offline
+		Service.getConnectionMonitor().reportSuccess();
+	}
+
+	/**
+	 * Gets the ids of the tasks
+	 *
+	 * @param tasks The tasks
+	 * @return The task ids
+	 */
+	private static Set<Integer> ids(List<Task> tasks) {
+		Set<Integer> ids = new HashSet<>();
+
+		tasks.forEach(t -> ids.add(t.getId()));
+
+		return ids;
+	}
+
+	/**
+	 * Test only the changed and deleted tasks are sent after a full
+	 * sync and are applied in place
+	 *
+	 * @throws Exception If an exception occurs
+	 */
+	@Test
+	public void testChanges() throws Exception {
+		TaskService service = new TaskService();
+		TaskDelta full = service.getChanges(LocalApiServer.TOKEN, null, Collections.emptySet());
+
+		assertTrue(full.isFull());
+		assertEquals(TASKS, full.getTasks().size());
+		assertNotNull(full.getRevision());
+
+		List<Task> tasks = full.applyTo(Collections.emptyList());
+		Service.commitValidators();
+
+		// Change a few tasks on the server
+		service.updateTaskStatus(LocalApiServer.TOKEN, 2, Task.COMPLETED, 0);
+		server.setTaskTitle(3, "Changed");
+		server.deleteTask(5);
+
+		TaskDelta delta = service.getChanges(LocalApiServer.TOKEN, full.getRevision(), ids(tasks));
+
+		// Only the changes should be sent
+		assertFalse(delta.isFull());
+		assertEquals(new HashSet<>(Arrays.asList(2, 3)), ids(delta.getTasks()));
+		assertEquals(Collections.singletonList(5), delta.getDeleted());
+		assertEquals(String.valueOf(server.getRevision()), delta.getRevision());
+
+		// The changed tasks should have their steps
+		delta.getTasks().forEach(t -> assertEquals(3, t.getSteps().size()));
+
+		List<Task> merged = delta.applyTo(tasks);
+
+		assertEquals(TASKS - 1, merged.size());
+		// The order is kept and unchanged tasks are the same objects
+		assertSame(tasks.get(0), merged.get(0));
+		assertEquals(3, merged.get(2).getId());
+		assertEquals("Changed", merged.get(2).getTitle());
+		assertEquals(Task.COMPLETED, merged.get(1).getStatus());
+		assertFalse(ids(merged).contains(5));
+
+		// Nothing has changed since
+		TaskDelta none = service.getChanges(LocalApiServer.TOKEN, delta.getRevision(), ids(merged));
+
+		assertTrue(none.getTasks().isEmpty());
+		assertEquals(merged, none.applyTo(merged));
+	}
+
+	/**
+	 * Test every task is used when the server ignores the revision
+	 *
+	 * @throws Exception If an exception occurs
+	 */
+	@Test
+	public void testFallback() throws Exception {
+		TaskService service = new TaskService();
+
+		server.setDeltaSupported(false);
+
+		TaskDelta delta = service.getChanges(LocalApiServer.TOKEN, "0", Collections.emptySet());
+
+		// The revision is ignored so we have every task
+		assertTrue(delta.isFull());
+		assertNull(delta.getRevision());
+		assertEquals(TASKS, delta.applyTo(Collections.emptyList()).size());
+	}
+
+	/**
+	 * Checks that a second sync is unchanged, then changes a step comment
+	 * and checks the sync is read in full with the new comment
+	 *
+	 * @throws Exception If an exception occurs
+	 */
+	private void checkUnchanged() throws Exception {
+		TaskService service = new TaskService();
+		// Like the real server which doesn't support revisions
+		server.setDeltaSupported(false);
+
+		List<Task> tasks = service.getChanges(LocalApiServer.TOKEN, null, Collections.emptySet()).getTasks();
+		Service.commitValidators();
+		TaskDelta delta = service.getChanges(LocalApiServer.TOKEN, null, ids(tasks));
+
+		// Nothing has changed
+		assertTrue(delta.isUnchanged());
+		Service.commitValidators();
+
+		// Only the steps change so the task list is the same
+		service.updateTaskStepComment(LocalApiServer.TOKEN, 1, "Changed");
+		delta = service.getChanges(LocalApiServer.TOKEN, null, ids(tasks));
+
+		assertFalse(delta.isUnchanged());
+		assertEquals(TASKS, delta.getTasks().size());
+		assertEquals("Changed", delta.getTasks().get(0).getSteps().stream()
+				.filter(s -> s.getId() == 1).findFirst().get().getComment());
+	}
+
+	/**
+	 * Test unchanged responses are found by hashing the body
+	 *
+	 * @throws Exception If an exception occurs
+	 */
+	@Test
+	public void testUnchangedHash() throws Exception {
+		checkUnchanged();
+
+		// The server never said anything was not modified
+		assertEquals(0, server.getNotModifiedCount());
+	}
+
+	/**
+	 * Test unchanged responses are found using the ETag
+	 *
+	 * @throws Exception If an exception occurs
+	 */
+	@Test
+	public void testUnchangedEtag() throws Exception {
+		server.setEtagSupported(true);
+
+		checkUnchanged();
+
+		// The task list each time (the steps are compared by hash)
+		assertEquals(2, server.getNotModifiedCount());
+	}
+
+	/**
+	 * Test the validators from a sync which wasn't kept aren't used,
+	 * so the changes it read are read again by the next sync
+	 *
+	 * @throws Exception If an exception occurs
+	 */
+	@Test
+	public void testUncommitted() throws Exception {
+		TaskService service = new TaskService();
+		server.setDeltaSupported(false);
+
+		List<Task> tasks = service.getChanges(LocalApiServer.TOKEN, null, Collections.emptySet()).getTasks();
+		Service.commitValidators();
+
+		// Read the change but don't keep it, like a sync that failed
+		server.setTaskTitle(3, "Changed");
+		assertFalse(service.getChanges(LocalApiServer.TOKEN, null, ids(tasks)).isUnchanged());
+		Service.discardValidators();
+
+		// The change is read again
+		TaskDelta delta = service.getChanges(LocalApiServer.TOKEN, null, ids(tasks));
+
+		assertFalse(delta.isUnchanged());
+		assertEquals("Changed", delta.getTasks().get(2).getTitle());
+	}
+
+	/**
+	 * Test the steps for new tasks are requested while the rest of a slow
+	 * task list is still arriving
+	 *
+	 * @throws Exception If an exception occurs
+	 */
+	@Test
+	public void testStreamedSteps() throws Exception {
+		// More tasks than the largest batch of steps
+		LocalApiServer large = new LocalApiServer(2000, 3);
+		Transport local = large.createTransport();
+		AtomicLong firstSteps = new AtomicLong(), listDone = new AtomicLong();
+
+		Service.setTransport(new Transport() {
+
+			@Override
+			public boolean probe(String url) {
+				return local.probe(url);
+			}
+
+			@Override
+			public Response send(String url, String post, Map<String, String> headers) throws IOException {
+				if (url.contains("method=get_steps")) {
+					firstSteps.compareAndSet(0, System.nanoTime());
+				}
+
+				Response r = local.send(url, post, headers);
+
+				if (!url.contains("method=list_tasks")) {
+					return r;
+				}
+
+				// Send the task list slowly
+				InputStream slow = new FilterInputStream(r.getBody()) {
+
+					@Override
+					public int read(byte[] b, int off, int len) throws IOException {
+						try {
+							Thread.sleep(1);
+						} catch (InterruptedException e) {
+							throw new InterruptedIOException();
+						}
+
+						return super.read(b, off, Math.min(len, 1024));
+					}
+				};
+
+				return new Response(r.getCode(), slow) {
+
+					@Override
+					public void close() throws IOException {
+						try {
+							super.close();
+						} finally {
+							listDone.set(System.nanoTime());
+						}
+					}
+				};
+			}
+		});
+
+		try {
+			TaskDelta delta = new TaskService().getChanges(LocalApiServer.TOKEN, null, Collections.emptySet());
+
+			assertEquals(2000, delta.getTasks().size());
+			assertTrue(delta.getTasks().stream().allMatch(t -> t.getSteps().size() == 3));
+			assertTrue(firstSteps.get() != 0 && firstSteps.get() < listDone.get());
+		} finally {
+			large.close();
+		}
+	}
+
+	/**
+	 * Test the steps are split into batches which each fit in a url and
+	 * every task is requested once, even after the batches have grown
+	 *
+	 * @throws Exception If an exception occurs
+	 */
+	@Test
+	public void testStepBatches() throws Exception {
+		LocalApiServer large = new LocalApiServer(2000, 3);
+		Transport local = large.createTransport();
+		// The ids sent in each get_steps url
+		List<String> urls = Collections.synchronizedList(new ArrayList<>());
+
+		Service.setTransport(new Transport() {
+
+			@Override
+			public boolean probe(String url) {
+				return local.probe(url);
+			}
+
+			@Override
+			public Response send(String url, String post, Map<String, String> headers) throws IOException {
+				if (url.contains("method=get_steps")) {
+					urls.add(url);
+				}
+
+				return local.send(url, post, headers);
+			}
+		});
+
+		try {
+			Set<Integer> ids = new HashSet<>();
+
+			for (int id = 1; id <= 2000; id++) {
+				ids.add(id);
+			}
+
+			// The batches grow while the requests are fast, until the
+			// length of the url limits them
+			int longest = 0;
+
+			for (int i = 0; i < 5 && longest < MAX_URL_LENGTH - 5; i++) {
+				Map<Integer, List<Step>> steps = new ConcurrentHashMap<>();
+				urls.clear();
+
+				new TaskService().getStepsAsync(LocalApiServer.TOKEN, ids, steps::putAll).get(10, TimeUnit.SECONDS);
+
+				assertEquals(ids, steps.keySet());
+				assertTrue(steps.values().stream().allMatch(s -> s.size() == 3));
+				assertTrue(urls.size() > 1);
+
+				// Each task is only requested once
+				List<String> requested = new ArrayList<>();
+
+				for (String url : urls) {
+					assertTrue(url.length() <= MAX_URL_LENGTH);
+					longest = Math.max(longest, url.length());
+
+					for (String id : url.substring(url.indexOf("&id=") + 4).split(",")) {
+						requested.add(id);
+					}
+				}
+
+				assertEquals(ids.size(), requested.size());
+				assertEquals(ids.size(), new HashSet<>(requested).size());
+			}
+
+			// A batch was split by its url
+			assertTrue(longest >= MAX_URL_LENGTH - 5);
+		} finally {
+			large.close();
+		}
+	}
+
+	/**
+	 * Test a sync fails instead of returning tasks without their steps
+	 * when the steps fetched with the task list fail and the connection
+	 * is lost before the rest can be fetched
+	 *
+	 * @throws Exception If an exception occurs
+	 */
+	@Test
+	public void testMissingSteps() throws Exception {
+		TaskService service = new TaskService();
+		List<Task> tasks = service.getChanges(LocalApiServer.TOKEN, null, Collections.emptySet()).getTasks();
+		Transport local = server.createTransport();
+		// The thread which gets the task list
+		Thread syncing = Thread.currentThread();
+
+		Service.setTransport(new Transport() {
+
+			@Override
+			public boolean probe(String url) {
+				return false;
+			}
+
+			@Override
+			public Response send(String url, String post, Map<String, String> headers) throws IOException {
+				if (url.contains("method=get_steps")) {
+					// Wait until the task list has been read and the sync
+					// is waiting for these steps
+					while (syncing.getState() != Thread.State.WAITING) {
+						Thread.yield();
+					}
+
+					// The connection is lost while getting the steps
+					throw new ConnectException();
+				}
+
+				return local.send(url, post, headers);
+			}
+		});
+
+		assertNull(service.getChanges(LocalApiServer.TOKEN, null, ids(tasks)));
+	}
+
+	/**
+	 * Test a fetch stops between batches once it has been cancelled,
+	 * rather than reading the rest of the tasks and steps
+	 *
+	 * @throws Exception If an exception occurs
+	 */
+	@Test
+	public void testCancelled() throws Exception {
+		// More tasks than one batch of steps
+		LocalApiServer large = new LocalApiServer(2000, 3);
+		Transport local = large.createTransport();
+		AtomicInteger checks = new AtomicInteger();
+		// The requests which haven't finished yet
+		AtomicInteger sending = new AtomicInteger();
+
+		Service.setTransport(new Transport() {
+
+			@Override
+			public boolean probe(String url) {
+				return local.probe(url);
+			}
+
+			@Override
+			public Response send(String url, String post, Map<String, String> headers) throws IOException {
+				sending.incrementAndGet();
+				Response r;
+
+				try {
+					r = local.send(url, post, headers);
+				} catch (IOException e) {
+					sending.decrementAndGet();
+					throw e;
+				}
+
+				return new Response(r.getCode(), r.getBody()) {
+
+					@Override
+					public void close() throws IOException {
+						try {
+							super.close();
+						} finally {
+							sending.decrementAndGet();
+						}
+					}
+				};
+			}
+		});
+
+		try {
+			new TaskService().getChanges(LocalApiServer.TOKEN, null, Collections.emptySet(), () -> {
+				// Cancelled at the second batch
+				if (checks.incrementAndGet() >= 2) {
+					throw new CancellationException();
+				}
+			});
+			fail("The fetch wasn't cancelled");
+		} catch (CancellationException e) {
+			// Stopped long before every batch was checked
+			assertTrue(checks.get() < 10);
+		} finally {
+			// Let the batches already sent finish so they don't fail
+			// once the server has closed
+			while (sending.get() > 0) {
+				Thread.sleep(10);
+			}
+
+			large.close();
+		}
+	}
+}
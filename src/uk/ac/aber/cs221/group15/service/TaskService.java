@@ -1,28 +1,47 @@
 package uk.ac.aber.cs221.group15.service;
 
-import javafx.application.Platform;
-import javafx.collections.ObservableList;
 import org.json.simple.JSONArray;
 import org.json.simple.JSONObject;
 import org.json.simple.parser.ParseException;
 import uk.ac.aber.cs221.group15.TaskerCLI;
+import uk.ac.aber.cs221.group15.task.DateCache;
 import uk.ac.aber.cs221.group15.task.Step;
 import uk.ac.aber.cs221.group15.task.Task;
 
 import java.io.File;
 import java.io.IOException;
-import java.io.PrintWriter;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Paths;
-import java.nio.file.StandardOpenOption;
-import java.util.Calendar;
+import java.security.MessageDigest;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
 
 /**
  * This service provides functionality to submit a request
  * to get all tasks for a user using the unique token
  *
  * @author Darren White
- * @version 0.1.6
+ * @version 0.1.25
  */
 public class TaskService extends Service {
 
@@ -32,6 +51,12 @@ public class TaskService extends Service {
 	private static final String URL_LIST_TASKS = URL_API +
 			"?method=list_tasks&token=%s";
 
+	/**
+	 * The argument added to the list tasks url to only get
+	 * the tasks changed since a revision
+	 */
+	private static final String URL_SINCE = "&since=%s";
+
 	/**
 	 * The url to list all steps using the user token and
 	 * step ids (separated using commas)
@@ -41,23 +66,35 @@ public class TaskService extends Service {
 
 	/**
 	 * The url to update a task status using the user token,
-	 * the task id and the new status
+	 * the task id, the new status and the update key
 	 */
 	private static final String URL_SET_STATUS = URL_API +
-			"?method=change_status&token=%s&id=%d&status=%d&completed_time=%d";
+			"?method=change_status&token=%s&id=%d&status=%d&completed_time=%d&idempotency_key=%s";
 
 	/**
 	 * The url to set a task step comment using the user token,
-	 * step id and the new comment
+	 * step id and the update key
 	 */
 	private static final String URL_SET_COMMENT = URL_API +
-			"?method=set_task_step_comment&token=%s&id=%d";
+			"?method=set_task_step_comment&token=%s&id=%d&idempotency_key=%s";
 
 	/**
 	 * The arguments to post to the url
 	 */
 	private static final String URL_SET_COMMENT_POST = "comment=%s";
 
+	/**
+	 * The url to send a number of updates in one request
+	 * using the user token
+	 */
+	private static final String URL_BATCH_UPDATE = URL_API +
+			"?method=batch_update&token=%s";
+
+	/**
+	 * The updates encoded as a json array for POST
+	 */
+	private static final String URL_BATCH_UPDATE_POST = "updates=%s";
+
 	/**
 	 * The key attribute to get the task list value
 	 */
@@ -68,6 +105,27 @@ public class TaskService extends Service {
 	 */
 	private static final String KEY_STEP_ARRAY = "steps";
 
+	/**
+	 * The key attribute to get the revision of the server
+	 */
+	private static final String KEY_REVISION = "revision";
+
+	/**
+	 * The key attribute to get the result of each update in a batch
+	 */
+	private static final String KEY_RESULTS = "results";
+
+	/**
+	 * The key attribute to get the ids of deleted tasks
+	 */
+	private static final String KEY_DELETED = "deleted";
+
+	/**
+	 * The key attribute for the key of an update so the
+	 * server only makes it once
+	 */
+	private static final String KEY_IDEMPOTENCY = "idempotency_key";
+
 	/**
 	 * The key attribute to get the task/step id
 	 */
@@ -123,29 +181,169 @@ public class TaskService extends Service {
 	private static final String KEY_STEP_COMMENT = "comment";
 
 	/**
-	 * The path to store local sync updates
+	 * The date the server sends when a date isn't set
+	 */
+	private static final String ZERO_DATE = "0000-00-00";
+
+	/**
+	 * The path of the text file local updates were stored in
+	 * before the journal (imported into the journal)
 	 */
 	private static final String PATH_SYNC = TaskerCLI.getUserHomeDir() +
 			File.separator + ".tasker_sync";
 
 	/**
-	 * Adds the steps to each task in the specified list using the
-	 * user login token
+	 * The path of the journal of local updates
+	 */
+	private static final String PATH_JOURNAL = TaskerCLI.getUserHomeDir() +
+			File.separator + ".tasker_journal";
+
+	/**
+	 * If the server accepts batches of updates (set to false
+	 * the first time a batch isn't accepted)
+	 */
+	private static volatile boolean batchSupported = true;
+
+	/**
+	 * The error message of each update from the last call to
+	 * submitUpdates (null for updates without an error)
+	 */
+	private String[] errorMessages = new String[0];
+
+	/**
+	 * The journal updates are stored in while offline
+	 * (opened when it is first needed)
+	 */
+	private static Journal journal;
+
+	/**
+	 * The maximum length of a get_steps url as longer
+	 * urls are rejected by some proxies
+	 */
+	private static final int MAX_URL_LENGTH = 2000;
+
+	/**
+	 * The maximum number of get_steps requests sent at once
+	 */
+	private static final int MAX_STEP_REQUESTS = 4;
+
+	/**
+	 * The smallest number of tasks to get the steps for in one request
+	 */
+	private static final int MIN_STEP_BATCH = 10;
+
+	/**
+	 * The largest number of tasks to get the steps for in one request
+	 */
+	private static final int MAX_STEP_BATCH = 1000;
+
+	/**
+	 * The time in milliseconds a get_steps request should take. Batches
+	 * are made smaller when requests are slower than this and larger
+	 * when they are much faster.
+	 */
+	private static final long TARGET_STEP_LATENCY = 1000;
+
+	/**
+	 * The number of tasks to get the steps for in one request, adapted
+	 * from how long previous requests took
+	 */
+	private static volatile int stepBatchSize = 100;
+
+	/**
+	 * Adds the steps to a task unless they have already been added. The
+	 * steps are added by whichever arrives last out of the task and its
+	 * steps, so this is called from the parsing and I/O threads.
+	 *
+	 * @param task      The task to add the steps to
+	 * @param taskSteps The steps of the task (null if they haven't arrived)
+	 * @param added     The ids of the tasks which have their steps
+	 */
+	private static void addTaskSteps(Task task, List<Step> taskSteps, Set<Integer> added) {
+		if (taskSteps != null && added.add(task.getId())) {
+			taskSteps.forEach(task::addStep);
+		}
+	}
+
+	/**
+	 * Gets the error message of an update from the last call to
+	 * submitUpdates
+	 *
+	 * @param index The index of the update
+	 * @return The error message or null if there wasn't an error
+	 * {@link TaskService#submitUpdates(String, List)}
+	 */
+	public String getErrorMessage(int index) {
+		return errorMessages[index];
+	}
+
+	/**
+	 * Gets the journal updates are stored in while offline, opening it
+	 * the first time. Updates from the old text file are imported.
+	 *
+	 * @return The journal
+	 * @throws IOException If an I/O exception occurs
+	 */
+	public static synchronized Journal getJournal() throws IOException {
+		if (journal == null) {
+			journal = new Journal(Paths.get(PATH_JOURNAL), Journal.SyncPolicy.RECORD);
+			journal.importLegacy(Paths.get(PATH_SYNC));
+		}
+
+		return journal;
+	}
+
+	/**
+	 * Hashes the steps of the tasks with the ids in order of id, so the
+	 * hash doesn't depend on how the steps were split into requests
+	 *
+	 * @param ids   The ids of the tasks
+	 * @param steps The steps for each task with the task id as the key
+	 * @return The hash of the steps
+	 */
+	private static byte[] hashSteps(Collection<Integer> ids, Map<Integer, List<Step>> steps) {
+		MessageDigest digest = createDigest();
+
+		for (int id : new TreeSet<>(ids)) {
+			// Separate each value so they can't run into each other
+			digest.update((id + "\n").getBytes(StandardCharsets.UTF_8));
+
+			for (Step s : steps.getOrDefault(id, Collections.emptyList())) {
+				digest.update((s.getId() + "\0" + s.getTitle() + "\0" + s.getComment() + "\n")
+						.getBytes(StandardCharsets.UTF_8));
+			}
+		}
+
+		return digest.digest();
+	}
+
+	/**
+	 * Gets the steps for each of the tasks with the ids using
+	 * the user login token
 	 *
-	 * @param tasks The list of tasks to add steps to
 	 * @param token The token for the current user
+	 * @param ids   The ids of the tasks to get the steps for
+	 * @return The steps for each task with the task id as the key
 	 * @throws IOException    If an I/O exception occurs
 	 * @throws ParseException If a ParseException occurs
 	 */
-	private void addTaskSteps(ObservableList<Task> tasks, String token) throws IOException, ParseException {
+	public Map<Integer, List<Step>> getSteps(String token, Collection<Integer> ids) throws IOException, ParseException {
+		// The steps for each task
+		Map<Integer, List<Step>> steps = new HashMap<>();
+
+		// No need to send a request without any tasks
+		if (ids.isEmpty()) {
+			return steps;
+		}
+
 		// All the task ids concataned and separated with commas
-		StringBuilder ids = new StringBuilder();
+		StringBuilder sb = new StringBuilder();
 
 		// Append the task ids to the string
-		tasks.forEach(t -> ids.append(t.getId()).append(','));
+		ids.forEach(id -> sb.append(id).append(','));
 
 		// Create the url to submit with the method, token and task ids
-		String url = String.format(URL_LIST_STEPS, token, ids.toString());
+		String url = String.format(URL_LIST_STEPS, token, sb.toString());
 		// Submit the request along with the token
 		int status = submit(url);
 
@@ -156,94 +354,464 @@ public class TaskService extends Service {
 			// Get all the steps from the response object
 			JSONObject stepList = (JSONObject) response.get(KEY_STEP_ARRAY);
 
-			// Iterate all tasks to add its steps
-			for (Task task : tasks) {
+			// Iterate all tasks to get their steps
+			for (int id : ids) {
 				// Get the array of steps with the task id
 				// JSON uses string for keys so wrap the id in a string
-				JSONArray stepsArray = (JSONArray) stepList.get(String.valueOf(task.getId()));
+				JSONArray stepsArray = (JSONArray) stepList.get(String.valueOf(id));
+
+				// The steps for the task
+				List<Step> taskSteps = new ArrayList<>();
+
+				// The task may not have any steps
+				if (stepsArray == null) {
+					steps.put(id, taskSteps);
+					continue;
+				}
 
 				// Iterate all the steps
 				for (Object step : stepsArray) {
 					// Each step is a JSONObject
-					// Parse the step and add it to the task
-					task.addStep(parseStep((JSONObject) step));
+					// Parse the step and add it to the list
+					taskSteps.add(parseStep((JSONObject) step));
 				}
+
+				steps.put(id, taskSteps);
 			}
 		}
+
+		return steps;
 	}
 
 	/**
-	 * Gets the tasks from the database for the user
+	 * Gets the tasks and their steps from the database for the user
 	 * using the token
 	 *
-	 * @param tasks The list of tasks to add to
 	 * @param token The token for the current user
+	 * @return The tasks or null if the server cannot be reached
 	 * @throws IOException    If an I/O exception occurs
 	 * @throws ParseException If a Parse exception occurs
+	 * {@link TaskService#getTasks(String, Collection)}
+	 */
+	public List<Task> getTasks(String token) throws IOException, ParseException {
+		return getTasks(token, Collections.emptySet());
+	}
+
+	/**
+	 * Gets the tasks and their steps from the database for the user
+	 * using the token. The complete list is built on the calling thread
+	 * and nothing is added to the ui, so the caller can publish all of
+	 * the tasks at once. The steps for the tasks which are already known
+	 * are requested at the same time as the task list.
+	 *
+	 * @param token    The token for the current user
+	 * @param knownIds The ids of the tasks from the last time (may be empty)
+	 * @return The tasks or null if the server cannot be reached
+	 * @throws IOException    If an I/O exception occurs
+	 * @throws ParseException If a ParseException occurs
+	 */
+	public List<Task> getTasks(String token, Collection<Integer> knownIds) throws IOException, ParseException {
+		TaskDelta delta = getChanges(token, null, knownIds, false, () -> {
+		});
+
+		return delta != null ? delta.getTasks() : null;
+	}
+
+	/**
+	 * Gets the tasks (and their steps) which have changed since the
+	 * revision. If the revision is null or the server does not support
+	 * changes the full list of tasks is returned instead, in which case
+	 * the steps for the tasks which are already known are requested at
+	 * the same time as the task list. The task list is requested
+	 * conditionally and the known steps are compared with their hash
+	 * from last time, so if none of them have changed an empty delta is
+	 * returned. The validators and hashes read are only used by the next
+	 * sync once they have been committed.
+	 *
+	 * @param token    The token for the current user
+	 * @param since    The revision from the last sync (null for all tasks)
+	 * @param knownIds The ids of the tasks from the last time (may be empty)
+	 * @return The changes or null if the server cannot be reached
+	 * @throws IOException    If an I/O exception occurs
+	 * @throws ParseException If a ParseException occurs
+	 * {@link TaskDelta#isUnchanged()}
+	 * {@link Service#commitValidators()}
+	 */
+	public TaskDelta getChanges(String token, String since, Collection<Integer> knownIds)
+			throws IOException, ParseException {
+		return getChanges(token, since, knownIds, () -> {
+		});
+	}
+
+	/**
+	 * Gets the tasks (and their steps) which have changed since the
+	 * revision, checking if the fetch should stop as each batch of
+	 * tasks and steps is read. The checkpoint stops the fetch by
+	 * throwing an unchecked exception, which is thrown from here.
+	 *
+	 * @param token      The token for the current user
+	 * @param since      The revision from the last sync (null for all tasks)
+	 * @param knownIds   The ids of the tasks from the last time (may be empty)
+	 * @param checkpoint Called between batches to stop the fetch by throwing
+	 * @return The changes or null if the server cannot be reached
+	 * @throws IOException    If an I/O exception occurs
+	 * @throws ParseException If a ParseException occurs
+	 * {@link TaskService#getChanges(String, String, Collection)}
 	 */
-	public void getTasks(ObservableList<Task> tasks, String token) throws IOException, ParseException {
+	public TaskDelta getChanges(String token, String since, Collection<Integer> knownIds, Runnable checkpoint)
+			throws IOException, ParseException {
+		// Without a revision or any known tasks the caller has nothing
+		// an unchanged delta could be applied to
+		return getChanges(token, since, knownIds, since != null || !knownIds.isEmpty(), checkpoint);
+	}
+
+	/**
+	 * Gets the tasks (and their steps) which have changed since the
+	 * revision, optionally using conditional requests
+	 *
+	 * @param token       The token for the current user
+	 * @param since       The revision from the last sync (null for all tasks)
+	 * @param knownIds    The ids of the tasks from the last time (may be empty)
+	 * @param conditional If an unchanged delta can be returned
+	 * @param checkpoint  Called between batches to stop the fetch by throwing
+	 * @return The changes or null if the server cannot be reached
+	 * @throws IOException    If an I/O exception occurs
+	 * @throws ParseException If a ParseException occurs
+	 * {@link TaskService#getChanges(String, String, Collection, Runnable)}
+	 */
+	private TaskDelta getChanges(String token, String since, Collection<Integer> knownIds, boolean conditional,
+	                             Runnable checkpoint) throws IOException, ParseException {
+		// The steps for each task as the batches arrive
+		Map<Integer, List<Step>> steps = new ConcurrentHashMap<>();
+		// The tasks read so far with the task id as the key
+		Map<Integer, Task> read = new ConcurrentHashMap<>();
+		// The ids of the tasks which have their steps
+		Set<Integer> added = ConcurrentHashMap.newKeySet();
+		// Keep the steps of each batch and add them to the tasks already
+		// read, so each task is complete as soon as its steps arrive
+		Consumer<Map<Integer, List<Step>>> arrived = s -> {
+			steps.putAll(s);
+			s.forEach((id, taskSteps) -> {
+				Task t = read.get(id);
+
+				if (t != null) {
+					addTaskSteps(t, taskSteps, added);
+				}
+			});
+			// Stops the requests for the rest of the batches too
+			checkpoint.run();
+		};
+		// Start getting the steps we already know about while the
+		// task list downloads (only changed tasks are needed otherwise)
+		CompletableFuture<Void> prefetch = since == null ? getStepsAsync(token, knownIds, arrived) :
+				CompletableFuture.completedFuture(null);
 		// Create the url to submit with the method, and token
 		String url = String.format(URL_LIST_TASKS, token);
-		// Submit the request along with the token
-		int status = submit(url);
+
+		// Only ask for the changes if we have a revision
+		if (since != null) {
+			url += String.format(URL_SINCE, encode(since));
+		}
+
+		// The tasks read from the response
+		List<Task> tasks = new ArrayList<>();
+		// The requests for the steps of the tasks read so far
+		List<CompletableFuture<Void>> streamed = new ArrayList<>();
+		// The ids of the tasks read which the steps haven't been requested for
+		List<Integer> batch = new ArrayList<>();
+		// The ids being prefetched don't need to be requested again
+		Collection<Integer> requested = since == null ? new HashSet<>(knownIds) : Collections.emptySet();
+		// Read each task and request the steps for new tasks in batches
+		// while the rest of the task list is still being parsed
+		Consumer<Task> reader = t -> {
+			tasks.add(t);
+			read.put(t.getId(), t);
+			// The steps may have arrived first
+			addTaskSteps(t, steps.get(t.getId()), added);
+
+			if (!requested.contains(t.getId())) {
+				batch.add(t.getId());
+
+				if (batch.size() >= stepBatchSize) {
+					// Stops reading the rest of the task list
+					checkpoint.run();
+					streamed.add(getStepsAsync(token, new ArrayList<>(batch), arrived));
+					batch.clear();
+				}
+			}
+		};
+		// Submit the request along with the token and read each
+		// task from the response as it arrives (unless it's the
+		// same as last time)
+		int status;
+
+		try {
+			setConditional(conditional);
+			status = submit(url, null, in -> readTasks(in, reader));
+		} finally {
+			setConditional(false);
+		}
+
+		// The steps are hashed with a key which doesn't depend on
+		// how they were split into requests
+		String stepsKey = String.format(URL_LIST_STEPS, token, "");
+		// If any of the known steps have changed (assume they have
+		// unless they all arrived)
+		boolean stepsChanged = true;
+
+		try {
+			// Wait for the steps that were fetched while getting the tasks
+			prefetch.get();
+
+			// Compare the known steps with the last full sync
+			if (since == null) {
+				stepsChanged = !Arrays.equals(hashSteps(knownIds, steps), getHash(stepsKey));
+			}
+		} catch (ExecutionException | InterruptedException e) {
+			// Any missing steps are fetched again below
+		}
+
+		// Stop before anything else is requested
+		checkpoint.run();
+
+		if (status == STATUS_NOT_MODIFIED) {
+			// Nothing has changed at all
+			if (!stepsChanged) {
+				return new TaskDelta(Collections.emptyList(), Collections.emptyList(), since, false);
+			}
+
+			// Forget anything read from a body which hashed the same
+			tasks.clear();
+			read.clear();
+			added.clear();
+			batch.clear();
+
+			// Some steps have changed so we need the tasks again
+			status = submit(url, null, in -> readTasks(in, reader));
+		}
 
 		// An error occurred, handle it
 		if (status == STATUS_ERROR) {
 			// This should never happen as the token
 			// is retrieved at login
 			throw new IllegalStateException(getErrorMessage());
-		} else if (status == STATUS_SUCCESS) {
-			// Get the response object
-			JSONObject response = (JSONObject) getResponse();
-			// Get the list of tasks as an array
-			JSONArray taskList = (JSONArray) response.get(KEY_TASK_ARRAY);
+		} else if (status != STATUS_SUCCESS) {
+			// Unable to reach the server
+			return null;
+		}
 
-			// Iterate over the tasks
-			for (Object o : taskList) {
-				// Each object is a JSON object
-				JSONObject obj = (JSONObject) o;
+		// The revision and deleted tasks (if the server supports changes)
+		JSONObject response = (JSONObject) getResponse();
+		String revision = null;
+		List<Integer> deleted = Collections.emptyList();
 
-				// Parse the task
-				Task task = parseTask(obj);
+		if (response != null) {
+			revision = (String) response.get(KEY_REVISION);
 
-				// Add it to the list
-				// Run on the JavaFX thread to update the ui
-				Platform.runLater(() -> tasks.add(task));
+			if (response.containsKey(KEY_DELETED)) {
+				// The ids are read as a list of integers
+				@SuppressWarnings("unchecked")
+				List<Integer> ids = (List<Integer>) response.get(KEY_DELETED);
+				deleted = ids;
 			}
+		}
 
-			// Ensure all tasks have been added before getting
-			// the steps - this is due to adding the tasks to the
-			// list while on the JavaFX thread
-			while (tasks.size() != taskList.size()) {
-				try {
-					Thread.sleep(50);
-				} catch (InterruptedException ignored) {
+		try {
+			// Wait for the steps requested while parsing
+			CompletableFuture.allOf(streamed.toArray(new CompletableFuture<?>[0])).get();
+		} catch (ExecutionException | InterruptedException e) {
+			// Any missing steps are fetched again below
+		}
+
+		checkpoint.run();
+
+		// The ids of tasks we still need the steps for (including
+		// the unchanged steps which weren't read and the last batch)
+		Set<Integer> remaining = new HashSet<>();
+
+		for (Task t : tasks) {
+			if (!steps.containsKey(t.getId())) {
+				remaining.add(t.getId());
+			}
+		}
+
+		try {
+			// Get the rest of the steps
+			getStepsAsync(token, remaining, arrived).get();
+		} catch (InterruptedException e) {
+			throw new IOException("Interrupted while getting steps", e);
+		} catch (ExecutionException e) {
+			// The fetch was stopped between batches
+			checkpoint.run();
+
+			// Throw the cause if we can
+			if (e.getCause() instanceof IOException) {
+				throw (IOException) e.getCause();
+			} else if (e.getCause() instanceof ParseException) {
+				throw (ParseException) e.getCause();
+			}
+
+			throw new IllegalStateException(e.getCause());
+		}
+
+		for (Task t : tasks) {
+			// Tasks without their steps would replace the stored
+			// tasks which have them, so fail instead
+			if (!steps.containsKey(t.getId())) {
+				if (!checkConnection()) {
+					// Went offline while getting the steps
+					return null;
 				}
+
+				throw new IOException("Unable to get the steps for task " + t.getId());
 			}
 
-			// Add the task steps for all tasks
-			addTaskSteps(tasks, token);
+			// Add any steps which arrived while the task was being read
+			addTaskSteps(t, steps.get(t.getId()), added);
+		}
+
+		// Remember the steps of every task to compare with next time
+		if (since == null || revision == null) {
+			stageHash(stepsKey, hashSteps(tasks.stream().map(Task::getId)
+					.collect(Collectors.toList()), steps));
+		}
+
+		// Without a revision the server has sent every task
+		return new TaskDelta(tasks, deleted, revision, since == null || revision == null);
+	}
+
+	/**
+	 * Gets the steps for the tasks with the ids without blocking. The ids
+	 * are split into batches so the urls don't get too long, and a few
+	 * batches are requested at once. Each batch is passed to the consumer
+	 * (on an I/O thread) as soon as it arrives.
+	 *
+	 * @param token    The token for the current user
+	 * @param ids      The ids of the tasks to get the steps for
+	 * @param consumer The consumer for the steps of each batch
+	 * @return A future completed once all of the batches have arrived
+	 */
+	public CompletableFuture<Void> getStepsAsync(String token, Collection<Integer> ids,
+	                                             Consumer<Map<Integer, List<Step>>> consumer) {
+		// The ids still to be requested (in order)
+		Queue<Integer> queue = new ArrayDeque<>(new TreeSet<>(ids));
+		// The number of requests to send at once
+		int parallel = Math.min(MAX_STEP_REQUESTS, (ids.size() + MIN_STEP_BATCH - 1) / MIN_STEP_BATCH);
+		CompletableFuture<?>[] futures = new CompletableFuture<?>[parallel];
+
+		for (int i = 0; i < parallel; i++) {
+			// Each one takes batches from the queue until it is empty
+			// A new service is used as each service can only send
+			// one request at a time
+			futures[i] = async(() -> {
+				TaskService service = new TaskService();
+				List<Integer> batch;
+
+				while (!(batch = nextStepBatch(token, queue)).isEmpty()) {
+					long start = System.nanoTime();
+					Map<Integer, List<Step>> steps = service.getSteps(token, batch);
+
+					// Change the batch size for the time it took
+					adaptStepBatchSize(batch.size(), (System.nanoTime() - start) / 1000000);
+
+					// Pass the steps on
+					consumer.accept(steps);
+				}
+
+				return null;
+			});
+		}
+
+		return CompletableFuture.allOf(futures);
+	}
+
+	/**
+	 * Changes the number of tasks in each get_steps request depending on
+	 * how long the last request took
+	 *
+	 * @param size   The number of tasks in the request
+	 * @param millis The time taken in milliseconds
+	 */
+	private static void adaptStepBatchSize(int size, long millis) {
+		if (millis > TARGET_STEP_LATENCY) {
+			// Too slow so make the batches smaller
+			stepBatchSize = Math.max(MIN_STEP_BATCH, size / 2);
+		} else if (millis < TARGET_STEP_LATENCY / 2 && size >= stepBatchSize) {
+			// A full batch was fast so make them bigger
+			stepBatchSize = Math.min(MAX_STEP_BATCH, size * 2);
+		}
+	}
+
+	/**
+	 * Takes the next batch of ids from the queue. The batch is limited by
+	 * the current batch size and by the length of the url.
+	 *
+	 * @param token The token for the current user
+	 * @param queue The ids still to be requested
+	 * @return The next batch (empty once the queue is empty)
+	 */
+	private static List<Integer> nextStepBatch(String token, Queue<Integer> queue) {
+		List<Integer> batch = new ArrayList<>();
+		// The length of the url without any ids
+		int length = String.format(URL_LIST_STEPS, token, "").length();
+		// The maximum number of ids for this batch
+		int size = stepBatchSize;
+
+		synchronized (queue) {
+			while (batch.size() < size && !queue.isEmpty()) {
+				// Each id is followed by a comma
+				length += String.valueOf(queue.peek()).length() + 1;
+
+				// Always take at least one id
+				if (length > MAX_URL_LENGTH && !batch.isEmpty()) {
+					break;
+				}
+
+				batch.add(queue.poll());
+			}
 		}
+
+		return batch;
 	}
 
 	/**
-	 * Try and parse the dates from the String
+	 * Gets the tasks and their steps from the database for the user
+	 * without blocking
 	 *
-	 * @param s The date in string format
-	 * @return The date parsed from the string
+	 * @param token The token for the current user
+	 * @return A future completed with the tasks (or null if offline)
+	 * {@link TaskService#getTasks(String)}
 	 */
-	private Calendar parseDate(String s) {
-		// Create a new Calendar to store the date in
-		Calendar c = Calendar.getInstance();
+	public CompletableFuture<List<Task>> getTasksAsync(String token) {
+		return async(() -> getTasks(token));
+	}
+
+	/**
+	 * Try and parse the dates from the String. Safe to call from any
+	 * thread as the dates are parsed and shared by the date cache.
+	 *
+	 * @param s The date in string format (may be followed by a time)
+	 * @return The date parsed from the string (null for the zero date)
+	 */
+	private static LocalDate parseDate(String s) {
+		// Use the current date if there is no date
+		if (s == null) {
+			return LocalDate.now();
+		}
+
+		// The server sends the zero date when a date isn't set
+		// (with a zero time for times)
+		if (s.startsWith(ZERO_DATE)) {
+			return null;
+		}
 
 		try {
 			// Try and parse the date from the string
-			c.setTime(Task.DATE_FORMAT.parse(s));
-		} catch (java.text.ParseException e) {
+			return DateCache.parse(s);
+		} catch (DateTimeParseException e) {
 			e.printStackTrace();
+			return LocalDate.now();
 		}
-
-		return c;
 	}
 
 	/**
@@ -252,7 +820,7 @@ public class TaskService extends Service {
 	 * @param obj The object to parse the step from
 	 * @return The new step from the object
 	 */
-	private Step parseStep(JSONObject obj) {
+	private static Step parseStep(JSONObject obj) {
 		// Get step id (cannot cast to int as json works with strings)
 		int id = Integer.parseInt((String) obj.get(KEY_STEP_ID));
 		// Get the title of the step
@@ -265,94 +833,479 @@ public class TaskService extends Service {
 	}
 
 	/**
-	 * Parse the task values from the JSONObject
+	 * Reads the error object from the stream
+	 *
+	 * @param in The reader positioned at the error value
+	 * @return The error object with the message
+	 * @throws IOException    If an I/O exception occurs
+	 * @throws ParseException If a ParseException occurs
+	 */
+	@SuppressWarnings("unchecked")
+	private static JSONObject readError(JsonReader in) throws IOException, ParseException {
+		JSONObject err = new JSONObject();
+
+		// The error may not be an object
+		if (in.peek() != JsonReader.Token.BEGIN_OBJECT) {
+			in.skipValue();
+			return err;
+		}
+
+		in.beginObject();
+
+		while (in.hasNext()) {
+			if (in.nextName().equals(KEY_ERROR_MESSAGE)) {
+				err.put(KEY_ERROR_MESSAGE, in.nextString());
+			} else {
+				in.skipValue();
+			}
+		}
+
+		in.endObject();
+
+		return err;
+	}
+
+	/**
+	 * Read the task values from the next object in the stream
 	 *
-	 * @param obj The object to parse values from
+	 * @param in The reader positioned at the task object
 	 * @return The new task with values from the object
+	 * @throws IOException    If an I/O exception occurs
+	 * @throws ParseException If a ParseException occurs
 	 */
-	private Task parseTask(JSONObject obj) {
-		// Get task id (cannot cast to int as json works with strings)
-		int id = Integer.parseInt((String) obj.get(KEY_TASK_ID));
-		// Get the title of the task
-		String title = (String) obj.get(KEY_TASK_TITLE);
-		// Get the member name who created the task
-		String creator = (String) obj.get(KEY_TASK_CREATOR);
-		// Parse dates
-		Calendar dateCreated = parseDate((String) obj.get(KEY_TASK_DATE_CREATED));
-		Calendar dateDue = parseDate((String) obj.get(KEY_TASK_DATE_DUE));
-		Calendar dateCompleted = null;
-		// Get the task status
-		int status = Integer.parseInt((String) obj.get(KEY_TASK_STATUS));
+	private static Task readTask(JsonReader in) throws IOException, ParseException {
+		int id = 0;
+		String title = null;
+		String creator = null;
+		String dateCreated = null;
+		String dateDue = null;
+		String dateCompleted = null;
+		int status = 0;
 
-		// Task date can only be set if the task has been completed
-		if (status == Task.COMPLETED) {
-			dateCompleted = parseDate((String) obj.get(KEY_TASK_DATE_COMPLETED));
+		in.beginObject();
+
+		// The values can be in any order
+		while (in.hasNext()) {
+			switch (in.nextName()) {
+				case KEY_TASK_ID:
+					// Read the id straight from the string
+					id = in.nextInt();
+					break;
+				case KEY_TASK_TITLE:
+					title = in.nextString();
+					break;
+				case KEY_TASK_CREATOR:
+					creator = in.nextString();
+					break;
+				case KEY_TASK_DATE_CREATED:
+					dateCreated = in.nextString();
+					break;
+				case KEY_TASK_DATE_DUE:
+					dateDue = in.nextString();
+					break;
+				case KEY_TASK_DATE_COMPLETED:
+					dateCompleted = in.nextString();
+					break;
+				case KEY_TASK_STATUS:
+					status = in.nextInt();
+					break;
+				default:
+					in.skipValue();
+			}
 		}
 
+		in.endObject();
+
+		// Task date can only be set if the task has been completed
 		// Create the task and return it
-		return new Task(id, title, creator, dateCreated, dateDue,
-				dateCompleted, status);
+		return new Task(id, title, creator, parseDate(dateCreated), parseDate(dateDue),
+				status == Task.COMPLETED ? parseDate(dateCompleted) : null, status);
 	}
 
 	/**
-	 * Updates a task status using the user token and the task
+	 * Reads the result of a list_tasks request from the stream. Each task
+	 * is passed to the consumer as soon as it has been read so the whole
+	 * response is never held in memory. Only the status, error, revision
+	 * and deleted task ids are kept in the result.
 	 *
-	 * @param token The token for the current user
-	 * @param task  The task to update
+	 * @param r        The body of the response
+	 * @param consumer The consumer to pass each task to
+	 * @return The result object with the status and error
 	 * @throws IOException    If an I/O exception occurs
 	 * @throws ParseException If a ParseException occurs
 	 */
-	public void updateTaskStatus(String token, Task task) throws IOException, ParseException {
-		long seconds = 0;
+	@SuppressWarnings("unchecked")
+	static JSONObject readTasks(Reader r, Consumer<Task> consumer) throws IOException, ParseException {
+		JsonReader in = new JsonReader(r);
+		JSONObject result = new JSONObject();
 
-		if (task.getDateCompleted() != null) {
-			seconds = task.getDateCompleted().getTimeInMillis() / 1000;
+		in.beginObject();
+
+		while (in.hasNext()) {
+			switch (in.nextName()) {
+				case KEY_STATUS:
+					result.put(KEY_STATUS, in.nextString());
+					break;
+				case KEY_ERROR:
+					result.put(KEY_ERROR, readError(in));
+					break;
+				case KEY_RESPONSE:
+					// There is no response object for errors
+					if (in.peek() != JsonReader.Token.BEGIN_OBJECT) {
+						in.skipValue();
+						break;
+					}
+
+					result.put(KEY_RESPONSE, readTaskResponse(in, consumer));
+					break;
+				default:
+					in.skipValue();
+			}
 		}
 
-		updateTaskStatus(token, task.getId(), task.getStatus(), seconds);
+		in.endObject();
+
+		return result;
 	}
 
 	/**
-	 * Updates a task status using the user token and the task id
+	 * Reads the response object of a list_tasks request. The tasks are
+	 * passed to the consumer and everything else is kept in the object.
+	 *
+	 * @param in       The reader positioned at the response object
+	 * @param consumer The consumer to pass each task to
+	 * @return The response with the revision and deleted task ids
+	 * @throws IOException    If an I/O exception occurs
+	 * @throws ParseException If a ParseException occurs
+	 */
+	@SuppressWarnings("unchecked")
+	private static JSONObject readTaskResponse(JsonReader in, Consumer<Task> consumer)
+			throws IOException, ParseException {
+		JSONObject response = new JSONObject();
+
+		in.beginObject();
+
+		while (in.hasNext()) {
+			switch (in.nextName()) {
+				case KEY_TASK_ARRAY:
+					in.beginArray();
+
+					// Read each task in the array
+					while (in.hasNext()) {
+						consumer.accept(readTask(in));
+					}
+
+					in.endArray();
+					break;
+				case KEY_REVISION:
+					response.put(KEY_REVISION, in.nextString());
+					break;
+				case KEY_DELETED:
+					List<Integer> deleted = new ArrayList<>();
+
+					in.beginArray();
+
+					while (in.hasNext()) {
+						deleted.add(in.nextInt());
+					}
+
+					in.endArray();
+					response.put(KEY_DELETED, deleted);
+					break;
+				default:
+					in.skipValue();
+			}
+		}
+
+		in.endObject();
+
+		return response;
+	}
+
+	/**
+	 * Sets if the server accepts batches of updates
+	 *
+	 * @param supported If batches are accepted
+	 */
+	static void setBatchSupported(boolean supported) {
+		batchSupported = supported;
+	}
+
+	/**
+	 * Sets the journal updates are stored in while offline
+	 *
+	 * @param journal The journal to use
+	 */
+	public static synchronized void setJournal(Journal journal) {
+		TaskService.journal = journal;
+	}
+
+	/**
+	 * Submits the updates to the server in one request. Each update is
+	 * sent as the method and arguments of the request it replaces.
 	 *
 	 * @param token   The token for the current user
-	 * @param id      The unique id for the task
-	 * @param status  The status to set for the task
-	 * @param seconds The timestamp in seconds when the task was completed
+	 * @param updates The updates to submit
+	 * @param results The status of each update is stored in here
+	 * @return False if the server doesn't accept batches
 	 * @throws IOException    If an I/O exception occurs
 	 * @throws ParseException If a ParseException occurs
 	 */
-	public void updateTaskStatus(String token, int id, int status, long seconds) throws IOException, ParseException {
-		// Create the url to submit with the method, token, id, status and seconds
-		String url = String.format(URL_SET_STATUS, token, id, status, seconds);
-
-		// If we're offline then save updates to file
-		if (!Service.checkConnection()) {
-			// Create new file if it doens't exit
-			// Append changes to the file
-			try (PrintWriter pw = new PrintWriter(Files.newOutputStream(Paths.get(PATH_SYNC), StandardOpenOption.APPEND, StandardOpenOption.CREATE), true)) {
-				// Print the url to submit
-				pw.println(url);
-				// Print the id
-				pw.println(id);
-				// Print the status
-				pw.println(status);
-				// Print new line to separate
-				pw.println();
+	@SuppressWarnings("unchecked")
+	private boolean submitBatch(String token, List<Update> updates, int[] results)
+			throws IOException, ParseException {
+		JSONArray items = new JSONArray();
+
+		for (Update update : updates) {
+			JSONObject item = new JSONObject();
+
+			// All values are strings as with the arguments of each request
+			item.put(KEY_TASK_ID, String.valueOf(update.getId()));
+			item.put(KEY_IDEMPOTENCY, update.getKey().toString());
+
+			if (update.getType() == Update.STATUS) {
+				item.put("method", "change_status");
+				item.put(KEY_TASK_STATUS, String.valueOf(update.getStatus()));
+				item.put(KEY_TASK_DATE_COMPLETED, String.valueOf(update.getSeconds()));
+			} else {
+				item.put("method", "set_task_step_comment");
+				item.put(KEY_STEP_COMMENT, update.getComment());
 			}
 
-			return;
+			items.add(item);
 		}
 
-		// Submit the request along with the token
-		// and check if an error was returned
-		if (submit(url) == STATUS_ERROR) {
-			// This should never happen as the token and tasks
-			// are retrieved from the database
-			throw new IllegalStateException(getErrorMessage());
+		int result = submit(String.format(URL_BATCH_UPDATE, token),
+				String.format(URL_BATCH_UPDATE_POST, encode(items.toJSONString())));
+
+		if (result == STATUS_OFFLINE) {
+			Arrays.fill(results, STATUS_OFFLINE);
+			return true;
+		}
+
+		Object response = getResponse();
+		Object list = response instanceof JSONObject ? ((JSONObject) response).get(KEY_RESULTS) : null;
+
+		// Anything else means the method isn't supported
+		if (!(list instanceof JSONArray) || ((JSONArray) list).size() != updates.size()) {
+			batchSupported = false;
+			return false;
+		}
+
+		for (int i = 0; i < results.length; i++) {
+			JSONObject item = (JSONObject) ((JSONArray) list).get(i);
+
+			if (VALUE_STATUS_SUCCESS.equals(item.get(KEY_STATUS))) {
+				results[i] = STATUS_SUCCESS;
+			} else {
+				JSONObject err = (JSONObject) item.get(KEY_ERROR);
+
+				results[i] = STATUS_ERROR;
+				errorMessages[i] = err != null ? (String) err.get(KEY_ERROR_MESSAGE) : null;
+			}
+		}
+
+		return true;
+	}
+
+	/**
+	 * Submits an update to the server using the user token. The update
+	 * is sent with its key so sending it again doesn't change anything.
+	 * The update is not stored if the server can't be reached.
+	 *
+	 * @param token  The token for the current user
+	 * @param update The update to submit
+	 * @return The status of the request
+	 * {@link Service#STATUS_SUCCESS}
+	 * {@link Service#STATUS_ERROR}
+	 * {@link Service#STATUS_OFFLINE}
+	 * @throws IOException    If an I/O exception occurs
+	 * @throws ParseException If a ParseException occurs
+	 */
+	public int submitUpdate(String token, Update update) throws IOException, ParseException {
+		switch (update.getType()) {
+			case Update.STATUS:
+				// Create the url to submit with the method, token, id, status, seconds and key
+				return submit(String.format(URL_SET_STATUS, token, update.getId(),
+						update.getStatus(), update.getSeconds(), update.getKey()));
+			case Update.COMMENT:
+				// Submit the request along with the id and comment (for POST data)
+				return submit(String.format(URL_SET_COMMENT, token, update.getId(), update.getKey()),
+						String.format(URL_SET_COMMENT_POST, encode(update.getComment())));
+			default:
+				throw new IllegalArgumentException("Invalid update type: " + update.getType());
+		}
+	}
+
+	/**
+	 * Submits the updates to the server using the user token. A number of
+	 * updates are sent in one request if the server accepts batches,
+	 * otherwise each update is sent on its own in order. The updates
+	 * aren't stored if the server can't be reached.
+	 *
+	 * @param token   The token for the current user
+	 * @param updates The updates to submit
+	 * @return The status of each update in the same order
+	 * {@link Service#STATUS_SUCCESS}
+	 * {@link Service#STATUS_ERROR}
+	 * {@link Service#STATUS_OFFLINE}
+	 * @throws IOException    If an I/O exception occurs
+	 * @throws ParseException If a ParseException occurs
+	 * {@link TaskService#getErrorMessage(int)}
+	 */
+	public int[] submitUpdates(String token, List<Update> updates) throws IOException, ParseException {
+		int[] results = new int[updates.size()];
+
+		errorMessages = new String[updates.size()];
+
+		if (updates.size() > 1 && batchSupported && submitBatch(token, updates, results)) {
+			return results;
+		}
+
+		// Anything not sent was not sent as we're offline
+		Arrays.fill(results, STATUS_OFFLINE);
+
+		// Send one request for each update
+		for (int i = 0; i < results.length; i++) {
+			try {
+				results[i] = submitUpdate(token, updates.get(i));
+			} catch (IOException e) {
+				// The request didn't reach the server
+				break;
+			}
+
+			if (results[i] == STATUS_OFFLINE) {
+				break;
+			}
+
+			errorMessages[i] = getErrorMessage();
+		}
+
+		return results;
+	}
+
+	/**
+	 * Submits the updates to the server using the user token. If the
+	 * server can't be reached the updates are written to the journal
+	 * to be sent later.
+	 *
+	 * @param token   The token for the current user
+	 * @param updates The updates to submit
+	 * @throws IOException    If an I/O exception occurs
+	 * @throws ParseException If a ParseException occurs
+	 */
+	public void update(String token, List<Update> updates) throws IOException, ParseException {
+		// The status of each update
+		int[] results;
+		// The first error message
+		String error = null;
+
+		try {
+			results = submitUpdates(token, updates);
+		} catch (IOException e) {
+			// The request didn't reach the server
+			results = new int[updates.size()];
+			Arrays.fill(results, STATUS_OFFLINE);
+		}
+
+		for (int i = 0; i < results.length; i++) {
+			if (results[i] == STATUS_OFFLINE) {
+				// If we're offline then save the update to the journal
+				getJournal().append(updates.get(i));
+			} else if (results[i] == STATUS_ERROR && error == null) {
+				// This should never happen as the token and tasks
+				// are retrieved from the database
+				error = getErrorMessage(i);
+			}
+		}
+
+		// Check if an error was returned
+		if (error != null) {
+			throw new IllegalStateException(error);
 		}
 	}
 
+	/**
+	 * Submits the updates to the server using the user token without
+	 * blocking. If the server can't be reached the updates are written
+	 * to the journal to be sent later.
+	 *
+	 * @param token   The token for the current user
+	 * @param updates The updates to submit
+	 * @return A future completed once the updates have been submitted
+	 * {@link TaskService#update(String, List)}
+	 */
+	public CompletableFuture<Void> updateAsync(String token, List<Update> updates) {
+		return async(() -> {
+			update(token, updates);
+			return null;
+		});
+	}
+
+	/**
+	 * Updates a task status using the user token and the task
+	 *
+	 * @param token     The token for the current user
+	 * @param task      The task to update
+	 * @param completed The time the task was completed (null if it isn't)
+	 * @throws IOException    If an I/O exception occurs
+	 * @throws ParseException If a ParseException occurs
+	 */
+	public void updateTaskStatus(String token, Task task, Instant completed) throws IOException, ParseException {
+		Update update = Update.status(task, completed);
+
+		updateTaskStatus(token, update.getId(), update.getStatus(), update.getSeconds());
+	}
+
+	/**
+	 * Updates a task status using the user token and the task without
+	 * blocking. The task values are read straight away so this should be
+	 * called on the thread the task is changed on.
+	 *
+	 * @param token     The token for the current user
+	 * @param task      The task to update
+	 * @param completed The time the task was completed (null if it isn't)
+	 * @return A future completed once the status has been updated
+	 * {@link TaskService#updateTaskStatus(String, Task, Instant)}
+	 */
+	public CompletableFuture<Void> updateTaskStatusAsync(String token, Task task, Instant completed) {
+		Update update = Update.status(task, completed);
+
+		return updateTaskStatusAsync(token, update.getId(), update.getStatus(), update.getSeconds());
+	}
+
+	/**
+	 * Updates a task status using the user token and the task id
+	 * without blocking
+	 *
+	 * @param token   The token for the current user
+	 * @param id      The unique id for the task
+	 * @param status  The status to set for the task
+	 * @param seconds The timestamp in seconds when the task was completed
+	 * @return A future completed once the status has been updated
+	 * {@link TaskService#updateTaskStatus(String, int, int, long)}
+	 */
+	public CompletableFuture<Void> updateTaskStatusAsync(String token, int id, int status, long seconds) {
+		return async(() -> {
+			updateTaskStatus(token, id, status, seconds);
+			return null;
+		});
+	}
+
+	/**
+	 * Updates a task status using the user token and the task id
+	 *
+	 * @param token   The token for the current user
+	 * @param id      The unique id for the task
+	 * @param status  The status to set for the task
+	 * @param seconds The timestamp in seconds when the task was completed
+	 * @throws IOException    If an I/O exception occurs
+	 * @throws ParseException If a ParseException occurs
+	 */
+	public void updateTaskStatus(String token, int id, int status, long seconds) throws IOException, ParseException {
+		update(token, Collections.singletonList(Update.status(id, status, seconds)));
+	}
+
 	/**
 	 * Updates a task step comment using the user token and the
 	 * task step
@@ -366,6 +1319,36 @@ public class TaskService extends Service {
 		updateTaskStepComment(token, step.getId(), step.getComment());
 	}
 
+	/**
+	 * Updates a task step comment using the user token and the
+	 * task step without blocking. The comment is read straight away.
+	 *
+	 * @param token The token for the current user
+	 * @param step  The task step to update
+	 * @return A future completed once the comment has been updated
+	 * {@link TaskService#updateTaskStepComment(String, Step)}
+	 */
+	public CompletableFuture<Void> updateTaskStepCommentAsync(String token, Step step) {
+		return updateTaskStepCommentAsync(token, step.getId(), step.getComment());
+	}
+
+	/**
+	 * Updates a task step comment using the user token and the
+	 * task step id without blocking
+	 *
+	 * @param token   The token for the current user
+	 * @param id      The unique id for the task step
+	 * @param comment The comment to set for the task step
+	 * @return A future completed once the comment has been updated
+	 * {@link TaskService#updateTaskStepComment(String, int, String)}
+	 */
+	public CompletableFuture<Void> updateTaskStepCommentAsync(String token, int id, String comment) {
+		return async(() -> {
+			updateTaskStepComment(token, id, comment);
+			return null;
+		});
+	}
+
 	/**
 	 * Updates a task step comment using the user token and the
 	 * task step id
@@ -377,35 +1360,7 @@ public class TaskService extends Service {
 	 * @throws ParseException If a ParseException occurs
 	 */
 	public void updateTaskStepComment(String token, int id, String comment) throws IOException, ParseException {
-		// Create the url to submit with the token
-		String url = String.format(URL_SET_COMMENT, token, id);
-
-		// If we're offline then save updates to file
-		if (!Service.checkConnection()) {
-			// Create new file if it doens't exit
-			// Append changes to the file
-			try (PrintWriter pw = new PrintWriter(Files.newOutputStream(Paths.get(PATH_SYNC), StandardOpenOption.APPEND, StandardOpenOption.CREATE), true)) {
-				// Print the url to submit
-				pw.println(url);
-				// Print the id
-				pw.println(id);
-				// Print the comment
-				pw.println(comment);
-				// Print the comment for POST
-				pw.println(String.format(URL_SET_COMMENT_POST, encode(comment)));
-				// Print new line to separate
-				pw.println();
-			}
-
-			return;
-		}
-
-		// Submit the request along with the id and comment (for POST data)
-		// Encode the comment for the url
-		if (submit(url, String.format(URL_SET_COMMENT_POST, encode(comment))) == STATUS_ERROR) {
-			// This should never happen as the token and tasks
-			// are retrieved from the database
-			throw new IllegalStateException(getErrorMessage());
-		}
+		update(token, Collections.singletonList(Update.comment(id, comment)));
 	}
+
 }
@@ -7,7 +7,8 @@ import uk.ac.aber.cs221.group15.TaskSync;
 import uk.ac.aber.cs221.group15.task.Step;
 import uk.ac.aber.cs221.group15.task.Task;
 
-import java.util.Calendar;
+import java.time.Instant;
+import java.time.LocalDate;
 import java.util.Iterator;
 import java.util.List;
 
@@ -16,7 +17,7 @@ import static org.junit.Assert.assertEquals;
 /**
  * @author Simon Scott
  * @author Darren White
- * @version 0.0.2
+ * @version 0.0.5
  */
 public class TaskServiceTest {
 
@@ -64,7 +65,7 @@ public class TaskServiceTest {
 		String token = loginService.login("sis22@aber.ac.uk", "Scott!");
 
 		// Create task sync to load tasks
-		TaskSync sync = new TaskSync(token);
+		TaskSync sync = new TaskSync(token, "sis22@aber.ac.uk");
 
 		// Initialize JavaFX
 		new JFXPanel();
@@ -90,10 +91,10 @@ public class TaskServiceTest {
 		// Set the new status
 		t.setStatus(updateStatus);
 		// Set the date completed to now
-		t.setDateCompleted(Calendar.getInstance());
+		t.setDateCompleted(LocalDate.now());
 
 		// Submit update for task status
-		taskService.updateTaskStatus(token, t);
+		taskService.updateTaskStatus(token, t, Instant.now());
 
 		// Wait for request to send
 		Thread.sleep(500);
@@ -126,7 +127,7 @@ public class TaskServiceTest {
 		// Login with correct details to get token
 		String token = loginService.login("sis22@aber.ac.uk", "Scott!");
 		// Create task sync to load tasks
-		TaskSync sync = new TaskSync(token);
+		TaskSync sync = new TaskSync(token, "sis22@aber.ac.uk");
 
 		// Initialize JavaFX
 		new JFXPanel();
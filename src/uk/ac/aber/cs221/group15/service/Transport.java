@@ -0,0 +1,54 @@
+package uk.ac.aber.cs221.group15.service;
+
+import java.io.IOException;
+import java.util.Collections;
+import java.util.Map;
+
+/**
+ * A Transport is used by each Service to send requests to the server
+ * and receive responses. Implementations are free to reuse connections
+ * between requests so a Transport must be safe to use from multiple
+ * threads.
+ *
+ * @author Darren White
+ * @version 0.0.2
+ * @see HttpTransport
+ */
+public interface Transport {
+
+	/**
+	 * Checks if the url can be reached by this transport
+	 *
+	 * @param url The url to check
+	 * @return If a connection to the url could be made
+	 */
+	boolean probe(String url);
+
+	/**
+	 * Sends a request to the url. If the post data is not null it is
+	 * sent as the body of the request. The response must be closed
+	 * once it has been read so the connection can be reused.
+	 *
+	 * @param url  The url to send the request to
+	 * @param post The data to send as POST (can be null)
+	 * @return The response from the server
+	 * @throws IOException If an I/O exception occurs
+	 */
+	default Response send(String url, String post) throws IOException {
+		return send(url, post, Collections.emptyMap());
+	}
+
+	/**
+	 * Sends a request to the url with the extra request headers. If the
+	 * post data is not null it is sent as the body of the request. The
+	 * response must be closed once it has been read so the connection
+	 * can be reused.
+	 *
+	 * @param url     The url to send the request to
+	 * @param post    The data to send as POST (can be null)
+	 * @param headers The headers to add to the request
+	 * @return The response from the server
+	 * @throws IOException If an I/O exception occurs
+	 */
+	Response send(String url, String post, Map<String, String> headers) throws IOException;
+}
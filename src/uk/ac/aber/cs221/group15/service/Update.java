@@ -0,0 +1,226 @@
+package uk.ac.aber.cs221.group15.service;
+
+import uk.ac.aber.cs221.group15.task.Task;
+
+import java.time.Instant;
+import java.util.UUID;
+
+/**
+ * An update made by the user which is sent to the server. Updates made
+ * while offline are stored in the {@link Journal} and sent once the
+ * server can be reached again. Each update has a key which is sent with
+ * it so the server only makes the update once, even if it is sent again
+ * after the response was lost.
+ *
+ * @author Darren White
+ * @version 0.0.6
+ */
+public class Update {
+
+	/**
+	 * Type for an update which changes the status of a task
+	 */
+	public static final int STATUS = 1;
+
+	/**
+	 * Type for an update which sets the comment of a task step
+	 */
+	public static final int COMMENT = 2;
+
+	/**
+	 * The key the server uses to find updates it has already made
+	 */
+	private final UUID key;
+
+	/**
+	 * The type of update
+	 */
+	private final int type;
+
+	/**
+	 * The id of the task or step that was updated
+	 */
+	private final int id;
+
+	/**
+	 * The new status of the task
+	 */
+	private final int status;
+
+	/**
+	 * The timestamp in seconds when the task was completed
+	 */
+	private final long seconds;
+
+	/**
+	 * The new comment of the step
+	 */
+	private final String comment;
+
+	/**
+	 * The position of this update in the journal (0 if not journaled)
+	 */
+	private long start;
+
+	/**
+	 * The position in the journal after this update (0 if not journaled)
+	 */
+	private long end;
+
+	/**
+	 * Creates a new update
+	 *
+	 * @param key     The key of the update
+	 * @param type    The type of update
+	 * @param id      The id of the task or step
+	 * @param status  The new status of the task
+	 * @param seconds The timestamp in seconds when the task was completed
+	 * @param comment The new comment of the step
+	 */
+	Update(UUID key, int type, int id, int status, long seconds, String comment) {
+		this.key = key;
+		this.type = type;
+		this.id = id;
+		this.status = status;
+		this.seconds = seconds;
+		this.comment = comment;
+	}
+
+	/**
+	 * Creates an update which sets the comment of a step
+	 *
+	 * @param id      The id of the step
+	 * @param comment The new comment
+	 * @return The new update
+	 */
+	public static Update comment(int id, String comment) {
+		return new Update(UUID.randomUUID(), COMMENT, id, 0, 0, comment);
+	}
+
+	/**
+	 * Gets the new comment of the step
+	 *
+	 * @return The comment
+	 */
+	public String getComment() {
+		return comment;
+	}
+
+	/**
+	 * Gets the position in the journal after this update
+	 *
+	 * @return The position
+	 */
+	long getEnd() {
+		return end;
+	}
+
+	/**
+	 * Gets the id of the task or step that was updated
+	 *
+	 * @return The id
+	 */
+	public int getId() {
+		return id;
+	}
+
+	/**
+	 * Gets the key the server uses to find updates it has already made.
+	 * The key is kept in the journal so it is the same every time the
+	 * update is sent.
+	 *
+	 * @return The key
+	 */
+	public UUID getKey() {
+		return key;
+	}
+
+	/**
+	 * Gets the position of this update in the journal
+	 *
+	 * @return The position
+	 */
+	long getStart() {
+		return start;
+	}
+
+	/**
+	 * Gets the timestamp in seconds when the task was completed
+	 *
+	 * @return The timestamp in seconds
+	 */
+	public long getSeconds() {
+		return seconds;
+	}
+
+	/**
+	 * Gets the new status of the task
+	 *
+	 * @return The status
+	 */
+	public int getStatus() {
+		return status;
+	}
+
+	/**
+	 * Gets the type of update
+	 *
+	 * @return The type
+	 * {@link Update#STATUS}
+	 * {@link Update#COMMENT}
+	 */
+	public int getType() {
+		return type;
+	}
+
+	/**
+	 * Sets the position of this update in the journal
+	 *
+	 * @param start The position of the update
+	 * @param end   The position after the update
+	 */
+	void setPosition(long start, long end) {
+		this.start = start;
+		this.end = end;
+	}
+
+	/**
+	 * Creates an update which changes the status of a task
+	 *
+	 * @param id      The id of the task
+	 * @param status  The new status
+	 * @param seconds The timestamp in seconds when the task was completed
+	 * @return The new update
+	 */
+	public static Update status(int id, int status, long seconds) {
+		return new Update(UUID.randomUUID(), STATUS, id, status, seconds, null);
+	}
+
+	/**
+	 * Creates an update which changes the status of a task to its
+	 * current status. The values are read straight away. The time the
+	 * task was completed is passed in as the task only has the date.
+	 *
+	 * @param task      The task
+	 * @param completed The time the task was completed (null if it isn't)
+	 * @return The new update
+	 */
+	public static Update status(Task task, Instant completed) {
+		return status(task.getId(), task.getStatus(), completed != null ? completed.getEpochSecond() : 0);
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public String toString() {
+		return "Update{" +
+				"key=" + key +
+				", type=" + type +
+				", id=" + id +
+				", status=" + status +
+				", seconds=" + seconds +
+				", comment=" + comment +
+				'}';
+	}
+}
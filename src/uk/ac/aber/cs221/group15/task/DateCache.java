@@ -0,0 +1,102 @@
+package uk.ac.aber.cs221.group15.task;
+
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Parses and creates the dates used by tasks. Tasks only have a few
+ * different dates between them, so each date is created once and shared
+ * by every task with that date. Dates can be parsed from any thread.
+ *
+ * @author Darren White
+ * @version 0.0.3
+ */
+public final class DateCache {
+
+	/**
+	 * The most dates kept before the cache is cleared
+	 */
+	private static final int MAX_SIZE = 4096;
+
+	/**
+	 * The length of a date in the task date format
+	 */
+	private static final int DATE_LENGTH = 10;
+
+	/**
+	 * The dates with the string they were parsed from as the key
+	 */
+	private static final Map<String, LocalDate> parsed = new ConcurrentHashMap<>();
+
+	/**
+	 * The dates with the number of days since the epoch as the key
+	 */
+	private static final Map<Long, LocalDate> days = new ConcurrentHashMap<>();
+
+	/**
+	 * Not created as all methods are static
+	 */
+	private DateCache() {
+	}
+
+	/**
+	 * Gets the date a number of days after the epoch
+	 *
+	 * @param epochDay The number of days since the epoch
+	 * @return The date
+	 */
+	public static LocalDate ofEpochDay(long epochDay) {
+		// Stop the cache growing forever
+		if (days.size() >= MAX_SIZE) {
+			days.clear();
+		}
+
+		return days.computeIfAbsent(epochDay, LocalDate::ofEpochDay);
+	}
+
+	/**
+	 * Gets the date in the local time zone of a time from the server
+	 *
+	 * @param seconds The number of seconds since the epoch
+	 * @return The date
+	 */
+	public static LocalDate ofSeconds(long seconds) {
+		return ofEpochDay(Instant.ofEpochSecond(seconds).atZone(ZoneId.systemDefault())
+				.toLocalDate().toEpochDay());
+	}
+
+	/**
+	 * Parses a date in the task date format. Anything after the date,
+	 * such as the time the server sends with some dates, is ignored.
+	 *
+	 * @param s The date string
+	 * @return The date
+	 * @throws java.time.format.DateTimeParseException If the string doesn't
+	 *                                                 start with a date
+	 * {@link Task#DATE_FORMAT}
+	 */
+	public static LocalDate parse(String s) {
+		// Only the date is used from a date and time
+		if (s.length() > DATE_LENGTH) {
+			s = s.substring(0, DATE_LENGTH);
+		}
+
+		LocalDate date = parsed.get(s);
+
+		if (date == null) {
+			// Share the date with the dates read from the cache
+			date = ofEpochDay(LocalDate.parse(s, Task.DATE_FORMAT).toEpochDay());
+
+			if (parsed.size() >= MAX_SIZE) {
+				parsed.clear();
+			}
+
+			parsed.put(s, date);
+		}
+
+		return date;
+	}
+}
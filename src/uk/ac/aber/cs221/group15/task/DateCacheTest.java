@@ -0,0 +1,78 @@
+package uk.ac.aber.cs221.group15.task;
+
+import org.junit.Test;
+
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.time.format.DateTimeParseException;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+/**
+ * Tests dates are parsed correctly from many threads at once and tasks
+ * with the same date share it
+ *
+ * @author Darren White
+ * @version 0.0.3
+ */
+public class DateCacheTest {
+
+	/**
+	 * Test dates parsed at the same time are all correct
+	 *
+	 * @throws Exception If an exception occurs
+	 */
+	@Test
+	public void testParallel() throws Exception {
+		LocalDate start = LocalDate.of(2016, 1, 1);
+		List<LocalDate> parsed = IntStream.range(0, 100000).parallel()
+				.mapToObj(i -> DateCache.parse(start.plusDays(i % 1000).format(Task.DATE_FORMAT)))
+				.collect(Collectors.toList());
+
+		for (int i = 0; i < parsed.size(); i++) {
+			assertEquals(start.plusDays(i % 1000), parsed.get(i));
+		}
+	}
+
+	/**
+	 * Test the same date is shared however it was created
+	 *
+	 * @throws Exception If an exception occurs
+	 */
+	@Test
+	public void testShared() throws Exception {
+		LocalDate date = DateCache.parse("2016-05-01");
+
+		assertSame(date, DateCache.parse("2016-05-01"));
+		assertSame(date, DateCache.ofEpochDay(date.toEpochDay()));
+		assertSame(date, DateCache.ofSeconds(date.atStartOfDay(ZoneId.systemDefault()).toEpochSecond()));
+	}
+
+	/**
+	 * Test the date is read from a date with a time, as the server
+	 * sends for the times tasks were created and completed
+	 *
+	 * @throws Exception If an exception occurs
+	 */
+	@Test
+	public void testTime() throws Exception {
+		LocalDate date = DateCache.parse("2016-05-01");
+
+		assertSame(date, DateCache.parse("2016-05-01 13:45:10"));
+		assertEquals(LocalDate.of(2016, 12, 31), DateCache.parse("2016-12-31 23:59:59"));
+	}
+
+	/**
+	 * Test a string which doesn't start with a date isn't parsed
+	 *
+	 * @throws Exception If an exception occurs
+	 */
+	@Test(expected = DateTimeParseException.class)
+	public void testInvalid() throws Exception {
+		DateCache.parse("13:45:10 2016-05-01");
+	}
+}
@@ -5,37 +5,61 @@ import javafx.beans.property.*;
 import java.io.IOException;
 import java.io.ObjectInputStream;
 import java.io.ObjectOutputStream;
+import java.util.Objects;
 
 /**
  * Represents a single step for a task. A step can
  * be set as completed and contains a comment.
  * Each task can have many steps but a step can only
  * have one task
+ * <p>
+ * As with tasks the values are kept in plain fields and each property is
+ * only created the first time it is asked for.
  *
  * @author Darren White
- * @version 0.1.4
+ * @version 0.1.6
  */
 public class Step {
 
 	/**
 	 * The unique id for this task step
 	 */
-	private final ReadOnlyIntegerProperty id;
+	private final int id;
 
 	/**
 	 * The title of the task step
 	 */
-	private final ReadOnlyStringProperty title;
+	private String title;
 
 	/**
 	 * The user comment for the task step
 	 */
-	private final StringProperty comment;
+	private String comment;
 
 	/**
 	 * Used to determine if this step has been edited
 	 */
-	private final BooleanProperty edited;
+	private boolean edited;
+
+	/**
+	 * The id property (null until first used)
+	 */
+	private ReadOnlyIntegerProperty idProperty;
+
+	/**
+	 * The title property (null until first used)
+	 */
+	private ReadOnlyStringWrapper titleProperty;
+
+	/**
+	 * The comment property (null until first used)
+	 */
+	private StringProperty commentProperty;
+
+	/**
+	 * The edited property (null until first used)
+	 */
+	private BooleanProperty editedProperty;
 
 	/**
 	 * Creates a new step with the id, title and
@@ -46,10 +70,9 @@ public class Step {
 	 * @param comment The user comment of the task step
 	 */
 	public Step(int id, String title, String comment) {
-		this.id = new ReadOnlyIntegerWrapper(id);
-		this.title = new ReadOnlyStringWrapper(title);
-		this.comment = new SimpleStringProperty(comment);
-		edited = new SimpleBooleanProperty(false);
+		this.id = id;
+		this.title = title;
+		this.comment = comment;
 	}
 
 	/**
@@ -58,7 +81,11 @@ public class Step {
 	 * @return The comment property
 	 */
 	public StringProperty commentProperty() {
-		return comment;
+		if (commentProperty == null) {
+			commentProperty = new SimpleStringProperty(comment);
+		}
+
+		return commentProperty;
 	}
 
 	/**
@@ -67,7 +94,11 @@ public class Step {
 	 * @return The edited property
 	 */
 	public BooleanProperty editedProperty() {
-		return edited;
+		if (editedProperty == null) {
+			editedProperty = new SimpleBooleanProperty(edited);
+		}
+
+		return editedProperty;
 	}
 
 	/**
@@ -86,7 +117,7 @@ public class Step {
 	 * @return The comment for the step
 	 */
 	public String getComment() {
-		return commentProperty().get();
+		return commentProperty != null ? commentProperty.get() : comment;
 	}
 
 	/**
@@ -95,7 +126,7 @@ public class Step {
 	 * @return The step id
 	 */
 	public int getId() {
-		return idProperty().get();
+		return id;
 	}
 
 	/**
@@ -104,7 +135,7 @@ public class Step {
 	 * @return The desription of this task step
 	 */
 	public String getTitle() {
-		return titleProperty().get();
+		return titleProperty != null ? titleProperty.get() : title;
 	}
 
 	/**
@@ -121,7 +152,11 @@ public class Step {
 	 * @return The id property
 	 */
 	public ReadOnlyIntegerProperty idProperty() {
-		return id;
+		if (idProperty == null) {
+			idProperty = new ReadOnlyIntegerWrapper(id);
+		}
+
+		return idProperty;
 	}
 
 	/**
@@ -130,7 +165,7 @@ public class Step {
 	 * @return If the Step has been edited
 	 */
 	public boolean isEdited() {
-		return editedProperty().get();
+		return editedProperty != null ? editedProperty.get() : edited;
 	}
 
 	/**
@@ -152,7 +187,11 @@ public class Step {
 	 * @param comment The String to set the comment as
 	 */
 	public void setComment(String comment) {
-		commentProperty().set(comment);
+		if (commentProperty != null) {
+			commentProperty.set(comment);
+		} else {
+			this.comment = comment;
+		}
 	}
 
 	/**
@@ -161,7 +200,11 @@ public class Step {
 	 * @param edited If this step has been edited or not
 	 */
 	public void setEdited(boolean edited) {
-		editedProperty().set(edited);
+		if (editedProperty != null) {
+			editedProperty.set(edited);
+		} else {
+			this.edited = edited;
+		}
 	}
 
 	/**
@@ -170,7 +213,11 @@ public class Step {
 	 * @return The title property
 	 */
 	public ReadOnlyStringProperty titleProperty() {
-		return title;
+		if (titleProperty == null) {
+			titleProperty = new ReadOnlyStringWrapper(title);
+		}
+
+		return titleProperty.getReadOnlyProperty();
 	}
 
 	/**
@@ -180,8 +227,39 @@ public class Step {
 	public String toString() {
 		return "Step{" +
 				"id=" + id +
-				", title=" + title +
-				", comment=" + comment + '}';
+				", title=" + getTitle() +
+				", comment=" + getComment() + '}';
+	}
+
+	/**
+	 * Updates this step with the values of another step with the same id.
+	 * Only the values which are different are changed. The comment is not
+	 * changed if this step is being edited.
+	 *
+	 * @param step The step with the new values
+	 * @return If anything was changed
+	 */
+	public boolean update(Step step) {
+		boolean changed = false;
+
+		if (!Objects.equals(getTitle(), step.getTitle())) {
+			// Set the property if one has been created so listeners are notified
+			if (titleProperty != null) {
+				titleProperty.set(step.getTitle());
+			} else {
+				title = step.getTitle();
+			}
+
+			changed = true;
+		}
+
+		// Don't lose what the user is typing
+		if (!isEdited() && !Objects.equals(getComment(), step.getComment())) {
+			setComment(step.getComment());
+			changed = true;
+		}
+
+		return changed;
 	}
 
 	/**
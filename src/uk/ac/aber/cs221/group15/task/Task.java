@@ -5,19 +5,33 @@ import javafx.beans.property.*;
 import java.io.IOException;
 import java.io.ObjectInputStream;
 import java.io.ObjectOutputStream;
-import java.text.SimpleDateFormat;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
 import java.util.Calendar;
+import java.util.Collection;
+import java.util.HashMap;
 import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Objects;
 import java.util.Set;
+import java.util.function.Supplier;
 
 /**
  * Represents a single task for a user. Each task has an id, title,
  * creator (assigned by), start and end dates, status and a list of steps.
  * Both the status and steps can be set as completed. A Task can have many
  * steps.
+ * <p>
+ * The values are kept in plain fields and the JavaFX property for a value
+ * is only created the first time it is asked for, as most tasks are never
+ * shown. Once a property has been created it holds the value so changes
+ * made through either the property or the setter are seen by both.
+ * Dates are immutable and shared between tasks with the same date.
  *
  * @author Darren White
- * @version 0.2.2
+ * @version 0.2.6
  */
 public class Task {
 
@@ -40,50 +54,96 @@ public class Task {
 	public static final int COMPLETED = 2;
 
 	/**
-	 * The date format used for date/time values
+	 * The date format used for date values (can be used from any thread)
 	 */
-	public static final SimpleDateFormat DATE_FORMAT =
-			new SimpleDateFormat("yyyy-MM-dd");
+	public static final DateTimeFormatter DATE_FORMAT =
+			DateTimeFormatter.ofPattern("yyyy-MM-dd");
 
 	/**
 	 * The unique task id
 	 */
-	private final ReadOnlyIntegerProperty id;
+	private final int id;
 
 	/**
 	 * The title of the task
 	 */
-	private final ReadOnlyStringProperty title;
+	private String title;
 
 	/**
 	 * The member who created this task
 	 */
-	private final ReadOnlyStringProperty creator;
+	private String creator;
 
 	/**
 	 * Date task was created
 	 */
-	private final ReadOnlyObjectProperty<Calendar> dateCreated;
+	private LocalDate dateCreated;
 
 	/**
 	 * Expected completed date for the task
 	 */
-	private final ReadOnlyObjectProperty<Calendar> dateDue;
+	private LocalDate dateDue;
 
 	/**
 	 * Completion date for the task
 	 */
-	private final ObjectProperty<Calendar> dateCompleted;
+	private LocalDate dateCompleted;
 
 	/**
 	 * The current status of the task
 	 */
-	private final IntegerProperty status;
+	private int status;
 
 	/**
 	 * The steps for this task - using a set doesn't allow duplicates
+	 * (null until the first step is added or the steps are used)
 	 */
-	private final ReadOnlyObjectProperty<Set<Step>> steps;
+	private Set<Step> steps;
+
+	/**
+	 * The id property (null until first used)
+	 */
+	private ReadOnlyIntegerProperty idProperty;
+
+	/**
+	 * The title property (null until first used)
+	 */
+	private ReadOnlyStringWrapper titleProperty;
+
+	/**
+	 * The creator property (null until first used)
+	 */
+	private ReadOnlyStringWrapper creatorProperty;
+
+	/**
+	 * The date created property (null until first used)
+	 */
+	private ReadOnlyObjectWrapper<LocalDate> dateCreatedProperty;
+
+	/**
+	 * The date due property (null until first used)
+	 */
+	private ReadOnlyObjectWrapper<LocalDate> dateDueProperty;
+
+	/**
+	 * The date completed property (null until first used)
+	 */
+	private ObjectProperty<LocalDate> dateCompletedProperty;
+
+	/**
+	 * The status property (null until first used)
+	 */
+	private IntegerProperty statusProperty;
+
+	/**
+	 * The steps property (null until first used)
+	 */
+	private ReadOnlyObjectWrapper<Set<Step>> stepsProperty;
+
+	/**
+	 * Loads the steps when they are first needed (null once loaded)
+	 */
+	private Supplier<Collection<Step>> stepLoader;
 
 	/**
 	 * Creates a new task with the given information
@@ -96,17 +156,15 @@ public class Task {
 	 * @param dateCompleted The date the task was completed
 	 * @param status        The current status of the task
 	 */
-	public Task(int id, String title, String creator, Calendar dateCreated,
-	            Calendar dateDue, Calendar dateCompleted, int status) {
-		this.id = new ReadOnlyIntegerWrapper(id);
-		this.title = new ReadOnlyStringWrapper(title);
-		this.creator = new ReadOnlyStringWrapper(creator);
-		this.dateCreated = new ReadOnlyObjectWrapper<>(dateCreated);
-		this.dateDue = new ReadOnlyObjectWrapper<>(dateDue);
-		this.dateCompleted = new SimpleObjectProperty<>(dateCompleted);
-		this.status = new SimpleIntegerProperty(status);
-		// LinkedHashSet preserves order
-		this.steps = new ReadOnlyObjectWrapper<>(new LinkedHashSet<>());
+	public Task(int id, String title, String creator, LocalDate dateCreated,
+	            LocalDate dateDue, LocalDate dateCompleted, int status) {
+		this.id = id;
+		this.title = title;
+		this.creator = creator;
+		this.dateCreated = dateCreated;
+		this.dateDue = dateDue;
+		this.dateCompleted = dateCompleted;
+		this.status = status;
 	}
 
 	/**
@@ -115,7 +173,7 @@ public class Task {
 	 * @param step The step to add
 	 */
 	public void addStep(Step step) {
-		stepsProperty().get().add(step);
+		getSteps().add(step);
 	}
 
 	/**
@@ -124,7 +182,11 @@ public class Task {
 	 * @return The member name property
 	 */
 	public ReadOnlyStringProperty creatorProperty() {
-		return creator;
+		if (creatorProperty == null) {
+			creatorProperty = new ReadOnlyStringWrapper(creator);
+		}
+
+		return creatorProperty.getReadOnlyProperty();
 	}
 
 	/**
@@ -132,8 +194,12 @@ public class Task {
 	 *
 	 * @return The date completed property
 	 */
-	public ObjectProperty<Calendar> dateCompletedProperty() {
-		return dateCompleted;
+	public ObjectProperty<LocalDate> dateCompletedProperty() {
+		if (dateCompletedProperty == null) {
+			dateCompletedProperty = new SimpleObjectProperty<>(dateCompleted);
+		}
+
+		return dateCompletedProperty;
 	}
 
 	/**
@@ -141,8 +207,12 @@ public class Task {
 	 *
 	 * @return The date created property
 	 */
-	public ReadOnlyObjectProperty<Calendar> dateCreatedProperty() {
-		return dateCreated;
+	public ReadOnlyObjectProperty<LocalDate> dateCreatedProperty() {
+		if (dateCreatedProperty == null) {
+			dateCreatedProperty = new ReadOnlyObjectWrapper<>(dateCreated);
+		}
+
+		return dateCreatedProperty.getReadOnlyProperty();
 	}
 
 	/**
@@ -150,8 +220,12 @@ public class Task {
 	 *
 	 * @return The date due property
 	 */
-	public ReadOnlyObjectProperty<Calendar> dateDueProperty() {
-		return dateDue;
+	public ReadOnlyObjectProperty<LocalDate> dateDueProperty() {
+		if (dateDueProperty == null) {
+			dateDueProperty = new ReadOnlyObjectWrapper<>(dateDue);
+		}
+
+		return dateDueProperty.getReadOnlyProperty();
 	}
 
 	/**
@@ -160,7 +234,7 @@ public class Task {
 	 * @return The member name
 	 */
 	public String getCreator() {
-		return creatorProperty().get();
+		return creatorProperty != null ? creatorProperty.get() : creator;
 	}
 
 	/**
@@ -168,8 +242,8 @@ public class Task {
 	 *
 	 * @return The date this task was completed
 	 */
-	public Calendar getDateCompleted() {
-		return dateCompletedProperty().get();
+	public LocalDate getDateCompleted() {
+		return dateCompletedProperty != null ? dateCompletedProperty.get() : dateCompleted;
 	}
 
 	/**
@@ -177,8 +251,8 @@ public class Task {
 	 *
 	 * @return The date this task was created
 	 */
-	public Calendar getDateCreated() {
-		return dateCreatedProperty().get();
+	public LocalDate getDateCreated() {
+		return dateCreatedProperty != null ? dateCreatedProperty.get() : dateCreated;
 	}
 
 	/**
@@ -186,8 +260,8 @@ public class Task {
 	 *
 	 * @return The expected completion date
 	 */
-	public Calendar getDateDue() {
-		return dateDueProperty().get();
+	public LocalDate getDateDue() {
+		return dateDueProperty != null ? dateDueProperty.get() : dateDue;
 	}
 
 	/**
@@ -196,7 +270,7 @@ public class Task {
 	 * @return This tasks id
 	 */
 	public int getId() {
-		return idProperty().get();
+		return id;
 	}
 
 	/**
@@ -208,7 +282,7 @@ public class Task {
 	 * {@link Task#COMPLETED}
 	 */
 	public int getStatus() {
-		return statusProperty().get();
+		return statusProperty != null ? statusProperty.get() : status;
 	}
 
 	/**
@@ -236,7 +310,20 @@ public class Task {
 	 * @return The steps for this task
 	 */
 	public Set<Step> getSteps() {
-		return stepsProperty().get();
+		loadSteps();
+
+		if (stepsProperty != null) {
+			return stepsProperty.get();
+		}
+
+		synchronized (this) {
+			if (steps == null) {
+				// LinkedHashSet preserves order
+				steps = new LinkedHashSet<>();
+			}
+
+			return steps;
+		}
 	}
 
 	/**
@@ -245,7 +332,7 @@ public class Task {
 	 * @return The title of the task
 	 */
 	public String getTitle() {
-		return titleProperty().get();
+		return titleProperty != null ? titleProperty.get() : title;
 	}
 
 	/**
@@ -254,7 +341,43 @@ public class Task {
 	 * @return The id property
 	 */
 	public ReadOnlyIntegerProperty idProperty() {
-		return id;
+		if (idProperty == null) {
+			idProperty = new ReadOnlyIntegerWrapper(id);
+		}
+
+		return idProperty;
+	}
+
+	/**
+	 * Adds the steps from the step loader if they haven't been loaded
+	 */
+	private synchronized void loadSteps() {
+		if (stepLoader != null) {
+			Supplier<Collection<Step>> loader = stepLoader;
+
+			stepLoader = null;
+			getSteps().addAll(loader.get());
+		}
+	}
+
+	/**
+	 * Reads a date from the input stream. Older files have the dates
+	 * written as calendars which are changed to the date in the local
+	 * time zone.
+	 *
+	 * @param in The input stream to read from
+	 * @return The date read (null if there was no date)
+	 * @throws IOException            If an I/O exceptions occurs
+	 * @throws ClassNotFoundException If a ClassNotFoundException occurs
+	 */
+	private static LocalDate readDate(ObjectInputStream in) throws IOException, ClassNotFoundException {
+		Object date = in.readObject();
+
+		if (date instanceof Calendar) {
+			date = ((Calendar) date).toInstant().atZone(ZoneId.systemDefault()).toLocalDate();
+		}
+
+		return date == null ? null : DateCache.ofEpochDay(((LocalDate) date).toEpochDay());
 	}
 
 	/**
@@ -270,9 +393,9 @@ public class Task {
 		int id = in.readInt();
 		String title = in.readUTF();
 		String creator = in.readUTF();
-		Calendar dateCreated = (Calendar) in.readObject();
-		Calendar dateDue = (Calendar) in.readObject();
-		Calendar dateCompleted = (Calendar) in.readObject();
+		LocalDate dateCreated = readDate(in);
+		LocalDate dateDue = readDate(in);
+		LocalDate dateCompleted = readDate(in);
 		int status = in.readInt();
 
 		// Create the task
@@ -293,8 +416,22 @@ public class Task {
 	 *
 	 * @param dateCompleted The date this task was completed
 	 */
-	public void setDateCompleted(Calendar dateCompleted) {
-		this.dateCompleted.set(dateCompleted);
+	public void setDateCompleted(LocalDate dateCompleted) {
+		if (dateCompletedProperty != null) {
+			dateCompletedProperty.set(dateCompleted);
+		} else {
+			this.dateCompleted = dateCompleted;
+		}
+	}
+
+	/**
+	 * Sets the step loader which adds the steps the first time they
+	 * are used. Used to decode the steps of cached tasks lazily.
+	 *
+	 * @param stepLoader The step loader
+	 */
+	public synchronized void setStepLoader(Supplier<Collection<Step>> stepLoader) {
+		this.stepLoader = stepLoader;
 	}
 
 	/**
@@ -305,7 +442,11 @@ public class Task {
 	 * {@link Task#COMPLETED}
 	 */
 	public void setStatus(int status) {
-		this.status.set(status);
+		if (statusProperty != null) {
+			statusProperty.set(status);
+		} else {
+			this.status = status;
+		}
 	}
 
 	/**
@@ -314,7 +455,11 @@ public class Task {
 	 * @return The current status property
 	 */
 	public IntegerProperty statusProperty() {
-		return status;
+		if (statusProperty == null) {
+			statusProperty = new SimpleIntegerProperty(status);
+		}
+
+		return statusProperty;
 	}
 
 	/**
@@ -323,7 +468,11 @@ public class Task {
 	 * @return The steps property
 	 */
 	public ReadOnlyObjectProperty<Set<Step>> stepsProperty() {
-		return steps;
+		if (stepsProperty == null) {
+			stepsProperty = new ReadOnlyObjectWrapper<>(getSteps());
+		}
+
+		return stepsProperty.getReadOnlyProperty();
 	}
 
 	/**
@@ -332,7 +481,11 @@ public class Task {
 	 * @return The title property
 	 */
 	public ReadOnlyStringProperty titleProperty() {
-		return title;
+		if (titleProperty == null) {
+			titleProperty = new ReadOnlyStringWrapper(title);
+		}
+
+		return titleProperty.getReadOnlyProperty();
 	}
 
 	/**
@@ -342,16 +495,127 @@ public class Task {
 	public String toString() {
 		return "Task{" +
 				"id=" + id +
-				", title=" + title +
-				", creator=" + creator +
-				", dateCreated=" + dateCreated +
-				", dateDue=" + dateDue +
-				", dateCompleted=" + dateCompleted +
-				", status=" + status +
-				", steps=" + steps +
+				", title=" + getTitle() +
+				", creator=" + getCreator() +
+				", dateCreated=" + getDateCreated() +
+				", dateDue=" + getDateDue() +
+				", dateCompleted=" + getDateCompleted() +
+				", status=" + getStatus() +
+				", steps=" + getSteps() +
 				'}';
 	}
 
+	/**
+	 * Updates this task with the values of another task with the same id.
+	 * Only the values which are different are changed so listeners are
+	 * only notified of real changes. Steps with the same id are updated
+	 * in place and the set of steps is only replaced if steps have been
+	 * added, removed or reordered.
+	 *
+	 * @param task The task with the new values
+	 * @return If anything was changed
+	 */
+	public boolean update(Task task) {
+		if (task.getId() != getId()) {
+			throw new IllegalArgumentException("Task ids do not match: " + task.getId());
+		}
+
+		boolean changed = false;
+
+		// Set the property if one has been created so listeners are notified
+		if (!Objects.equals(getTitle(), task.getTitle())) {
+			if (titleProperty != null) {
+				titleProperty.set(task.getTitle());
+			} else {
+				title = task.getTitle();
+			}
+
+			changed = true;
+		}
+
+		if (!Objects.equals(getCreator(), task.getCreator())) {
+			if (creatorProperty != null) {
+				creatorProperty.set(task.getCreator());
+			} else {
+				creator = task.getCreator();
+			}
+
+			changed = true;
+		}
+
+		if (!Objects.equals(getDateCreated(), task.getDateCreated())) {
+			if (dateCreatedProperty != null) {
+				dateCreatedProperty.set(task.getDateCreated());
+			} else {
+				dateCreated = task.getDateCreated();
+			}
+
+			changed = true;
+		}
+
+		if (!Objects.equals(getDateDue(), task.getDateDue())) {
+			if (dateDueProperty != null) {
+				dateDueProperty.set(task.getDateDue());
+			} else {
+				dateDue = task.getDateDue();
+			}
+
+			changed = true;
+		}
+
+		if (!Objects.equals(getDateCompleted(), task.getDateCompleted())) {
+			setDateCompleted(task.getDateCompleted());
+			changed = true;
+		}
+
+		if (getStatus() != task.getStatus()) {
+			setStatus(task.getStatus());
+			changed = true;
+		}
+
+		return updateSteps(task.getSteps()) || changed;
+	}
+
+	/**
+	 * Updates the steps of this task with the new steps
+	 *
+	 * @param newSteps The new steps for the task
+	 * @return If anything was changed
+	 */
+	private boolean updateSteps(Set<Step> newSteps) {
+		// The current steps with the step id as the key
+		Map<Integer, Step> current = new HashMap<>();
+		// The steps to use with the current steps kept
+		Set<Step> merged = new LinkedHashSet<>();
+		boolean changed = false;
+
+		getSteps().forEach(s -> current.put(s.getId(), s));
+
+		for (Step s : newSteps) {
+			Step old = current.get(s.getId());
+
+			if (old == null) {
+				merged.add(s);
+			} else {
+				changed |= old.update(s);
+				merged.add(old);
+			}
+		}
+
+		// Steps are equal by id so this checks the order as well
+		if (!new ArrayList<>(merged).equals(new ArrayList<>(getSteps()))) {
+			if (stepsProperty != null) {
+				stepsProperty.set(merged);
+			} else {
+				steps = merged;
+			}
+
+			changed = true;
+		}
+
+		return changed;
+	}
+
 	/**
 	 * Writes this task to the output stream
 	 *
@@ -0,0 +1,222 @@
+package uk.ac.aber.cs221.group15.task;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.util.AbstractList;
+import java.util.HashSet;
+import java.util.RandomAccess;
+import java.util.Set;
+
+/**
+ * A read only list of the tasks in a snapshot which decodes each task
+ * the first time it is used. Opening the cache only reads the header and
+ * the table of creator names, the index is used to find a task by its
+ * position or id and the steps of a task are only decoded when they are
+ * used (for example when the task details are shown). This means the
+ * cached tasks can be shown straight away no matter how many there are.
+ * <p>
+ * As tasks are decoded lazily a damaged record is only found when the
+ * task is used, in which case an {@link UncheckedIOException} is thrown.
+ *
+ * @author Darren White
+ * @version 0.0.3
+ * {@link TaskSnapshot}
+ */
+public class TaskCache extends AbstractList<Task> implements RandomAccess {
+
+	/**
+	 * The snapshot (shared by all tasks, only absolute reads are used)
+	 */
+	private final ByteBuffer buf;
+
+	/**
+	 * The table of creator names
+	 */
+	private final String[] strings;
+
+	/**
+	 * The offset of the index of record offsets
+	 */
+	private final int index;
+
+	/**
+	 * The tasks which have been decoded (null until used)
+	 */
+	private final Task[] tasks;
+
+	/**
+	 * The id of each task in order (null until used)
+	 */
+	private int[] ids;
+
+	/**
+	 * Creates a new cache of the tasks in the snapshot
+	 *
+	 * @param buf The snapshot in the current format
+	 * @throws IOException If the snapshot is damaged
+	 */
+	TaskCache(ByteBuffer buf) throws IOException {
+		if (TaskSnapshot.readVersion(buf) != TaskSnapshot.VERSION) {
+			throw new IOException("Task snapshot must be version " + TaskSnapshot.VERSION);
+		}
+
+		TaskSnapshot.checkCrc(buf, 0, TaskSnapshot.HEADER_SIZE - 4);
+
+		int count = buf.getInt(5);
+		int stringsOffset = buf.getInt(9);
+
+		this.buf = buf;
+		this.index = buf.getInt(13);
+		// Each task has an offset and then an id and position
+		TaskSnapshot.checkCrc(buf, index, count * 12);
+		TaskSnapshot.checkCrc(buf, stringsOffset, index - 4 - stringsOffset);
+		this.strings = TaskSnapshot.readStrings(slice(stringsOffset));
+		this.tasks = new Task[count];
+	}
+
+	/**
+	 * Decodes the task at the offset
+	 *
+	 * @param offset The offset of the record
+	 * @return The task
+	 * @throws IOException If the record is damaged
+	 */
+	private Task decode(int offset) throws IOException {
+		ByteBuffer in = slice(offset);
+		int len = TaskSnapshot.readVarInt(in);
+		int start = in.position();
+
+		// Check the whole record as the steps are read later
+		TaskSnapshot.checkCrc(buf, start, len);
+
+		Task task = TaskSnapshot.readTask(in, strings);
+		int steps = in.position();
+
+		task.setStepLoader(() -> {
+			try {
+				return TaskSnapshot.readSteps(slice(steps));
+			} catch (IOException e) {
+				throw new UncheckedIOException(e);
+			}
+		});
+
+		return task;
+	}
+
+	/**
+	 * Gets the id of the task at the index from the index sorted by id
+	 * without decoding the task
+	 *
+	 * @param index The index of the task
+	 * @return The task id
+	 */
+	public synchronized int getId(int index) {
+		if (ids == null) {
+			// The sorted index is after the offsets
+			int sorted = this.index + tasks.length * 4;
+
+			ids = new int[tasks.length];
+
+			// Each id is followed by the position of its task
+			for (int i = 0; i < tasks.length; i++) {
+				ids[buf.getInt(sorted + i * 8 + 4)] = buf.getInt(sorted + i * 8);
+			}
+		}
+
+		return ids[index];
+	}
+
+	/**
+	 * Gets the ids of all of the tasks from the index without
+	 * decoding any of the tasks
+	 *
+	 * @return The task ids
+	 */
+	public Set<Integer> getIds() {
+		// The sorted index is after the offsets
+		int sorted = index + tasks.length * 4;
+		Set<Integer> ids = new HashSet<>(tasks.length * 2);
+
+		for (int i = 0; i < tasks.length; i++) {
+			ids.add(buf.getInt(sorted + i * 8));
+		}
+
+		return ids;
+	}
+
+	/**
+	 * Checks if the task at the index has been decoded
+	 *
+	 * @param index The index of the task
+	 * @return If the task has been decoded
+	 */
+	synchronized boolean isDecoded(int index) {
+		return tasks[index] != null;
+	}
+
+	/**
+	 * Finds the task with the id using the index sorted by id
+	 *
+	 * @param id The task id
+	 * @return The task or null if it isn't in the cache
+	 */
+	public Task find(int id) {
+		// The sorted index is after the offsets
+		int sorted = index + tasks.length * 4;
+		int low = 0, high = tasks.length - 1;
+
+		while (low <= high) {
+			int mid = (low + high) >>> 1;
+			int midId = buf.getInt(sorted + mid * 8);
+
+			if (midId < id) {
+				low = mid + 1;
+			} else if (midId > id) {
+				high = mid - 1;
+			} else {
+				return get(buf.getInt(sorted + mid * 8 + 4));
+			}
+		}
+
+		return null;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public synchronized Task get(int index) {
+		if (tasks[index] == null) {
+			try {
+				tasks[index] = decode(buf.getInt(this.index + index * 4));
+			} catch (IOException e) {
+				throw new UncheckedIOException(e);
+			}
+		}
+
+		return tasks[index];
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public int size() {
+		return tasks.length;
+	}
+
+	/**
+	 * Creates a new view of the snapshot to read from the offset
+	 *
+	 * @param offset The offset to read from
+	 * @return The new view
+	 */
+	private ByteBuffer slice(int offset) {
+		ByteBuffer in = buf.duplicate();
+
+		in.position(offset);
+
+		return in;
+	}
+}
@@ -0,0 +1,362 @@
+package uk.ac.aber.cs221.group15.task;
+
+import javafx.collections.ModifiableObservableListBase;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * An observable list of tasks which can merge in a new list of tasks
+ * by id. Existing tasks are updated in place and only new or deleted
+ * tasks are added or removed, all in one change, so the views showing
+ * the list keep their rows, selection and scroll position.
+ * <p>
+ * The tasks can be stored as objects or, for accounts with very many
+ * tasks, in the columns of a {@link TaskTable}. Counting and filtering
+ * the tasks then scans the columns without creating the tasks.
+ * <p>
+ * Tasks opened from the stored {@link TaskCache} are shown without
+ * decoding them when they are stored as objects. The cache is used as
+ * the list until the tasks are added or removed, so each task is only
+ * decoded when it is first used.
+ *
+ * @author Darren White
+ * @version 0.0.5
+ */
+public class TaskList extends ModifiableObservableListBase<Task> {
+
+	/**
+	 * The tasks in the list (the cached tasks until they change)
+	 */
+	private List<Task> tasks;
+
+	/**
+	 * The tasks in the list if they are stored in columns (otherwise null)
+	 */
+	private final TaskTable table;
+
+	/**
+	 * Creates a new list which stores the tasks as objects
+	 */
+	public TaskList() {
+		this(false);
+	}
+
+	/**
+	 * Creates a new list
+	 *
+	 * @param columnar If the tasks are stored in columns
+	 */
+	public TaskList(boolean columnar) {
+		table = columnar ? new TaskTable() : null;
+		tasks = columnar ? table : new ArrayList<>();
+	}
+
+	/**
+	 * Copies the tasks to a new list, which can be read off the JavaFX
+	 * thread. Tasks stored in columns are copied without creating and
+	 * keeping a view of every task.
+	 *
+	 * @return The tasks
+	 */
+	public List<Task> copy() {
+		if (table != null) {
+			return table.copy();
+		}
+
+		// The cache is read only so it doesn't need copying
+		return tasks instanceof TaskCache ? tasks : new ArrayList<>(tasks);
+	}
+
+	/**
+	 * Counts the tasks with a status
+	 *
+	 * @param status The status
+	 * @return The number of tasks
+	 */
+	public int count(int status) {
+		int count = 0;
+
+		if (table != null) {
+			for (int i = 0; i < table.size(); i++) {
+				if (table.getStatus(i) == status) {
+					count++;
+				}
+			}
+		} else {
+			for (Task t : tasks) {
+				if (t.getStatus() == status) {
+					count++;
+				}
+			}
+		}
+
+		return count;
+	}
+
+	/**
+	 * Counts the tasks with a status which are due on or before a date
+	 *
+	 * @param status The status
+	 * @param date   The date
+	 * @return The number of tasks
+	 */
+	public int countDue(int status, LocalDate date) {
+		int count = 0;
+
+		if (table != null) {
+			int day = (int) date.toEpochDay();
+
+			for (int i = 0; i < table.size(); i++) {
+				int due = table.getDueDay(i);
+
+				if (table.getStatus(i) == status && due != TaskTable.NO_DATE && due <= day) {
+					count++;
+				}
+			}
+		} else {
+			for (Task t : tasks) {
+				if (t.getStatus() == status && t.getDateDue() != null && !t.getDateDue().isAfter(date)) {
+					count++;
+				}
+			}
+		}
+
+		return count;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	protected void doAdd(int index, Task element) {
+		modifiable().add(index, element);
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	protected Task doRemove(int index) {
+		return modifiable().remove(index);
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	protected Task doSet(int index, Task element) {
+		return modifiable().set(index, element);
+	}
+
+	/**
+	 * Gets the first tasks with a status in the order of the list
+	 *
+	 * @param status The status
+	 * @param limit  The most tasks to get
+	 * @return The tasks
+	 */
+	public List<Task> filter(int status, int limit) {
+		List<Task> filtered = new ArrayList<>();
+
+		for (int i = 0; i < size() && filtered.size() < limit; i++) {
+			// Only create the views of the tasks which are used
+			if (table != null ? table.getStatus(i) == status : tasks.get(i).getStatus() == status) {
+				filtered.add(tasks.get(i));
+			}
+		}
+
+		return filtered;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public Task get(int index) {
+		return tasks.get(index);
+	}
+
+	/**
+	 * Gets the id of the task at the index without creating the view of
+	 * the task if the tasks are stored in columns
+	 *
+	 * @param index The index of the task
+	 * @return The task id
+	 */
+	private int getId(int index) {
+		return getId(tasks, index);
+	}
+
+	/**
+	 * Gets the id of the task at the index of a list of tasks, without
+	 * decoding or creating the task if the list is the stored tasks or
+	 * the tasks stored in columns
+	 *
+	 * @param list  The tasks
+	 * @param index The index of the task
+	 * @return The task id
+	 */
+	private static int getId(List<Task> list, int index) {
+		if (list instanceof TaskCache) {
+			return ((TaskCache) list).getId(index);
+		} else if (list instanceof TaskTable) {
+			return ((TaskTable) list).getId(index);
+		}
+
+		return list.get(index).getId();
+	}
+
+	/**
+	 * Merges the new tasks into this list. Tasks with the same id as a
+	 * task in the list are used to update it in place, tasks which are
+	 * no longer in the new tasks are removed and new tasks are added to
+	 * the end. Listeners are notified once with all of the changes. This
+	 * must be called on the JavaFX thread. The stored tasks are merged
+	 * by their ids, so only the tasks which update a task in the list
+	 * or are added to it are decoded.
+	 *
+	 * @param newTasks The complete list of tasks
+	 */
+	public void merge(List<Task> newTasks) {
+		beginChange();
+
+		try {
+			// Show the stored tasks without decoding any of them
+			if (table == null && tasks.isEmpty() && newTasks instanceof TaskCache) {
+				tasks = newTasks;
+				modCount++;
+				nextAdd(0, tasks.size());
+				return;
+			}
+
+			// The index of each new task with the task id as the key
+			Map<Integer, Integer> incoming = new HashMap<>(newTasks.size() * 2);
+
+			for (int i = 0; i < newTasks.size(); i++) {
+				incoming.put(getId(newTasks, i), i);
+			}
+
+			// The tasks which have been deleted
+			BitSet deleted = new BitSet();
+
+			for (int i = 0; i < tasks.size(); i++) {
+				if (!incoming.containsKey(getId(i))) {
+					deleted.set(i);
+				}
+			}
+
+			removeRows(deleted);
+
+			for (int i = 0; i < tasks.size(); i++) {
+				if (update(i, newTasks.get(incoming.remove(getId(i))))) {
+					nextUpdate(i);
+				}
+			}
+
+			// Anything left is a new task (in the order of the new tasks)
+			if (!incoming.isEmpty()) {
+				int from = tasks.size();
+				List<Task> list = modifiable();
+
+				incoming.values().stream().sorted().forEach(index -> list.add(newTasks.get(index)));
+				modCount++;
+				nextAdd(from, tasks.size());
+			}
+		} finally {
+			endChange();
+		}
+	}
+
+	/**
+	 * Removes the tasks at the indexes in one pass, so removing many tasks
+	 * doesn't move the rest of the list once for each of them. Listeners
+	 * are notified of each range of removed tasks. This must be called
+	 * while a change is being built.
+	 *
+	 * @param removed The indexes of the tasks to remove
+	 */
+	private void removeRows(BitSet removed) {
+		if (removed.isEmpty()) {
+			return;
+		}
+
+		// The removed tasks of each range, with the index of the range
+		// once the ranges before it have been removed
+		List<List<Task>> ranges = new ArrayList<>();
+		List<Integer> starts = new ArrayList<>();
+		int shift = 0;
+
+		for (int from = removed.nextSetBit(0); from >= 0; ) {
+			int to = removed.nextClearBit(from);
+
+			ranges.add(new ArrayList<>(tasks.subList(from, to)));
+			starts.add(from - shift);
+			shift += to - from;
+			from = removed.nextSetBit(to);
+		}
+
+		if (table != null) {
+			table.removeRows(removed);
+		} else {
+			// Keep the other tasks in order
+			List<Task> kept = new ArrayList<>(tasks.size() - shift);
+
+			for (int i = removed.nextClearBit(0); i < tasks.size(); i = removed.nextClearBit(i + 1)) {
+				kept.add(tasks.get(i));
+			}
+
+			tasks = kept;
+		}
+
+		modCount++;
+
+		for (int i = 0; i < ranges.size(); i++) {
+			nextRemove(starts.get(i), ranges.get(i));
+		}
+	}
+
+	/**
+	 * Gets the tasks as a list which can be changed, copying the stored
+	 * tasks the first time the tasks are added or removed
+	 *
+	 * @return The tasks
+	 */
+	private List<Task> modifiable() {
+		if (tasks instanceof TaskCache) {
+			tasks = new ArrayList<>(tasks);
+		}
+
+		return tasks;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public int size() {
+		return tasks.size();
+	}
+
+	/**
+	 * Updates the task at the index with the values of a new task
+	 *
+	 * @param index   The index of the task
+	 * @param newTask The task with the new values
+	 * @return If anything was changed
+	 */
+	private boolean update(int index, Task newTask) {
+		if (table != null) {
+			return table.update(index, newTask);
+		}
+
+		Task task = tasks.get(index);
+
+		// Update the task if it is a different instance
+		return newTask != task && task.update(newTask);
+	}
+}
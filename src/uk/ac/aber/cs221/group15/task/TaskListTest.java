@@ -0,0 +1,240 @@
+package uk.ac.aber.cs221.group15.task;
+
+import javafx.collections.ListChangeListener;
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests merging new tasks into a task list by id
+ *
+ * @author Darren White
+ * @version 0.0.4
+ */
+public class TaskListTest {
+
+	/**
+	 * Creates a task with a step
+	 *
+	 * @param id      The task id
+	 * @param title   The task title
+	 * @param status  The task status
+	 * @param comment The comment of the step
+	 * @return The new task
+	 */
+	private static Task createTask(int id, String title, int status, String comment) {
+		LocalDate date = LocalDate.of(2016, 5, id);
+		Task task = new Task(id, title, "Member", date, date, null, status);
+
+		task.addStep(new Step(id * 10, "Step", comment));
+
+		return task;
+	}
+
+	/**
+	 * Test tasks are updated in place and only new and deleted tasks
+	 * are added and removed, with listeners notified once
+	 */
+	@Test
+	public void testMerge() {
+		TaskList list = new TaskList();
+
+		list.merge(Arrays.asList(createTask(1, "One", Task.ALLOCATED, ""),
+				createTask(2, "Two", Task.ALLOCATED, ""),
+				createTask(3, "Three", Task.ALLOCATED, "")));
+
+		Task one = list.get(0), two = list.get(1);
+		Step step = two.getSteps().iterator().next();
+		List<String> titles = new ArrayList<>();
+		List<ListChangeListener.Change<? extends Task>> changes = new ArrayList<>();
+		int[] added = new int[1], removed = new int[1], updated = new int[1];
+
+		// Count the changes to the list and the title of the first task
+		one.titleProperty().addListener((o, oldValue, newValue) -> titles.add(newValue));
+		list.addListener((ListChangeListener<Task>) c -> {
+			changes.add(c);
+
+			while (c.next()) {
+				if (c.wasUpdated()) {
+					updated[0] += c.getTo() - c.getFrom();
+				} else {
+					added[0] += c.getAddedSize();
+					removed[0] += c.getRemovedSize();
+				}
+			}
+		});
+
+		// 1 is the same, 2 has changed, 3 is deleted and 4 is new
+		list.merge(Arrays.asList(createTask(1, "One", Task.ALLOCATED, ""),
+				createTask(2, "Two", Task.COMPLETED, "Done"),
+				createTask(4, "Four", Task.ALLOCATED, "")));
+
+		// Only one change with everything in it
+		assertEquals(1, changes.size());
+		assertEquals(1, added[0]);
+		assertEquals(1, removed[0]);
+		assertEquals(1, updated[0]);
+
+		// The tasks are updated in place
+		assertEquals(3, list.size());
+		assertSame(one, list.get(0));
+		assertSame(two, list.get(1));
+		assertEquals(Task.COMPLETED, two.getStatus());
+		assertSame(step, two.getSteps().iterator().next());
+		assertEquals("Done", step.getComment());
+		assertEquals(4, list.get(2).getId());
+
+		// The unchanged task didn't notify its listeners
+		assertTrue(titles.isEmpty());
+	}
+
+	/**
+	 * Test merging the same tasks doesn't change anything
+	 */
+	@Test
+	public void testMergeUnchanged() {
+		TaskList list = new TaskList();
+		List<Boolean> changes = new ArrayList<>();
+
+		list.merge(Arrays.asList(createTask(1, "One", Task.ALLOCATED, "")));
+		list.addListener((ListChangeListener<Task>) c -> {
+			while (c.next()) {
+				changes.add(true);
+			}
+		});
+
+		list.merge(Arrays.asList(createTask(1, "One", Task.ALLOCATED, "")));
+
+		assertFalse(list.get(0).update(createTask(1, "One", Task.ALLOCATED, "")));
+		assertTrue(changes.isEmpty());
+	}
+
+	/**
+	 * Merges only the tasks with even ids into a list of many tasks and
+	 * checks the removed tasks are reported in one change which, applied
+	 * to a copy of the ids, gives the ids in the list
+	 *
+	 * @param columnar If the tasks are stored in columns
+	 */
+	private static void checkRemoveMany(boolean columnar) {
+		TaskList list = new TaskList(columnar);
+		List<Task> all = new ArrayList<>(), even = new ArrayList<>();
+		LocalDate date = LocalDate.of(2016, 5, 1);
+
+		for (int id = 1; id <= 20000; id++) {
+			Task task = new Task(id, "Task " + id, "Member", date, date, null, Task.ALLOCATED);
+
+			all.add(task);
+
+			if (id % 2 == 0) {
+				even.add(task);
+			}
+		}
+
+		list.merge(all);
+
+		List<Integer> ids = new ArrayList<>();
+		int[] notified = new int[1];
+
+		all.forEach(t -> ids.add(t.getId()));
+		list.addListener((ListChangeListener<Task>) c -> {
+			notified[0]++;
+
+			while (c.next()) {
+				List<Integer> removed = ids.subList(c.getFrom(), c.getFrom() + c.getRemovedSize());
+
+				// The removed tasks are the ones at the index
+				for (int i = 0; i < removed.size(); i++) {
+					assertEquals((int) removed.get(i), c.getRemoved().get(i).getId());
+				}
+
+				removed.clear();
+			}
+		});
+
+		list.merge(even);
+
+		assertEquals(1, notified[0]);
+		assertEquals(10000, list.size());
+
+		for (int i = 0; i < list.size(); i++) {
+			assertEquals((i + 1) * 2, list.get(i).getId());
+			assertEquals((int) ids.get(i), list.get(i).getId());
+			assertEquals("Task " + (i + 1) * 2, list.get(i).getTitle());
+		}
+	}
+
+	/**
+	 * Test removing many tasks stored as objects is one change
+	 */
+	@Test
+	public void testRemoveMany() {
+		checkRemoveMany(false);
+	}
+
+	/**
+	 * Test removing many tasks stored in columns is one change
+	 */
+	@Test
+	public void testRemoveManyColumnar() {
+		checkRemoveMany(true);
+	}
+
+	/**
+	 * Test the stored tasks are shown without decoding them and are
+	 * only decoded when used or when the list changes
+	 *
+	 * @throws Exception If an exception occurs
+	 */
+	@Test
+	public void testCached() throws Exception {
+		List<Task> tasks = new ArrayList<>();
+
+		for (int id = 1; id <= 30; id++) {
+			tasks.add(createTask(id, "Task " + id, Task.ALLOCATED, ""));
+		}
+
+		TaskCache cache = new TaskCache(ByteBuffer.wrap(TaskSnapshot.encode(tasks)));
+		TaskList list = new TaskList();
+		int[] added = new int[1];
+
+		list.addListener((ListChangeListener<Task>) c -> {
+			while (c.next()) {
+				added[0] += c.getAddedSize();
+			}
+		});
+		list.merge(cache);
+
+		assertEquals(30, added[0]);
+		assertEquals(30, list.size());
+		assertSame(cache, list.copy());
+
+		for (int i = 0; i < cache.size(); i++) {
+			assertFalse(cache.isDecoded(i));
+		}
+
+		// Only the task used is decoded
+		assertEquals("Task 5", list.get(4).getTitle());
+		assertTrue(cache.isDecoded(4));
+		assertFalse(cache.isDecoded(5));
+
+		// Task 3 is deleted and task 31 is new
+		tasks.remove(2);
+		tasks.add(createTask(31, "Task 31", Task.ALLOCATED, ""));
+		list.merge(tasks);
+
+		assertEquals(30, list.size());
+		assertEquals(4, list.get(2).getId());
+		assertEquals(31, list.get(29).getId());
+		assertEquals("Task 31", list.get(29).getTitle());
+	}
+}
@@ -0,0 +1,770 @@
+package uk.ac.aber.cs221.group15.task;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.CRC32;
+
+/**
+ * Reads and writes the local task cache in a compact binary format. The
+ * snapshot starts with a header holding the magic number, version, the
+ * number of tasks and the offsets of the string table and index. Each
+ * task is then written as its own record with a CRC32, followed by the
+ * table of creator names and an index of the record offsets, both with
+ * their own CRC32. Numbers are written as varints, dates as the number
+ * of days since the epoch and strings as length prefixed UTF-8.
+ * <p>
+ * As every record can be found and checked on its own a snapshot file
+ * can be mapped and each task decoded only when it is needed (see
+ * {@link TaskCache}). A mapped file can't be replaced on some systems,
+ * so each snapshot is written to a new generation file and the snapshot
+ * path holds a small pointer to the current generation. Files written by
+ * older versions, including those using object streams, are still read
+ * so the cache is migrated the next time it is written.
+ *
+ * @author Darren White
+ * @version 0.0.4
+ */
+public final class TaskSnapshot {
+
+	/**
+	 * The current version of the format
+	 */
+	public static final int VERSION = 2;
+
+	/**
+	 * The magic number at the start of a snapshot ("TSKS")
+	 */
+	static final int MAGIC = 0x54534B53;
+
+	/**
+	 * The magic number at the start of a pointer to the current
+	 * generation of the snapshot ("TSKP")
+	 */
+	private static final int POINTER_MAGIC = 0x54534B50;
+
+	/**
+	 * The size of a pointer (the magic number and the generation)
+	 */
+	private static final int POINTER_SIZE = 12;
+
+	/**
+	 * The size of the header (including its checksum)
+	 */
+	static final int HEADER_SIZE = 21;
+
+	/**
+	 * The first version of the format which had a single checksum
+	 */
+	private static final int VERSION_1 = 1;
+
+	/**
+	 * The magic number at the start of an object stream
+	 */
+	private static final int LEGACY_MAGIC = 0xACED;
+
+	/**
+	 * The buffer the snapshot is written to
+	 */
+	private byte[] buf;
+
+	/**
+	 * The current position in the buffer
+	 */
+	private int pos;
+
+	/**
+	 * Creates a new snapshot for writing to the buffer
+	 *
+	 * @param buf The buffer to use
+	 */
+	private TaskSnapshot(byte[] buf) {
+		this.buf = buf;
+	}
+
+	/**
+	 * Checks the CRC32 of a section of the buffer against the 4 byte
+	 * checksum which follows it
+	 *
+	 * @param buf    The buffer
+	 * @param offset The start of the section
+	 * @param len    The length of the section
+	 * @throws IOException If the checksum does not match
+	 */
+	static void checkCrc(ByteBuffer buf, int offset, int len) throws IOException {
+		if (offset < 0 || len < 0 || offset + len + 4 > buf.limit()) {
+			throw new IOException("Task snapshot is truncated");
+		}
+
+		CRC32 crc = new CRC32();
+		ByteBuffer section = buf.duplicate();
+
+		section.limit(offset + len).position(offset);
+		crc.update(section);
+
+		if (buf.getInt(offset + len) != (int) crc.getValue()) {
+			throw new IOException("Task snapshot checksum does not match");
+		}
+	}
+
+	/**
+	 * Decodes the tasks from a snapshot, including their steps. Snapshots
+	 * written by older versions are also read.
+	 *
+	 * @param data The snapshot
+	 * @return The tasks read from the snapshot
+	 * @throws IOException If the snapshot is damaged or not supported
+	 */
+	public static List<Task> decode(byte[] data) throws IOException {
+		// Files written before this format used object streams
+		if (data.length >= 2 && ((data[0] & 0xFF) << 8 | data[1] & 0xFF) == LEGACY_MAGIC) {
+			return decodeLegacy(data);
+		}
+
+		ByteBuffer buf = ByteBuffer.wrap(data);
+
+		if (readVersion(buf) == VERSION_1) {
+			return decodeVersion1(buf);
+		}
+
+		// Decode everything now
+		try {
+			List<Task> tasks = new ArrayList<>(new TaskCache(buf));
+
+			tasks.forEach(Task::getSteps);
+
+			return tasks;
+		} catch (UncheckedIOException e) {
+			throw e.getCause();
+		}
+	}
+
+	/**
+	 * Decodes the tasks from a snapshot written by an object stream
+	 *
+	 * @param data The snapshot
+	 * @return The tasks read from the snapshot
+	 * @throws IOException If an I/O exception occurs
+	 */
+	private static List<Task> decodeLegacy(byte[] data) throws IOException {
+		List<Task> tasks = new ArrayList<>();
+
+		try (ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(data))) {
+			// Read the number of tasks that are in the file
+			int len = in.readInt();
+
+			// Iterate all of the tasks and read them
+			while (len-- > 0) {
+				tasks.add(Task.readTask(in));
+			}
+		} catch (ClassNotFoundException e) {
+			throw new IOException("Unable to read old task snapshot", e);
+		}
+
+		return tasks;
+	}
+
+	/**
+	 * Decodes the tasks from a version 1 snapshot. These have the string
+	 * table first, then every task with its steps and a single checksum.
+	 *
+	 * @param buf The snapshot positioned after the version
+	 * @return The tasks read from the snapshot
+	 * @throws IOException If the snapshot is damaged
+	 */
+	private static List<Task> decodeVersion1(ByteBuffer buf) throws IOException {
+		// The checksum covers everything before it
+		checkCrc(buf, 0, buf.limit() - 4);
+
+		String[] strings = readStrings(buf);
+		int count = readVarInt(buf);
+		List<Task> tasks = new ArrayList<>(count);
+
+		while (count-- > 0) {
+			Task task = readTask(buf, strings);
+
+			readSteps(buf).forEach(task::addStep);
+			tasks.add(task);
+		}
+
+		return tasks;
+	}
+
+	/**
+	 * Encodes the tasks as a snapshot
+	 *
+	 * @param tasks The tasks to encode
+	 * @return The snapshot
+	 */
+	public static byte[] encode(Collection<Task> tasks) {
+		// Roughly the size of a task with a few steps
+		TaskSnapshot out = new TaskSnapshot(new byte[64 + tasks.size() * 128]);
+		// The index of each creator name in the table
+		Map<String, Integer> strings = new HashMap<>();
+		List<String> table = new ArrayList<>();
+		// The offset of each record and the ids in the same order
+		int[] offsets = new int[tasks.size()];
+		long[] ids = new long[tasks.size()];
+		int i = 0;
+
+		// The header is filled in at the end
+		out.pos = HEADER_SIZE;
+
+		for (Task t : tasks) {
+			if (!strings.containsKey(t.getCreator())) {
+				strings.put(t.getCreator(), table.size());
+				table.add(t.getCreator());
+			}
+
+			// Sort by id and then position using one long
+			ids[i] = (long) t.getId() << 32 | i;
+			offsets[i++] = out.pos;
+			out.writeRecord(t, strings.get(t.getCreator()));
+		}
+
+		// The string table
+		int stringsOffset = out.pos;
+
+		out.writeVarLong(table.size());
+		table.forEach(out::writeString);
+		out.writeCrc(stringsOffset);
+
+		// The index of the records in order and then sorted by id
+		int indexOffset = out.pos;
+
+		Arrays.sort(ids);
+
+		for (int offset : offsets) {
+			out.writeFixedInt(offset);
+		}
+
+		for (long id : ids) {
+			out.writeFixedInt((int) (id >> 32));
+			out.writeFixedInt((int) id);
+		}
+
+		out.writeCrc(indexOffset);
+
+		// Now the header
+		int end = out.pos;
+
+		out.pos = 0;
+		out.writeFixedInt(MAGIC);
+		out.write(VERSION);
+		out.writeFixedInt(tasks.size());
+		out.writeFixedInt(stringsOffset);
+		out.writeFixedInt(indexOffset);
+		out.writeCrc(0);
+
+		return Arrays.copyOf(out.buf, end);
+	}
+
+	/**
+	 * Deletes the snapshot file and every generation of it
+	 *
+	 * @param path The path of the file
+	 * @throws IOException If an I/O exception occurs
+	 */
+	public static void delete(Path path) throws IOException {
+		deleteGenerations(path, 0);
+		Files.deleteIfExists(path);
+	}
+
+	/**
+	 * Deletes the generations of the snapshot other than one. Generations
+	 * which are still mapped may not be deleted on some systems, so they
+	 * are left until the next time.
+	 *
+	 * @param path The path of the file
+	 * @param keep The generation to keep
+	 * @throws IOException If the directory can't be read
+	 */
+	private static void deleteGenerations(Path path, long keep) throws IOException {
+		String prefix = path.getFileName() + ".";
+
+		try (DirectoryStream<Path> dir = Files.newDirectoryStream(path.toAbsolutePath().getParent(),
+				path.getFileName() + ".*")) {
+			for (Path p : dir) {
+				String suffix = p.getFileName().toString().substring(prefix.length());
+
+				// Only the generations (not the temporary file)
+				if (!suffix.matches("\\d+") || Long.parseLong(suffix) == keep) {
+					continue;
+				}
+
+				try {
+					Files.deleteIfExists(p);
+				} catch (IOException e) {
+					// Still mapped so try again next time
+				}
+			}
+		}
+	}
+
+	/**
+	 * Gets the path of a generation of the snapshot
+	 *
+	 * @param path       The path of the file
+	 * @param generation The generation
+	 * @return The path of the generation
+	 */
+	private static Path generation(Path path, long generation) {
+		return path.resolveSibling(path.getFileName() + "." + generation);
+	}
+
+	/**
+	 * Opens the snapshot file. Snapshots in the current format are mapped
+	 * into memory and each task is only decoded when it is first used.
+	 * Older snapshots are read in full.
+	 *
+	 * @param path The path of the file
+	 * @return The tasks in the file
+	 * @throws IOException If an I/O exception occurs or the file is damaged
+	 */
+	public static List<Task> open(Path path) throws IOException {
+		long current = readGeneration(path);
+
+		// Only generations are mapped, so the file at the path itself
+		// can always be replaced
+		if (current == 0) {
+			return read(path);
+		}
+
+		try (FileChannel channel = FileChannel.open(generation(path, current), StandardOpenOption.READ)) {
+			// The mapping stays valid after the channel is closed
+			ByteBuffer buf = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+
+			if (buf.limit() >= HEADER_SIZE && buf.getInt(0) == MAGIC && buf.get(4) == VERSION) {
+				return new TaskCache(buf);
+			}
+		}
+
+		return read(path);
+	}
+
+	/**
+	 * Reads all of the tasks from the snapshot file
+	 *
+	 * @param path The path of the file
+	 * @return The tasks read from the file
+	 * @throws IOException If an I/O exception occurs or the file is damaged
+	 */
+	public static List<Task> read(Path path) throws IOException {
+		long current = readGeneration(path);
+
+		return decode(Files.readAllBytes(current == 0 ? path : generation(path, current)));
+	}
+
+	/**
+	 * Reads the current generation from the pointer at the path
+	 *
+	 * @param path The path of the file
+	 * @return The generation or 0 if the file isn't a pointer
+	 * @throws IOException If an I/O exception occurs
+	 */
+	private static long readGeneration(Path path) throws IOException {
+		if (!Files.exists(path)) {
+			return 0;
+		}
+
+		ByteBuffer buf = ByteBuffer.allocate(POINTER_SIZE);
+
+		try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+			// Older snapshots are much larger than a pointer
+			if (channel.size() != POINTER_SIZE) {
+				return 0;
+			}
+
+			while (buf.hasRemaining() && channel.read(buf) != -1) {
+				// Read the whole pointer
+			}
+		}
+
+		return buf.getInt(0) == POINTER_MAGIC ? buf.getLong(4) : 0;
+	}
+
+	/**
+	 * Reads a date written as the number of days since the epoch
+	 *
+	 * @param buf The buffer to read from
+	 * @return The date (null if none was written)
+	 * @throws IOException If the snapshot is damaged
+	 */
+	private static LocalDate readDate(ByteBuffer buf) throws IOException {
+		long v = readVarLong(buf);
+
+		// Zero is used for no date
+		if (v == 0) {
+			return null;
+		}
+
+		// Undo the zigzag encoding
+		return DateCache.ofEpochDay((v - 1) >>> 1 ^ -((v - 1) & 1));
+	}
+
+	/**
+	 * Reads the steps of a task
+	 *
+	 * @param buf The buffer positioned at the steps
+	 * @return The steps
+	 * @throws IOException If the snapshot is damaged
+	 */
+	static List<Step> readSteps(ByteBuffer buf) throws IOException {
+		int count = readVarInt(buf);
+		List<Step> steps = new ArrayList<>(count);
+
+		while (count-- > 0) {
+			steps.add(new Step(readVarInt(buf), readString(buf), readString(buf)));
+		}
+
+		return steps;
+	}
+
+	/**
+	 * Reads a length prefixed UTF-8 string
+	 *
+	 * @param buf The buffer to read from
+	 * @return The string (can be null)
+	 * @throws IOException If the snapshot is damaged
+	 */
+	private static String readString(ByteBuffer buf) throws IOException {
+		// The length is one more than the number of bytes so zero is null
+		int len = readVarInt(buf);
+
+		if (len == 0) {
+			return null;
+		}
+
+		if (--len > buf.remaining()) {
+			throw new IOException("Task snapshot is truncated");
+		}
+
+		String s;
+
+		if (buf.hasArray()) {
+			s = new String(buf.array(), buf.arrayOffset() + buf.position(), len, StandardCharsets.UTF_8);
+			buf.position(buf.position() + len);
+		} else {
+			byte[] data = new byte[len];
+
+			buf.get(data);
+			s = new String(data, StandardCharsets.UTF_8);
+		}
+
+		return s;
+	}
+
+	/**
+	 * Reads the table of creator names
+	 *
+	 * @param buf The buffer positioned at the table
+	 * @return The names
+	 * @throws IOException If the snapshot is damaged
+	 */
+	static String[] readStrings(ByteBuffer buf) throws IOException {
+		String[] strings = new String[readVarInt(buf)];
+
+		for (int i = 0; i < strings.length; i++) {
+			strings[i] = readString(buf);
+		}
+
+		return strings;
+	}
+
+	/**
+	 * Reads the values of a task up to its steps
+	 *
+	 * @param buf     The buffer positioned at the task
+	 * @param strings The table of creator names
+	 * @return The task without any steps
+	 * @throws IOException If the snapshot is damaged
+	 */
+	static Task readTask(ByteBuffer buf, String[] strings) throws IOException {
+		int id = readVarInt(buf);
+		String title = readString(buf);
+		int creator = readVarInt(buf);
+
+		if (creator >= strings.length) {
+			throw new IOException("Task snapshot has an invalid creator");
+		}
+
+		LocalDate dateCreated = readDate(buf);
+		LocalDate dateDue = readDate(buf);
+		LocalDate dateCompleted = readDate(buf);
+		int status = readVarInt(buf);
+
+		return new Task(id, title, strings[creator], dateCreated, dateDue, dateCompleted, status);
+	}
+
+	/**
+	 * Reads an unsigned varint which fits in an int
+	 *
+	 * @param buf The buffer to read from
+	 * @return The value
+	 * @throws IOException If the snapshot is damaged
+	 */
+	static int readVarInt(ByteBuffer buf) throws IOException {
+		long v = readVarLong(buf);
+
+		if (v > Integer.MAX_VALUE) {
+			throw new IOException("Task snapshot value is too large");
+		}
+
+		return (int) v;
+	}
+
+	/**
+	 * Reads an unsigned varint. Each byte holds 7 bits with the high bit
+	 * set if there are more bytes.
+	 *
+	 * @param buf The buffer to read from
+	 * @return The value
+	 * @throws IOException If the snapshot is damaged
+	 */
+	private static long readVarLong(ByteBuffer buf) throws IOException {
+		long v = 0;
+
+		for (int shift = 0; shift < 64; shift += 7) {
+			if (!buf.hasRemaining()) {
+				throw new IOException("Task snapshot is truncated");
+			}
+
+			byte b = buf.get();
+			v |= (long) (b & 0x7F) << shift;
+
+			if (b >= 0) {
+				return v;
+			}
+		}
+
+		throw new IOException("Task snapshot has an invalid varint");
+	}
+
+	/**
+	 * Checks the magic number and reads the version of a snapshot
+	 *
+	 * @param buf The snapshot
+	 * @return The version
+	 * @throws IOException If this is not a snapshot or the version is not supported
+	 */
+	static int readVersion(ByteBuffer buf) throws IOException {
+		if (buf.limit() < 5 || buf.getInt(0) != MAGIC) {
+			throw new IOException("Not a task snapshot");
+		}
+
+		int version = buf.get(4);
+
+		if (version != VERSION_1 && version != VERSION) {
+			throw new IOException("Unsupported task snapshot version: " + version);
+		}
+
+		buf.position(5);
+
+		return version;
+	}
+
+	/**
+	 * Writes the tasks to the snapshot file. The snapshot is written to the
+	 * next generation file, which is never mapped, and then the pointer at
+	 * the path is replaced to point to it. Both are written to a temporary
+	 * file first and then moved so they are never left half written. The
+	 * older generations are deleted if they aren't still mapped.
+	 *
+	 * @param tasks The tasks to write
+	 * @param path  The path of the file
+	 * @throws IOException If an I/O exception occurs
+	 */
+	public static void write(Collection<Task> tasks, Path path) throws IOException {
+		Path tmp = path.resolveSibling(path.getFileName() + ".tmp");
+		long next = readGeneration(path) + 1;
+
+		Files.write(tmp, encode(tasks));
+		Files.move(tmp, generation(path, next), StandardCopyOption.REPLACE_EXISTING,
+				StandardCopyOption.ATOMIC_MOVE);
+
+		// The pointer is never mapped so it can be replaced
+		ByteBuffer pointer = ByteBuffer.allocate(POINTER_SIZE);
+		pointer.putInt(POINTER_MAGIC).putLong(next);
+
+		Files.write(tmp, pointer.array());
+		Files.move(tmp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+
+		deleteGenerations(path, next);
+	}
+
+	/**
+	 * Makes sure there is space in the buffer
+	 *
+	 * @param len The number of bytes to be written
+	 */
+	private void ensureCapacity(int len) {
+		if (pos + len > buf.length) {
+			buf = Arrays.copyOf(buf, Math.max(buf.length * 2, pos + len));
+		}
+	}
+
+	/**
+	 * Writes a single byte
+	 *
+	 * @param b The byte to write
+	 */
+	private void write(int b) {
+		ensureCapacity(1);
+		buf[pos++] = (byte) b;
+	}
+
+	/**
+	 * Writes the CRC32 of everything from the offset up to here
+	 *
+	 * @param offset The start of the section
+	 */
+	private void writeCrc(int offset) {
+		CRC32 crc = new CRC32();
+
+		crc.update(buf, offset, pos - offset);
+		writeFixedInt((int) crc.getValue());
+	}
+
+	/**
+	 * Writes a date as the number of days since the epoch
+	 *
+	 * @param date The date (can be null)
+	 */
+	private void writeDate(LocalDate date) {
+		if (date == null) {
+			writeVarLong(0);
+			return;
+		}
+
+		long days = date.toEpochDay();
+
+		// Zigzag encode so dates before the epoch are small too
+		// and add one as zero is used for no date
+		writeVarLong((days << 1 ^ days >> 63) + 1);
+	}
+
+	/**
+	 * Writes a 4 byte integer
+	 *
+	 * @param v The integer
+	 */
+	private void writeFixedInt(int v) {
+		ensureCapacity(4);
+		buf[pos++] = (byte) (v >>> 24);
+		buf[pos++] = (byte) (v >>> 16);
+		buf[pos++] = (byte) (v >>> 8);
+		buf[pos++] = (byte) v;
+	}
+
+	/**
+	 * Writes a task and its steps as a record. The record starts with its
+	 * length and ends with its checksum.
+	 *
+	 * @param t       The task to write
+	 * @param creator The index of the creator name in the table
+	 */
+	private void writeRecord(Task t, int creator) {
+		// The length is written once the record is known, the
+		// first byte is reserved as most records are short
+		int start = pos;
+
+		pos++;
+		writeVarLong(t.getId());
+		writeString(t.getTitle());
+		writeVarLong(creator);
+		writeDate(t.getDateCreated());
+		writeDate(t.getDateDue());
+		writeDate(t.getDateCompleted());
+		writeVarLong(t.getStatus());
+		writeVarLong(t.getSteps().size());
+
+		for (Step s : t.getSteps()) {
+			writeVarLong(s.getId());
+			writeString(s.getTitle());
+			writeString(s.getComment());
+		}
+
+		int len = pos - start - 1;
+
+		// Move the record along if the length needs more than one byte
+		int size = varLongSize(len);
+
+		if (size > 1) {
+			ensureCapacity(size - 1);
+			System.arraycopy(buf, start + 1, buf, start + size, len);
+		}
+
+		pos = start;
+		writeVarLong(len);
+		pos += len;
+		writeCrc(start + size);
+	}
+
+	/**
+	 * Writes a length prefixed UTF-8 string
+	 *
+	 * @param s The string (can be null)
+	 */
+	private void writeString(String s) {
+		if (s == null) {
+			writeVarLong(0);
+			return;
+		}
+
+		byte[] data = s.getBytes(StandardCharsets.UTF_8);
+
+		writeVarLong(data.length + 1);
+		ensureCapacity(data.length);
+		System.arraycopy(data, 0, buf, pos, data.length);
+		pos += data.length;
+	}
+
+	/**
+	 * Writes an unsigned varint
+	 *
+	 * @param v The value
+	 */
+	private void writeVarLong(long v) {
+		ensureCapacity(10);
+
+		while ((v & ~0x7FL) != 0) {
+			buf[pos++] = (byte) (v & 0x7F | 0x80);
+			v >>>= 7;
+		}
+
+		buf[pos++] = (byte) v;
+	}
+
+	/**
+	 * Gets the number of bytes needed for a varint
+	 *
+	 * @param v The value
+	 * @return The number of bytes
+	 */
+	private static int varLongSize(long v) {
+		int size = 1;
+
+		while ((v & ~0x7FL) != 0) {
+			v >>>= 7;
+			size++;
+		}
+
+		return size;
+	}
+}
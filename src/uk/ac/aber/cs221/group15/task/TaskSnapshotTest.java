@@ -0,0 +1,312 @@
+package uk.ac.aber.cs221.group15.task;
+
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectOutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.Iterator;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests the task snapshot format and compares its size and load time
+ * with the old object stream format
+ *
+ * @author Darren White
+ * @version 0.0.4
+ */
+public class TaskSnapshotTest {
+
+	/**
+	 * The number of tasks used for the comparison
+	 */
+	private static final int TASKS = 100000;
+
+	/**
+	 * The number of steps for each task
+	 */
+	private static final int STEPS = 3;
+
+	/**
+	 * The number of times each format is read
+	 */
+	private static final int ITERATIONS = 5;
+
+	/**
+	 * The number of tasks shown when the cache is opened
+	 */
+	private static final int SCREEN = 20;
+
+	/**
+	 * Creates tasks like the ones from the server
+	 *
+	 * @param count The number of tasks
+	 * @return The tasks
+	 */
+	private static List<Task> createTasks(int count) {
+		List<Task> tasks = new ArrayList<>(count);
+
+		for (int id = 1; id <= count; id++) {
+			LocalDate created = LocalDate.of(2016, 5, 1);
+			LocalDate due = LocalDate.of(2016, 6, 1 + id % 28);
+			Task task = new Task(id, "Task \u00e9 " + id, "Member " + id % 10, created, due,
+					id % 3 == 0 ? due : null, id % 3 == 0 ? Task.COMPLETED : Task.ALLOCATED);
+
+			for (int i = 0; i < STEPS; i++) {
+				task.addStep(new Step(id * STEPS + i, "Step " + i, i == 0 ? "Comment" : ""));
+			}
+
+			tasks.add(task);
+		}
+
+		return tasks;
+	}
+
+	/**
+	 * Encodes the tasks with the old object stream format
+	 *
+	 * @param tasks The tasks to encode
+	 * @return The encoded tasks
+	 * @throws IOException If an I/O exception occurs
+	 */
+	private static byte[] encodeLegacy(List<Task> tasks) throws IOException {
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+
+		try (ObjectOutputStream out = new ObjectOutputStream(bytes)) {
+			out.writeInt(tasks.size());
+
+			for (Task t : tasks) {
+				t.writeTask(out);
+			}
+		}
+
+		return bytes.toByteArray();
+	}
+
+	/**
+	 * Checks every value of the tasks is the same
+	 *
+	 * @param expected The expected tasks
+	 * @param actual   The actual tasks
+	 */
+	private static void assertTasksEqual(List<Task> expected, List<Task> actual) {
+		assertEquals(expected.size(), actual.size());
+
+		for (int i = 0; i < expected.size(); i++) {
+			Task e = expected.get(i), a = actual.get(i);
+
+			assertEquals(e.getId(), a.getId());
+			assertEquals(e.getTitle(), a.getTitle());
+			assertEquals(e.getCreator(), a.getCreator());
+			assertEquals(e.getDateCreated(), a.getDateCreated());
+			assertEquals(e.getDateDue(), a.getDateDue());
+			assertEquals(e.getDateCompleted(), a.getDateCompleted());
+			assertEquals(e.getStatus(), a.getStatus());
+			assertEquals(e.getSteps().size(), a.getSteps().size());
+
+			Iterator<Step> it = a.getSteps().iterator();
+
+			for (Step s : e.getSteps()) {
+				Step step = it.next();
+
+				assertEquals(s.getId(), step.getId());
+				assertEquals(s.getTitle(), step.getTitle());
+				assertEquals(s.getComment(), step.getComment());
+			}
+		}
+	}
+
+	/**
+	 * Test the tasks are the same after being encoded and decoded, and
+	 * compare the size and load time with the old format
+	 *
+	 * @throws Exception If an exception occurs
+	 */
+	@Test
+	public void testSnapshot() throws Exception {
+		List<Task> tasks = createTasks(TASKS);
+		byte[] legacy = encodeLegacy(tasks);
+		byte[] snapshot = TaskSnapshot.encode(tasks);
+
+		assertTasksEqual(tasks, TaskSnapshot.decode(snapshot));
+
+		long legacyTime = 0, snapshotTime = 0;
+
+		// Read both a number of times (the first is warm up)
+		for (int i = 0; i <= ITERATIONS; i++) {
+			long start = System.nanoTime();
+			TaskSnapshot.decode(legacy);
+			long mid = System.nanoTime();
+			TaskSnapshot.decode(snapshot);
+			long end = System.nanoTime();
+
+			if (i > 0) {
+				legacyTime += mid - start;
+				snapshotTime += end - mid;
+			}
+		}
+
+		System.out.println("Loading " + TASKS + " tasks...");
+		System.out.println("Object stream: " + legacy.length / 1024 + "KB, " +
+				legacyTime / ITERATIONS / 1000000 + "ms");
+		System.out.println("Snapshot: " + snapshot.length / 1024 + "KB, " +
+				snapshotTime / ITERATIONS / 1000000 + "ms");
+		System.out.println();
+
+		assertTrue(snapshot.length < legacy.length);
+	}
+
+	/**
+	 * Test the cache decodes the same tasks and opening it to show the
+	 * first tasks takes about the same time for any number of tasks
+	 *
+	 * @throws Exception If an exception occurs
+	 */
+	@Test
+	public void testCache() throws Exception {
+		System.out.println("Opening the cache and showing " + SCREEN + " tasks...");
+
+		for (int count = TASKS / 100; count <= TASKS; count *= 10) {
+			List<Task> tasks = createTasks(count);
+			Path path = Files.createTempFile("tasks", ".snapshot");
+
+			try {
+				TaskSnapshot.write(tasks, path);
+
+				long time = 0;
+
+				// Open the cache a number of times (the first is warm up)
+				for (int i = 0; i <= ITERATIONS; i++) {
+					long start = System.nanoTime();
+					List<Task> cache = TaskSnapshot.open(path);
+
+					// Show the first screen with the steps of one task
+					for (int j = 0; j < SCREEN; j++) {
+						cache.get(j).getTitle();
+					}
+
+					cache.get(0).getSteps();
+
+					if (i > 0) {
+						time += System.nanoTime() - start;
+					}
+				}
+
+				TaskCache cache = (TaskCache) TaskSnapshot.open(path);
+
+				assertTasksEqual(tasks, cache);
+				assertEquals(count / 2, cache.find(count / 2).getId());
+				assertNull(cache.find(count + 1));
+
+				System.out.println(count + " tasks: " + time / ITERATIONS / 1000 + "us");
+			} finally {
+				TaskSnapshot.delete(path);
+			}
+		}
+
+		System.out.println();
+	}
+
+	/**
+	 * Test the snapshot can be written again while the last one is still
+	 * open, which keeps reading the tasks it was opened with
+	 *
+	 * @throws Exception If an exception occurs
+	 */
+	@Test
+	public void testRewrite() throws Exception {
+		List<Task> first = createTasks(10), second = createTasks(20);
+		Path path = Files.createTempFile("tasks", ".snapshot");
+
+		try {
+			TaskSnapshot.write(first, path);
+
+			List<Task> open = TaskSnapshot.open(path);
+
+			// Write the tasks read from the open snapshot and then more
+			TaskSnapshot.write(open, path);
+			TaskSnapshot.write(second, path);
+
+			assertTasksEqual(first, open);
+			assertTasksEqual(second, TaskSnapshot.open(path));
+			assertTasksEqual(second, TaskSnapshot.read(path));
+		} finally {
+			TaskSnapshot.delete(path);
+		}
+
+		assertFalse(Files.exists(path));
+	}
+
+	/**
+	 * Test files in the old format are migrated
+	 *
+	 * @throws Exception If an exception occurs
+	 */
+	@Test
+	public void testLegacy() throws Exception {
+		List<Task> tasks = createTasks(100);
+
+		assertTasksEqual(tasks, TaskSnapshot.decode(encodeLegacy(tasks)));
+	}
+
+	/**
+	 * Test files in the old format with the dates written as calendars
+	 * are read with the same dates
+	 *
+	 * @throws Exception If an exception occurs
+	 */
+	@Test
+	public void testLegacyCalendar() throws Exception {
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		Calendar created = Calendar.getInstance();
+		Calendar due = Calendar.getInstance();
+
+		created.clear();
+		created.set(2016, Calendar.MAY, 1);
+		due.clear();
+		due.set(2016, Calendar.JUNE, 1, 23, 59);
+
+		try (ObjectOutputStream out = new ObjectOutputStream(bytes)) {
+			out.writeInt(1);
+			out.writeInt(1);
+			out.writeUTF("Task");
+			out.writeUTF("Member");
+			out.writeObject(created);
+			out.writeObject(due);
+			out.writeObject(null);
+			out.writeInt(Task.ALLOCATED);
+			out.writeInt(0);
+		}
+
+		Task task = TaskSnapshot.decode(bytes.toByteArray()).get(0);
+
+		assertEquals(LocalDate.of(2016, 5, 1), task.getDateCreated());
+		assertEquals(LocalDate.of(2016, 6, 1), task.getDateDue());
+		assertNull(task.getDateCompleted());
+	}
+
+	/**
+	 * Test a damaged snapshot is not loaded
+	 *
+	 * @throws Exception If an exception occurs
+	 */
+	@Test(expected = IOException.class)
+	public void testChecksum() throws Exception {
+		byte[] snapshot = TaskSnapshot.encode(createTasks(100));
+
+		// Change a byte in the middle
+		snapshot[snapshot.length / 2] ^= 1;
+
+		TaskSnapshot.decode(snapshot);
+	}
+}
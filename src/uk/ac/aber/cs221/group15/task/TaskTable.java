@@ -0,0 +1,706 @@
+package uk.ac.aber.cs221.group15.task;
+
+import java.time.LocalDate;
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.RandomAccess;
+import java.util.Set;
+
+/**
+ * A list of tasks stored in columns rather than as objects, for accounts
+ * with very many tasks. The ids, statuses and dates are kept in arrays of
+ * ints (dates as the number of days since the epoch), creators as an index
+ * into a table of names and titles in one shared array of chars, so
+ * filtering the tasks is a scan over a few arrays.
+ * <p>
+ * Tasks added to the table are copied into the columns. Getting a task
+ * returns a view of its row, which is a task created from the columns the
+ * first time the row is used and kept until it is removed. Changes to the
+ * status of a view are written back to the columns. A view added back to
+ * the table (such as when the list is sorted) stays the view of its new
+ * row. This list is not thread safe and is used by {@link TaskList} on
+ * the JavaFX thread.
+ *
+ * @author Darren White
+ * @version 0.0.3
+ */
+public class TaskTable extends AbstractList<Task> implements RandomAccess {
+
+	/**
+	 * The value of a date column when there is no date
+	 */
+	public static final int NO_DATE = Integer.MIN_VALUE;
+
+	/**
+	 * The number of rows to start with
+	 */
+	private static final int INITIAL_CAPACITY = 16;
+
+	/**
+	 * The table of creator names
+	 */
+	private final List<String> names = new ArrayList<>();
+
+	/**
+	 * The index of each creator name in the table
+	 */
+	private final Map<String, Integer> nameIndex = new HashMap<>();
+
+	/**
+	 * The task ids
+	 */
+	private int[] ids = new int[INITIAL_CAPACITY];
+
+	/**
+	 * The task statuses
+	 */
+	private int[] statuses = new int[INITIAL_CAPACITY];
+
+	/**
+	 * The index of the creator names (-1 for no creator)
+	 */
+	private int[] creators = new int[INITIAL_CAPACITY];
+
+	/**
+	 * The dates the tasks were created
+	 */
+	private int[] created = new int[INITIAL_CAPACITY];
+
+	/**
+	 * The dates the tasks are due
+	 */
+	private int[] due = new int[INITIAL_CAPACITY];
+
+	/**
+	 * The dates the tasks were completed
+	 */
+	private int[] completed = new int[INITIAL_CAPACITY];
+
+	/**
+	 * The offset of each title in the title chars
+	 */
+	private int[] titleStart = new int[INITIAL_CAPACITY];
+
+	/**
+	 * The length of each title (-1 for no title)
+	 */
+	private int[] titleLength = new int[INITIAL_CAPACITY];
+
+	/**
+	 * The steps of each task which hasn't got a view yet
+	 */
+	private Object[] steps = new Object[INITIAL_CAPACITY];
+
+	/**
+	 * The view of each row (null until the row is used)
+	 */
+	private Task[] rows = new Task[INITIAL_CAPACITY];
+
+	/**
+	 * The chars of all of the titles
+	 */
+	private char[] titles = new char[INITIAL_CAPACITY * 16];
+
+	/**
+	 * The number of title chars used
+	 */
+	private int titlesUsed;
+
+	/**
+	 * The number of title chars used by titles which were removed
+	 */
+	private int titlesFree;
+
+	/**
+	 * The number of rows
+	 */
+	private int size;
+
+	/**
+	 * If a view is being updated, when its changes are written to the
+	 * columns afterwards rather than by its listeners
+	 */
+	private boolean updating;
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public void add(int index, Task task) {
+		if (index < 0 || index > size) {
+			throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+		}
+
+		ensureCapacity(size + 1);
+		move(index, index + 1, size - index);
+		size++;
+		modCount++;
+
+		write(index, task);
+	}
+
+	/**
+	 * Gets the index of a creator name, adding it to the table if needed
+	 *
+	 * @param name The creator name
+	 * @return The index of the name (-1 for no name)
+	 */
+	private int addName(String name) {
+		if (name == null) {
+			return -1;
+		}
+
+		Integer i = nameIndex.get(name);
+
+		if (i == null) {
+			i = names.size();
+			names.add(name);
+			nameIndex.put(name, i);
+		}
+
+		return i;
+	}
+
+	/**
+	 * Adds a title to the title chars
+	 *
+	 * @param row   The row of the title
+	 * @param title The title
+	 */
+	private void addTitle(int row, String title) {
+		// The old title of the row isn't kept
+		titleLength[row] = -1;
+
+		if (title == null) {
+			return;
+		}
+
+		// Copy the live titles to a new array once half are removed
+		if (titlesFree > titlesUsed / 2) {
+			compactTitles();
+		}
+
+		if (titlesUsed + title.length() > titles.length) {
+			titles = Arrays.copyOf(titles, Math.max(titles.length * 2, titlesUsed + title.length()));
+		}
+
+		title.getChars(0, title.length(), titles, titlesUsed);
+		titleStart[row] = titlesUsed;
+		titleLength[row] = title.length();
+		titlesUsed += title.length();
+	}
+
+	/**
+	 * Copies the titles which are still used to the start of a new array
+	 */
+	private void compactTitles() {
+		char[] live = new char[Math.max(INITIAL_CAPACITY * 16, (titlesUsed - titlesFree) * 2)];
+		int used = 0;
+
+		for (int i = 0; i < size; i++) {
+			if (titleLength[i] > 0) {
+				System.arraycopy(titles, titleStart[i], live, used, titleLength[i]);
+				titleStart[i] = used;
+				used += titleLength[i];
+			}
+		}
+
+		titles = live;
+		titlesUsed = used;
+		titlesFree = 0;
+	}
+
+	/**
+	 * Converts a date column value to a date
+	 *
+	 * @param day The number of days since the epoch
+	 * @return The date (null for no date)
+	 */
+	private static LocalDate date(int day) {
+		return day == NO_DATE ? null : DateCache.ofEpochDay(day);
+	}
+
+	/**
+	 * Converts a date to a date column value
+	 *
+	 * @param date The date (can be null)
+	 * @return The number of days since the epoch
+	 */
+	private static int day(LocalDate date) {
+		return date == null ? NO_DATE : (int) date.toEpochDay();
+	}
+
+	/**
+	 * Makes sure the columns can hold the number of rows
+	 *
+	 * @param capacity The number of rows
+	 */
+	private void ensureCapacity(int capacity) {
+		if (capacity <= ids.length) {
+			return;
+		}
+
+		int length = Math.max(ids.length * 2, capacity);
+
+		ids = Arrays.copyOf(ids, length);
+		statuses = Arrays.copyOf(statuses, length);
+		creators = Arrays.copyOf(creators, length);
+		created = Arrays.copyOf(created, length);
+		due = Arrays.copyOf(due, length);
+		completed = Arrays.copyOf(completed, length);
+		titleStart = Arrays.copyOf(titleStart, length);
+		titleLength = Arrays.copyOf(titleLength, length);
+		steps = Arrays.copyOf(steps, length);
+		rows = Arrays.copyOf(rows, length);
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public Task get(int index) {
+		checkIndex(index);
+
+		if (rows[index] == null) {
+			rows[index] = view(index);
+		}
+
+		return rows[index];
+	}
+
+	/**
+	 * Copies the tasks to a new list without creating the views of the
+	 * rows. Rows which have a view use it and the other rows are read
+	 * into tasks which aren't kept.
+	 *
+	 * @return The tasks
+	 */
+	@SuppressWarnings("unchecked")
+	public List<Task> copy() {
+		List<Task> copy = new ArrayList<>(size);
+
+		for (int i = 0; i < size; i++) {
+			if (rows[i] != null) {
+				copy.add(rows[i]);
+				continue;
+			}
+
+			Task task = new Task(ids[i], getTitle(i), getCreator(i), date(created[i]),
+					date(due[i]), date(completed[i]), statuses[i]);
+			Set<Step> rowSteps = (Set<Step>) steps[i];
+
+			// The steps stay with the row
+			task.setStepLoader(() -> rowSteps);
+			copy.add(task);
+		}
+
+		return copy;
+	}
+
+	/**
+	 * Gets the creator of the task in a row
+	 *
+	 * @param row The row
+	 * @return The creator name
+	 */
+	public String getCreator(int row) {
+		checkIndex(row);
+
+		return creators[row] < 0 ? null : names.get(creators[row]);
+	}
+
+	/**
+	 * Gets the date the task in a row is due
+	 *
+	 * @param row The row
+	 * @return The number of days since the epoch or {@link #NO_DATE}
+	 */
+	public int getDueDay(int row) {
+		checkIndex(row);
+
+		return due[row];
+	}
+
+	/**
+	 * Gets the id of the task in a row
+	 *
+	 * @param row The row
+	 * @return The task id
+	 */
+	public int getId(int row) {
+		checkIndex(row);
+
+		return ids[row];
+	}
+
+	/**
+	 * Gets the status of the task in a row
+	 *
+	 * @param row The row
+	 * @return The task status
+	 */
+	public int getStatus(int row) {
+		checkIndex(row);
+
+		return statuses[row];
+	}
+
+	/**
+	 * Gets the title of the task in a row
+	 *
+	 * @param row The row
+	 * @return The title
+	 */
+	public String getTitle(int row) {
+		checkIndex(row);
+
+		return titleLength[row] < 0 ? null : new String(titles, titleStart[row], titleLength[row]);
+	}
+
+	/**
+	 * Checks the index is a row in the table
+	 *
+	 * @param index The index
+	 */
+	private void checkIndex(int index) {
+		if (index < 0 || index >= size) {
+			throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+		}
+	}
+
+	/**
+	 * Moves rows to a new position in the columns
+	 *
+	 * @param from   The first row to move
+	 * @param to     The position to move the first row to
+	 * @param length The number of rows to move
+	 */
+	private void move(int from, int to, int length) {
+		System.arraycopy(ids, from, ids, to, length);
+		System.arraycopy(statuses, from, statuses, to, length);
+		System.arraycopy(creators, from, creators, to, length);
+		System.arraycopy(created, from, created, to, length);
+		System.arraycopy(due, from, due, to, length);
+		System.arraycopy(completed, from, completed, to, length);
+		System.arraycopy(titleStart, from, titleStart, to, length);
+		System.arraycopy(titleLength, from, titleLength, to, length);
+		System.arraycopy(steps, from, steps, to, length);
+		System.arraycopy(rows, from, rows, to, length);
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public Task remove(int index) {
+		Task task = get(index);
+
+		removeTitle(index);
+		move(index + 1, index, size - index - 1);
+		size--;
+		modCount++;
+
+		// Don't keep the last row alive
+		steps[size] = null;
+		rows[size] = null;
+
+		return task;
+	}
+
+	/**
+	 * Removes a number of rows at once. Each row after the first removed
+	 * row is moved once, however many rows are removed.
+	 *
+	 * @param removed The rows to remove
+	 */
+	public void removeRows(BitSet removed) {
+		// The position the next kept row is moved to
+		int to = removed.nextSetBit(0);
+
+		if (to < 0 || to >= size) {
+			return;
+		}
+
+		for (int row = to; row >= 0 && row < size; row = removed.nextSetBit(row + 1)) {
+			removeTitle(row);
+		}
+
+		// Move each range of kept rows down over the removed rows
+		for (int from = removed.nextClearBit(to); from < size; ) {
+			int end = removed.nextSetBit(from);
+
+			if (end < 0 || end > size) {
+				end = size;
+			}
+
+			move(from, to, end - from);
+			to += end - from;
+			from = removed.nextClearBit(end);
+		}
+
+		// Don't keep the removed rows alive
+		Arrays.fill(steps, to, size, null);
+		Arrays.fill(rows, to, size, null);
+		size = to;
+		modCount++;
+	}
+
+	/**
+	 * Marks the chars of the title in a row as no longer used
+	 *
+	 * @param row The row
+	 */
+	private void removeTitle(int row) {
+		if (titleLength[row] > 0) {
+			titlesFree += titleLength[row];
+		}
+	}
+
+	/**
+	 * Checks if two sets of steps have the same steps in the same order
+	 * with the same titles and comments
+	 *
+	 * @param a The first steps
+	 * @param b The second steps
+	 * @return If the steps are the same
+	 */
+	private static boolean sameSteps(Set<Step> a, Set<Step> b) {
+		if (a.size() != b.size()) {
+			return false;
+		}
+
+		Iterator<Step> it = b.iterator();
+
+		for (Step s : a) {
+			Step other = it.next();
+
+			if (s.getId() != other.getId() || !Objects.equals(s.getTitle(), other.getTitle()) ||
+					!Objects.equals(s.getComment(), other.getComment())) {
+				return false;
+			}
+		}
+
+		return true;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public Task set(int index, Task task) {
+		Task old = get(index);
+
+		removeTitle(index);
+		write(index, task);
+
+		return old;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public int size() {
+		return size;
+	}
+
+	/**
+	 * Checks if the title in a row is the same as a title without
+	 * creating a string for the row
+	 *
+	 * @param row   The row
+	 * @param title The title to compare with
+	 * @return If the titles are the same
+	 */
+	private boolean titleEquals(int row, String title) {
+		if (title == null || titleLength[row] < 0) {
+			return title == null && titleLength[row] < 0;
+		}
+
+		if (title.length() != titleLength[row]) {
+			return false;
+		}
+
+		int start = titleStart[row];
+
+		for (int i = 0; i < title.length(); i++) {
+			if (titles[start + i] != title.charAt(i)) {
+				return false;
+			}
+		}
+
+		return true;
+	}
+
+	/**
+	 * Updates the task in a row with the values of another task with the
+	 * same id. If the row has a view it is updated so its listeners are
+	 * notified, otherwise the columns are only written if something has
+	 * changed.
+	 *
+	 * @param index The row
+	 * @param task  The task with the new values
+	 * @return If anything was changed
+	 * {@link Task#update(Task)}
+	 */
+	@SuppressWarnings("unchecked")
+	public boolean update(int index, Task task) {
+		checkIndex(index);
+
+		if (task.getId() != ids[index]) {
+			throw new IllegalArgumentException("Task ids do not match: " + task.getId());
+		}
+
+		Task row = rows[index];
+
+		if (row != null) {
+			updating = true;
+
+			try {
+				if (row == task || !row.update(task)) {
+					return false;
+				}
+			} finally {
+				updating = false;
+			}
+
+			// The steps stay with the view
+			removeTitle(index);
+			writeValues(index, row);
+
+			return true;
+		}
+
+		if (titleEquals(index, task.getTitle()) &&
+				Objects.equals(getCreator(index), task.getCreator()) &&
+				created[index] == day(task.getDateCreated()) &&
+				due[index] == day(task.getDateDue()) &&
+				completed[index] == day(task.getDateCompleted()) &&
+				statuses[index] == task.getStatus() &&
+				sameSteps((Set<Step>) steps[index], task.getSteps())) {
+			return false;
+		}
+
+		removeTitle(index);
+		write(index, task);
+
+		return true;
+	}
+
+	/**
+	 * Creates the view of a row. The steps are moved to the view and its
+	 * status and completed date are written back to the columns when they
+	 * are changed.
+	 *
+	 * @param index The row
+	 * @return The view of the row
+	 */
+	@SuppressWarnings("unchecked")
+	private Task view(int index) {
+		Task task = new Row(this, ids[index], getTitle(index), getCreator(index), date(created[index]),
+				date(due[index]), date(completed[index]), statuses[index]);
+		Set<Step> rowSteps = (Set<Step>) steps[index];
+
+		task.setStepLoader(() -> rowSteps);
+		steps[index] = null;
+
+		task.statusProperty().addListener((observable, oldValue, newValue) ->
+				writeBack(task));
+		task.dateCompletedProperty().addListener((observable, oldValue, newValue) ->
+				writeBack(task));
+
+		return task;
+	}
+
+	/**
+	 * Writes a task to the columns of a row. A view of this table
+	 * becomes the view of the row and keeps its steps.
+	 *
+	 * @param index The row
+	 * @param task  The task to write
+	 */
+	private void write(int index, Task task) {
+		writeValues(index, task);
+
+		if (task instanceof Row && ((Row) task).table == this) {
+			steps[index] = null;
+			rows[index] = task;
+		} else {
+			steps[index] = task.getSteps();
+			rows[index] = null;
+		}
+	}
+
+	/**
+	 * Writes the status and completed date of a view back to its row
+	 *
+	 * @param task The view
+	 */
+	private void writeBack(Task task) {
+		if (updating) {
+			return;
+		}
+
+		// Rows move when others are removed so look for the view
+		for (int i = 0; i < size; i++) {
+			if (rows[i] == task) {
+				statuses[i] = task.getStatus();
+				completed[i] = day(task.getDateCompleted());
+				return;
+			}
+		}
+	}
+
+	/**
+	 * Writes the values of a task other than the steps to the columns
+	 * of a row
+	 *
+	 * @param index The row
+	 * @param task  The task to write
+	 */
+	private void writeValues(int index, Task task) {
+		ids[index] = task.getId();
+		statuses[index] = task.getStatus();
+		creators[index] = addName(task.getCreator());
+		created[index] = day(task.getDateCreated());
+		due[index] = day(task.getDateDue());
+		completed[index] = day(task.getDateCompleted());
+		addTitle(index, task.getTitle());
+	}
+
+	/**
+	 * The view of a row, which knows the table it belongs to
+	 */
+	private static class Row extends Task {
+
+		/**
+		 * The table the row is in
+		 */
+		private final TaskTable table;
+
+		/**
+		 * Creates a new view
+		 *
+		 * @param table         The table the row is in
+		 * @param id            The task id
+		 * @param title         The task title
+		 * @param creator       The task creator
+		 * @param dateCreated   The date the task was created
+		 * @param dateDue       The date the task is due
+		 * @param dateCompleted The date the task was completed
+		 * @param status        The task status
+		 */
+		private Row(TaskTable table, int id, String title, String creator, LocalDate dateCreated,
+		            LocalDate dateDue, LocalDate dateCompleted, int status) {
+			super(id, title, creator, dateCreated, dateDue, dateCompleted, status);
+			this.table = table;
+		}
+	}
+}
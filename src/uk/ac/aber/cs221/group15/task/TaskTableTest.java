@@ -0,0 +1,259 @@
+package uk.ac.aber.cs221.group15.task;
+
+import javafx.collections.FXCollections;
+import javafx.collections.ListChangeListener;
+import org.junit.Test;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests the task list with the tasks stored in columns and compares the
+ * time taken to count and filter the tasks with the tasks stored as objects
+ *
+ * @author Darren White
+ * @version 0.0.2
+ */
+public class TaskTableTest {
+
+	/**
+	 * The number of tasks used for the comparison
+	 */
+	private static final int TASKS = 200000;
+
+	/**
+	 * The number of times the tasks are scanned
+	 */
+	private static final int ITERATIONS = 20;
+
+	/**
+	 * Creates a task with a step
+	 *
+	 * @param id     The task id
+	 * @param title  The task title
+	 * @param status The task status
+	 * @return The new task
+	 */
+	private static Task createTask(int id, String title, int status) {
+		LocalDate due = LocalDate.of(2016, 6, 1).plusDays(id % 60);
+		Task task = new Task(id, title, "Member " + id % 10, LocalDate.of(2016, 5, 1), due,
+				status == Task.COMPLETED ? due : null, status);
+
+		task.addStep(new Step(id * 10, "Step", ""));
+
+		return task;
+	}
+
+	/**
+	 * Creates tasks with a mix of statuses
+	 *
+	 * @param count The number of tasks
+	 * @return The tasks
+	 */
+	private static List<Task> createTasks(int count) {
+		List<Task> tasks = new ArrayList<>(count);
+
+		for (int id = 1; id <= count; id++) {
+			tasks.add(createTask(id, "Task " + id, id % 3 == 0 ? Task.COMPLETED : Task.ALLOCATED));
+		}
+
+		return tasks;
+	}
+
+	/**
+	 * Test merging into the columns updates the views in place and only
+	 * notifies listeners of real changes
+	 */
+	@Test
+	public void testMerge() {
+		TaskList list = new TaskList(true);
+
+		list.merge(Arrays.asList(createTask(1, "One", Task.ALLOCATED),
+				createTask(2, "Two", Task.ALLOCATED),
+				createTask(3, "Three", Task.ALLOCATED)));
+
+		Task one = list.get(0);
+		List<String> titles = new ArrayList<>();
+		int[] added = new int[1], removed = new int[1], updated = new int[1];
+
+		one.titleProperty().addListener((o, oldValue, newValue) -> titles.add(newValue));
+		list.addListener((ListChangeListener<Task>) c -> {
+			while (c.next()) {
+				if (c.wasUpdated()) {
+					updated[0] += c.getTo() - c.getFrom();
+				} else {
+					added[0] += c.getAddedSize();
+					removed[0] += c.getRemovedSize();
+				}
+			}
+		});
+
+		// 1 is renamed, 2 has no view and is completed, 3 is the same
+		// and 4 is new
+		list.merge(Arrays.asList(createTask(1, "First", Task.ALLOCATED),
+				createTask(2, "Two", Task.COMPLETED),
+				createTask(3, "Three", Task.ALLOCATED),
+				createTask(4, "Four", Task.ALLOCATED)));
+
+		assertEquals(1, added[0]);
+		assertEquals(0, removed[0]);
+		assertEquals(2, updated[0]);
+		assertSame(one, list.get(0));
+		assertEquals(Arrays.asList("First"), titles);
+		assertEquals("Two", list.get(1).getTitle());
+		assertEquals(Task.COMPLETED, list.get(1).getStatus());
+		assertEquals(1, list.get(1).getSteps().size());
+
+		// Changes to a view are written back to the columns
+		one.setStatus(Task.COMPLETED);
+
+		assertEquals(2, list.count(Task.COMPLETED));
+
+		// Remove the first task so the rows move
+		list.merge(Arrays.asList(createTask(2, "Two", Task.COMPLETED),
+				createTask(3, "Three", Task.ALLOCATED),
+				createTask(4, "Four", Task.ALLOCATED)));
+
+		assertEquals(1, removed[0]);
+		assertEquals(3, list.size());
+		assertEquals(2, list.get(0).getId());
+		assertEquals(1, list.count(Task.COMPLETED));
+	}
+
+	/**
+	 * Test sorting the list keeps the views of the rows, so changes to
+	 * a view still shown in a window are written back to the columns
+	 */
+	@Test
+	public void testSort() {
+		TaskList list = new TaskList(true);
+
+		list.merge(Arrays.asList(createTask(1, "A", Task.ALLOCATED),
+				createTask(2, "B", Task.ALLOCATED),
+				createTask(3, "C", Task.ALLOCATED)));
+
+		Task one = list.get(0);
+
+		// Sorted the same way as a table column
+		FXCollections.sort(list, Comparator.comparing(Task::getTitle).reversed());
+
+		assertSame(one, list.get(2));
+		assertEquals(3, list.get(0).getId());
+		assertEquals(1, one.getSteps().size());
+
+		// Still written back from its new row
+		one.setStatus(Task.COMPLETED);
+
+		assertEquals(1, list.count(Task.COMPLETED));
+		assertEquals(1, list.filter(Task.COMPLETED, 1).get(0).getId());
+	}
+
+	/**
+	 * Test copying the tasks uses the views which exist and doesn't
+	 * create views for the other rows
+	 */
+	@Test
+	public void testCopy() {
+		TaskList list = new TaskList(true);
+
+		list.merge(Arrays.asList(createTask(1, "One", Task.ALLOCATED),
+				createTask(2, "Two", Task.COMPLETED)));
+
+		Task one = list.get(0);
+		List<Task> copy = list.copy();
+
+		assertSame(one, copy.get(0));
+		assertEquals("Two", copy.get(1).getTitle());
+		assertEquals(Task.COMPLETED, copy.get(1).getStatus());
+		assertEquals(1, copy.get(1).getSteps().size());
+		// The copy wasn't kept as the view of the row
+		assertNotSame(copy.get(1), list.get(1));
+	}
+
+	/**
+	 * Test titles are kept when the title chars are compacted after
+	 * many tasks were renamed and removed
+	 */
+	@Test
+	public void testTitles() {
+		TaskTable table = new TaskTable();
+
+		for (int id = 0; id < 100; id++) {
+			table.add(createTask(id, id % 2 == 0 ? "Task " + id : null, Task.ALLOCATED));
+		}
+
+		for (int round = 0; round < 10; round++) {
+			table.remove(0);
+
+			for (int i = 0; i < table.size(); i++) {
+				table.update(i, createTask(table.getId(i), "Round " + round + " " + i, Task.ALLOCATED));
+			}
+		}
+
+		assertEquals(90, table.size());
+
+		for (int i = 0; i < table.size(); i++) {
+			assertEquals("Round 9 " + i, table.getTitle(i));
+		}
+
+		assertFalse(table.update(0, createTask(table.getId(0), "Round 9 0", Task.ALLOCATED)));
+
+		table.update(0, createTask(table.getId(0), null, Task.ALLOCATED));
+
+		assertNull(table.getTitle(0));
+		assertNull(table.get(0).getTitle());
+	}
+
+	/**
+	 * Compare the time to count and filter the tasks when they are stored
+	 * in columns and as objects, which should give the same results
+	 */
+	@Test
+	public void testScan() {
+		List<Task> tasks = createTasks(TASKS);
+		TaskList objects = new TaskList(false), columns = new TaskList(true);
+		LocalDate today = LocalDate.of(2016, 7, 1);
+
+		objects.merge(tasks);
+		columns.merge(createTasks(TASKS));
+
+		assertEquals(objects.count(Task.ALLOCATED), columns.count(Task.ALLOCATED));
+		assertEquals(objects.countDue(Task.ALLOCATED, today), columns.countDue(Task.ALLOCATED, today));
+		assertEquals(objects.filter(Task.ALLOCATED, 10).size(), columns.filter(Task.ALLOCATED, 10).size());
+
+		long objectTime = 0, columnTime = 0;
+		int results = 0;
+
+		// Scan both a number of times (the first is warm up)
+		for (int i = 0; i <= ITERATIONS; i++) {
+			long start = System.nanoTime();
+			results += objects.count(Task.ALLOCATED) + objects.countDue(Task.ALLOCATED, today);
+			long mid = System.nanoTime();
+			results -= columns.count(Task.ALLOCATED) + columns.countDue(Task.ALLOCATED, today);
+			long end = System.nanoTime();
+
+			if (i > 0) {
+				objectTime += mid - start;
+				columnTime += end - mid;
+			}
+		}
+
+		System.out.println("Counting allocated and overdue tasks of " + TASKS + "...");
+		System.out.println("Objects: " + objectTime / ITERATIONS / 1000 + "us");
+		System.out.println("Columns: " + columnTime / ITERATIONS / 1000 + "us");
+		System.out.println();
+
+		assertEquals(0, results);
+		assertTrue(columns.filter(Task.COMPLETED, TASKS).stream().allMatch(t -> t.getStatus() == Task.COMPLETED));
+	}
+}
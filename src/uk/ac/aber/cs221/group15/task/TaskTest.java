@@ -0,0 +1,164 @@
+package uk.ac.aber.cs221.group15.task;
+
+import org.junit.Test;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests the properties of tasks and steps are only created when used and
+ * compares the memory used by tasks with and without their properties
+ *
+ * @author Darren White
+ * @version 0.0.2
+ */
+public class TaskTest {
+
+	/**
+	 * The number of tasks used for the comparison
+	 */
+	private static final int TASKS = 100000;
+
+	/**
+	 * The number of steps for each task
+	 */
+	private static final int STEPS = 10;
+
+	/**
+	 * Creates tasks like the ones from the server
+	 *
+	 * @param count The number of tasks
+	 * @param steps The number of steps for each task
+	 * @return The tasks
+	 */
+	private static List<Task> createTasks(int count, int steps) {
+		List<Task> tasks = new ArrayList<>(count);
+		LocalDate created = LocalDate.of(2016, 5, 1);
+
+		for (int id = 1; id <= count; id++) {
+			LocalDate due = LocalDate.of(2016, 6, 1 + id % 28);
+			Task task = new Task(id, "Task " + id, "Member " + id % 10, created, due,
+					null, Task.ALLOCATED);
+
+			for (int i = 0; i < steps; i++) {
+				task.addStep(new Step(id * steps + i, "Step " + i, ""));
+			}
+
+			tasks.add(task);
+		}
+
+		return tasks;
+	}
+
+	/**
+	 * Gets the memory in use after collecting the garbage
+	 *
+	 * @return The memory used in bytes
+	 * @throws InterruptedException If the thread is interrupted
+	 */
+	private static long usedMemory() throws InterruptedException {
+		Runtime runtime = Runtime.getRuntime();
+
+		for (int i = 0; i < 3; i++) {
+			System.gc();
+			Thread.sleep(50);
+		}
+
+		return runtime.totalMemory() - runtime.freeMemory();
+	}
+
+	/**
+	 * Test values set before and after the properties are created are
+	 * kept, and listeners are notified of changes from updates
+	 *
+	 * @throws Exception If an exception occurs
+	 */
+	@Test
+	public void testLazyProperties() throws Exception {
+		Task task = createTasks(1, 2).get(0);
+		Step step = task.getSteps().iterator().next();
+
+		// Set before the properties exist
+		task.setStatus(Task.COMPLETED);
+		step.setComment("Before");
+		step.setEdited(true);
+
+		assertEquals(Task.COMPLETED, task.statusProperty().get());
+		assertEquals("Before", step.commentProperty().get());
+		assertTrue(step.editedProperty().get());
+		assertEquals(1, task.idProperty().get());
+		assertEquals(2, task.stepsProperty().get().size());
+
+		// Set through the properties
+		task.statusProperty().set(Task.ALLOCATED);
+		step.commentProperty().set("After");
+
+		assertEquals(Task.ALLOCATED, task.getStatus());
+		assertEquals("After", step.getComment());
+
+		AtomicInteger changes = new AtomicInteger();
+		Task updated = new Task(1, "Changed", task.getCreator(), task.getDateCreated(),
+				task.getDateDue(), null, Task.ALLOCATED);
+
+		updated.addStep(new Step(3, "Step", ""));
+
+		task.titleProperty().addListener((observable, oldValue, newValue) -> changes.incrementAndGet());
+		task.stepsProperty().addListener((observable, oldValue, newValue) -> changes.incrementAndGet());
+
+		assertTrue(task.update(updated));
+		assertEquals(2, changes.get());
+		assertEquals("Changed", task.getTitle());
+		assertEquals(1, task.getSteps().size());
+		assertFalse(task.update(updated));
+	}
+
+	/**
+	 * Test a task with no properties uses less memory than the same task
+	 * with every property created, as every task had before
+	 *
+	 * @throws Exception If an exception occurs
+	 */
+	@Test
+	public void testMemory() throws Exception {
+		long base = usedMemory();
+		List<Task> tasks = createTasks(TASKS, STEPS);
+		long lazy = usedMemory() - base;
+
+		// Create every property as the tasks used to
+		for (Task t : tasks) {
+			t.idProperty();
+			t.titleProperty();
+			t.creatorProperty();
+			t.dateCreatedProperty();
+			t.dateDueProperty();
+			t.dateCompletedProperty();
+			t.statusProperty();
+			t.stepsProperty();
+
+			for (Step s : t.getSteps()) {
+				s.idProperty();
+				s.titleProperty();
+				s.commentProperty();
+				s.editedProperty();
+			}
+		}
+
+		long eager = usedMemory() - base;
+
+		System.out.println("Memory for " + TASKS + " tasks with " + TASKS * STEPS + " steps...");
+		System.out.println("All properties: " + eager / 1024 / 1024 + "MB, " + eager / TASKS +
+				" bytes per task");
+		System.out.println("Properties when used: " + lazy / 1024 / 1024 + "MB, " + lazy / TASKS +
+				" bytes per task");
+		System.out.println();
+
+		assertEquals(TASKS, tasks.size());
+		assertTrue(lazy < eager);
+	}
+}